@@ -2,6 +2,7 @@ plugins {
     id("io.micronaut.application") version "4.5.4"
     id("io.micronaut.aot") version "4.5.4"
     id("com.google.cloud.tools.jib") version "3.4.5"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 micronaut {
@@ -39,9 +40,13 @@ dependencies {
 
 
     implementation("org.apache.commons:commons-lang3:3.19.0")
+    implementation("io.micronaut.micrometer:micronaut-micrometer-core")
+    implementation("io.micronaut.micrometer:micronaut-micrometer-registry-prometheus")
 
 
     runtimeOnly("org.yaml:snakeyaml")
+
+    jmhImplementation("io.micronaut:micronaut-http-client")
 }
 
 java {
@@ -80,6 +85,23 @@ tasks.named<Test>("test") {
     useJUnitPlatform()
 }
 
+// ./gradlew jmh, optionally narrowed down with -PjmhInclude=IngestionBenchmark
+jmh {
+    jmhVersion = "1.37"
+    // machine-readable, to compare runs and spot regressions
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    profilers.add("gc") // gc.alloc.rate.norm = bytes allocated per operation
+    if (project.hasProperty("jmhInclude")) {
+        includes.add(project.property("jmhInclude").toString())
+    }
+    // e.g. -PjmhParams=rockets=10000
+    if (project.hasProperty("jmhParams")) {
+        val (name, values) = project.property("jmhParams").toString().split("=", limit = 2)
+        benchmarkParameters.put(name, project.objects.listProperty(String::class.java).value(values.split(",")))
+    }
+}
+
 jib {
     from {
         image = "amazoncorretto:21.0.8-alpine3.22"
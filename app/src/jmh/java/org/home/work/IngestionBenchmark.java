@@ -0,0 +1,108 @@
+package org.home.work;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.client.BlockingHttpClient;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.runtime.server.EmbeddedServer;
+import org.home.work.messages.BinaryTelemetry;
+import org.home.work.messages.MessageController;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of HTTP ingestion: one message per POST against {@value #BATCH_SIZE} messages per batch POST,
+ * in JSON and in {@link BinaryTelemetry} format. All report messages per second, so the scores can be compared directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class IngestionBenchmark {
+    static final int BATCH_SIZE = 100;
+
+    public enum Format { JSON, BINARY }
+
+    @Param({"JSON", "BINARY"})
+    Format format;
+
+    EmbeddedServer server;
+    HttpClient httpClient;
+
+    @Setup
+    public void startServer() {
+        server = ApplicationContext.run(EmbeddedServer.class, Map.of(
+            "micronaut.server.port", -1,
+            "logger.levels.org.home.work", "ERROR"
+        ));
+        httpClient = server.getApplicationContext().createBean(HttpClient.class, server.getURL());
+    }
+
+    @TearDown
+    public void stopServer() {
+        httpClient.stop();
+        server.stop();
+    }
+
+    /**
+     * Every benchmark thread posts to its own rocket, so the numbers measure HTTP and dispatch overhead, not lock contention
+     */
+    @State(Scope.Thread)
+    public static class Channel {
+        final String id = UUID.randomUUID().toString();
+        int messageNumber = 1;
+        Format format;
+        BlockingHttpClient client;
+
+        @Setup
+        public void launch(IngestionBenchmark benchmark) {
+            format = benchmark.format;
+            client = benchmark.httpClient.toBlocking();
+            client.exchange(HttpRequest.POST("/messages", Messages.launch(id, messageNumber)));
+        }
+
+        String next() {
+            return Messages.speedIncrease(id, ++messageNumber, 10);
+        }
+
+        MessageController.RocketTelemetry nextTelemetry() {
+            return Messages.speedTelemetry(id, ++messageNumber, 10);
+        }
+    }
+
+    @Benchmark
+    public int single(Channel channel) {
+        var request = channel.format == Format.JSON
+            ? HttpRequest.POST("/messages", channel.next())
+            : HttpRequest.POST("/messages", BinaryTelemetry.encode(channel.nextTelemetry())).contentType(BinaryTelemetry.CONTENT_TYPE);
+        return channel.client.exchange(request).code();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int batch(Channel channel) {
+        if (channel.format == Format.BINARY) {
+            var batch = new ArrayList<MessageController.RocketTelemetry>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(channel.nextTelemetry());
+            }
+            var request = HttpRequest.POST("/messages/batch", BinaryTelemetry.encodeBatch(batch)).contentType(BinaryTelemetry.CONTENT_TYPE);
+            return channel.client.exchange(request).code();
+        }
+
+        var body = new StringBuilder();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            body.append(channel.next()).append('\n');
+        }
+
+        var request = HttpRequest.POST("/messages/batch", body.toString()).contentType(MessageController.APPLICATION_NDJSON);
+        return channel.client.exchange(request).code();
+    }
+}
@@ -0,0 +1,149 @@
+package org.home.work;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.work.journal.FsyncPolicy;
+import org.home.work.journal.JournalConfig;
+import org.home.work.journal.StateSnapshotter;
+import org.home.work.journal.TelemetryJournal;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.RocketRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the write-ahead journal: ingest throughput without it and with each fsync policy,
+ * and how long startup takes replaying the whole journal against loading a state snapshot and replaying the last 10% after it.
+ */
+public class JournalBenchmark {
+    static final int ROCKETS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Ingest {
+        /** OFF runs without a journal */
+        @Param({"OFF", "NEVER", "INTERVAL", "ALWAYS"})
+        String fsync;
+
+        Path directory;
+        TelemetryJournal journal;
+        RocketRepository repository;
+        int[] messageNumbers = new int[ROCKETS];
+        int next;
+
+        @Setup
+        public void open() throws IOException {
+            directory = Files.createTempDirectory("journal-benchmark");
+            if (!fsync.equals("OFF")) {
+                journal = new TelemetryJournal(config(directory, FsyncPolicy.valueOf(fsync)));
+            }
+            repository = new RocketRepository(new ReorderConfig(), new SimpleMeterRegistry(), Optional.ofNullable(journal));
+            for (int i = 0; i < ROCKETS; i++) {
+                repository.processTelemetry(Messages.launchTelemetry("rocket-" + i, "Falcon-9", 1000, "ARTEMIS"));
+                messageNumbers[i] = 1;
+            }
+        }
+
+        @TearDown
+        public void close() throws IOException {
+            if (journal != null) {
+                journal.close();
+            }
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public Object ingest(Ingest state) {
+        var rocket = state.next++ % ROCKETS;
+        return state.repository.processTelemetry(Messages.speedTelemetry("rocket-" + rocket, ++state.messageNumbers[rocket], 1));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+        @Param({"1000000", "10000000"})
+        int records;
+
+        Path directory;
+        JournalConfig config;
+
+        @Setup(Level.Trial)
+        public void write() throws IOException {
+            directory = Files.createTempDirectory("journal-benchmark");
+            config = config(directory, FsyncPolicy.NEVER);
+            try (var journal = new TelemetryJournal(config)) {
+                var repository = new RocketRepository(new ReorderConfig(), new SimpleMeterRegistry(), Optional.of(journal));
+                var snapshotter = new StateSnapshotter(config, journal, repository);
+                for (int i = 0; i < ROCKETS; i++) {
+                    repository.processTelemetry(Messages.launchTelemetry("rocket-" + i, "Falcon-9", 1000, "ARTEMIS"));
+                }
+                var snapshotAt = records - records / 10;
+                for (int i = ROCKETS; i < records; i++) {
+                    repository.processTelemetry(Messages.speedTelemetry("rocket-" + i % ROCKETS, i / ROCKETS + 1, 1));
+                    if (i + 1 == snapshotAt) {
+                        snapshotter.snapshot();
+                    }
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            JournalBenchmark.delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+    public RocketRepository recover(Recovery state) throws IOException {
+        var repository = new RocketRepository();
+        try (var journal = new TelemetryJournal(state.config)) {
+            journal.replay(repository::replay);
+        }
+        return repository;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+    public RocketRepository recoverFromSnapshot(Recovery state) throws IOException {
+        var repository = new RocketRepository();
+        try (var journal = new TelemetryJournal(state.config)) {
+            var sequence = new StateSnapshotter(state.config, journal, repository).restore();
+            journal.replay(sequence, repository::replay);
+        }
+        return repository;
+    }
+
+    static JournalConfig config(Path directory, FsyncPolicy fsync) {
+        var config = new JournalConfig();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setFsync(fsync);
+        return config;
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for (var path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
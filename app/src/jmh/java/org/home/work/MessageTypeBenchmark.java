@@ -0,0 +1,71 @@
+package org.home.work;
+
+import org.home.work.messages.MessageController;
+import org.home.work.messages.MessageType;
+import org.home.work.messages.RocketEvent;
+import org.home.work.rockets.Rocket;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message type lookup for every type name the data source sends, plus one it doesn't. Score is for all six lookups.
+ * {@link #dispatch} applies one message of every type to a rocket, the per-message cost of picking the handler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageTypeBenchmark {
+    // new strings, as the decoder creates them, so equals can't stop at identity
+    final String[] names = {
+        new String("RocketLaunched"),
+        new String("RocketSpeedIncreased"),
+        new String("RocketSpeedDecreased"),
+        new String("RocketExploded"),
+        new String("RocketMissionChanged"),
+        new String("RocketRefueled")
+    };
+
+    final char[][] chars = Arrays.stream(names).map(String::toCharArray).toArray(char[][]::new);
+
+    final MessageController.RocketTelemetry[] messages = {
+        telemetry(MessageType.LAUNCHED, new RocketEvent.Launched("Falcon-9", 500, "ARTEMIS")),
+        telemetry(MessageType.SPEED_INCREASED, new RocketEvent.SpeedChanged(100)),
+        telemetry(MessageType.SPEED_DECREASED, new RocketEvent.SpeedChanged(-100)),
+        telemetry(MessageType.MISSION_CHANGED, new RocketEvent.MissionChanged("VOYAGER")),
+        telemetry(MessageType.EXPLODED, new RocketEvent.Exploded("PRESSURE")),
+        telemetry(MessageType.UNKNOWN, RocketEvent.UNKNOWN)
+    };
+
+    final Rocket rocket = new Rocket();
+
+    private static MessageController.RocketTelemetry telemetry(MessageType type, RocketEvent event) {
+        return new MessageController.RocketTelemetry(new MessageController.Metadata("abc", 1, type, null), event);
+    }
+
+    @Benchmark
+    public void ofChars(Blackhole blackhole) {
+        for (var name : chars) {
+            blackhole.consume(MessageType.of(name, 0, name.length));
+        }
+    }
+
+    @Benchmark
+    public void dispatch(Blackhole blackhole) {
+        for (var message : messages) {
+            blackhole.consume(rocket.update(message));
+        }
+    }
+
+    @Benchmark
+    public void ofStr(Blackhole blackhole) {
+        for (var name : names) {
+            blackhole.consume(MessageType.ofStr(name));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.home.work;
+
+import org.home.work.messages.MessageController;
+import org.home.work.messages.MessageType;
+import org.home.work.messages.RocketEvent;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Single line JSON messages, as the rocket data source sends them, and the same messages already decoded
+ */
+public class Messages {
+    static final ZonedDateTime TIME = ZonedDateTime.of(2022, 2, 2, 18, 39, 5, 0, ZoneOffset.UTC);
+
+    public static String launch(String channel, int messageNumber) {
+        return """
+            {"metadata":{"channel":"%s","messageNumber":%d,"messageTime":"2022-02-02T19:39:05.86337+01:00","messageType":"RocketLaunched"},\
+            "message":{"type":"Falcon-9","launchSpeed":500,"mission":"ARTEMIS"}}""".formatted(channel, messageNumber);
+    }
+
+    public static String speedIncrease(String channel, int messageNumber, int by) {
+        return """
+            {"metadata":{"channel":"%s","messageNumber":%d,"messageTime":"2022-02-02T19:40:05.86337+01:00","messageType":"RocketSpeedIncreased"},\
+            "message":{"by":%d}}""".formatted(channel, messageNumber, by);
+    }
+
+    public static MessageController.RocketTelemetry launchTelemetry(String channel, String type, int speed, String mission) {
+        return new MessageController.RocketTelemetry(
+            new MessageController.Metadata(channel, 1, MessageType.LAUNCHED, TIME),
+            new RocketEvent.Launched(type, speed, mission)
+        );
+    }
+
+    public static MessageController.RocketTelemetry speedTelemetry(String channel, int messageNumber, int delta) {
+        var type = delta < 0 ? MessageType.SPEED_DECREASED : MessageType.SPEED_INCREASED;
+        return new MessageController.RocketTelemetry(
+            new MessageController.Metadata(channel, messageNumber, type, TIME.plusSeconds(messageNumber)),
+            new RocketEvent.SpeedChanged(delta)
+        );
+    }
+}
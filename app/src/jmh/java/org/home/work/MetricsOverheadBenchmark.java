@@ -0,0 +1,57 @@
+package org.home.work;
+
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.home.work.metrics.MetricsConfig;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.RocketBuffer;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.StoreConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the ingest path instrumentation: time per message through {@link RocketRepository#processTelemetry}
+ * with a Prometheus registry, when no message, one in 32 (the default) or every message is timed.
+ * Result counters are always on, so the difference to 0 is what the timers cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+    static final int CHANNELS = 1024;
+
+    @Param({"0", "32", "1"})
+    int timingSampleRate;
+
+    RocketRepository repository;
+    String[] channelNames;
+    int[] messageNumbers;
+    int next;
+
+    @Setup
+    public void launchRockets() {
+        var metricsConfig = new MetricsConfig();
+        metricsConfig.setTimingSampleRate(timingSampleRate);
+        repository = new RocketRepository(new ReorderConfig(), new StoreConfig(), metricsConfig,
+            new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), Optional.empty());
+        channelNames = new String[CHANNELS];
+        messageNumbers = new int[CHANNELS];
+        for (int i = 0; i < CHANNELS; i++) {
+            channelNames[i] = "rocket-" + i;
+            repository.processTelemetry(Messages.launchTelemetry(channelNames[i], "Falcon-9", 1000, "ARTEMIS"));
+            messageNumbers[i] = 1;
+        }
+    }
+
+    @Benchmark
+    public RocketBuffer processTelemetry() {
+        var channel = next++ & (CHANNELS - 1);
+        return repository.processTelemetry(Messages.speedTelemetry(channelNames[channel], ++messageNumbers[channel], 1));
+    }
+}
@@ -0,0 +1,60 @@
+package org.home.work;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.RocketBuffer;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.Sequencer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Messages/sec through {@link RocketRepository#processTelemetry} from 8 threads, spread over few channels (threads wait
+ * on the same buffer locks) or many (mostly uncontended), with the locking and the lock-free ring sequencer.
+ * Numbers are handed out per channel, so threads racing on a channel also exercise the reorder queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RepositoryContentionBenchmark {
+
+    @Param({"1", "16", "1024"})
+    int channels;
+
+    @Param({"LOCK", "RING"})
+    Sequencer sequencer;
+
+    RocketRepository repository;
+    String[] channelNames;
+    AtomicIntegerArray messageNumbers;
+
+    @Setup
+    public void launchRockets() {
+        var config = new ReorderConfig();
+        config.setSequencer(sequencer);
+        config.setRingSize(1024); // a preempted thread must not make the others skip its message
+        repository = new RocketRepository(config, new SimpleMeterRegistry(), Optional.empty());
+        channelNames = new String[channels];
+        messageNumbers = new AtomicIntegerArray(channels);
+        for (int i = 0; i < channels; i++) {
+            channelNames[i] = "rocket-" + i;
+            repository.processTelemetry(Messages.launchTelemetry(channelNames[i], "Falcon-9", 1000, "ARTEMIS"));
+            messageNumbers.set(i, 1);
+        }
+    }
+
+    @Benchmark
+    public RocketBuffer processTelemetry() {
+        var channel = ThreadLocalRandom.current().nextInt(channels);
+        var messageNumber = messageNumbers.incrementAndGet(channel);
+        return repository.processTelemetry(Messages.speedTelemetry(channelNames[channel], messageNumber, 1));
+    }
+}
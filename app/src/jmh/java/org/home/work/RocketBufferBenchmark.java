@@ -0,0 +1,71 @@
+package org.home.work;
+
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.RocketBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One rocket's buffer receiving a launch and 1000 speed messages: in order, shuffled (every message but the next one is queued first),
+ * and with every message delivered three times, as at-least-once delivery may do. Score is per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RocketBufferBenchmark {
+    static final int MESSAGES = 1000;
+
+    public enum Order { IN_ORDER, SHUFFLED, DUPLICATES }
+
+    @Param
+    Order order;
+
+    MessageController.RocketTelemetry[] messages;
+
+    @Setup
+    public void prepare() {
+        var list = new ArrayList<MessageController.RocketTelemetry>();
+        for (int i = 2; i <= MESSAGES + 1; i++) {
+            list.add(Messages.speedTelemetry("abc", i, 10));
+        }
+
+        var random = new Random(42);
+        switch (order) {
+            case IN_ORDER -> {}
+            case SHUFFLED -> Collections.shuffle(list, random);
+            case DUPLICATES -> {
+                var copies = new ArrayList<MessageController.RocketTelemetry>();
+                for (var telemetry : list) {
+                    copies.add(telemetry);
+                    copies.add(telemetry);
+                    copies.add(telemetry);
+                }
+                // duplicates arrive close to, not right after, the original
+                for (int i = 0; i < copies.size(); i++) {
+                    Collections.swap(copies, i, Math.min(copies.size() - 1, i + random.nextInt(8)));
+                }
+                list = copies;
+            }
+        }
+
+        list.addFirst(Messages.launchTelemetry("abc", "Falcon-9", 1000, "ARTEMIS"));
+        messages = list.toArray(MessageController.RocketTelemetry[]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public RocketBuffer processTelemetry() {
+        var buffer = new RocketBuffer();
+        for (var telemetry : messages) {
+            buffer.processTelemetry(telemetry);
+        }
+        return buffer;
+    }
+}
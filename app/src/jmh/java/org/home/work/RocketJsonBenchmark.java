@@ -0,0 +1,80 @@
+package org.home.work;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.serde.ObjectMapper;
+import org.home.work.rockets.RocketJson;
+import org.home.work.rockets.RocketSnapshot;
+import org.home.work.rockets.StoreConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON of the whole fleet for {@code GET /rockets}: serializing every rocket against putting together each rocket's kept JSON,
+ * with no rocket changed and with 1% of them changed since the previous response
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RocketJsonBenchmark {
+
+    @Param({"100000"})
+    int rockets;
+
+    ObjectMapper mapper;
+    RocketJson rocketJson;
+    List<RocketSnapshot> fleet;
+
+    @Setup
+    public void launchRockets() {
+        mapper = ObjectMapper.getDefault();
+        rocketJson = new RocketJson(mapper, new StoreConfig());
+        fleet = new ArrayList<>(rockets);
+        var random = ThreadLocalRandom.current();
+        for (int i = 0; i < rockets; i++) {
+            fleet.add(new RocketSnapshot(UUID.randomUUID().toString(), "Type-" + (i % 100), random.nextInt(100_000), "MISSION-" + (i % 10),
+                Messages.TIME.plusSeconds(i), random.nextInt(1, 50), "LAUNCHED", null, false));
+        }
+        rocketJson.list(fleet);
+    }
+
+    /**
+     * Replaces 1% of the rockets with a changed snapshot, as if they received a message
+     */
+    @State(Scope.Thread)
+    public static class Changes {
+        @Setup(Level.Invocation)
+        public void change(RocketJsonBenchmark benchmark) {
+            var random = ThreadLocalRandom.current();
+            for (int i = 0; i < benchmark.rockets / 100; i++) {
+                var index = random.nextInt(benchmark.rockets);
+                var rocket = benchmark.fleet.get(index);
+                benchmark.fleet.set(index, new RocketSnapshot(rocket.id(), rocket.type(), rocket.speed() + 1, rocket.mission(),
+                    rocket.launchTime(), rocket.lastMessageNumber() + 1, rocket.status(), rocket.missionEndTime(), rocket.degraded()));
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] serialized() throws IOException {
+        return mapper.writeValueAsBytes(Argument.listOf(RocketSnapshot.class), fleet);
+    }
+
+    @Benchmark
+    public byte[] fragments() {
+        return rocketJson.list(fleet);
+    }
+
+    @Benchmark
+    public byte[] fragmentsAfterChanges(Changes changes) {
+        return rocketJson.list(fleet);
+    }
+}
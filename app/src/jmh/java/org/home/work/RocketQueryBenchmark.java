@@ -0,0 +1,55 @@
+package org.home.work;
+
+import org.home.work.rockets.RocketFilter;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.RocketSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read latency of type queries as the fleet grows: index lookups against a scan of every rocket.
+ * 100 rocket types, so a type query matches 1% of the fleet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RocketQueryBenchmark {
+    static final int TYPES = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    int rockets;
+
+    RocketRepository repository;
+    RocketFilter typeFilter = new RocketFilter(Optional.of("Type-42"), Optional.empty(), Optional.empty());
+
+    @Setup
+    public void launchRockets() {
+        repository = new RocketRepository();
+        for (int i = 0; i < rockets; i++) {
+            repository.processTelemetry(Messages.launchTelemetry(UUID.randomUUID().toString(), "Type-" + (i % TYPES), 1000, "MISSION-" + (i % 10)));
+        }
+    }
+
+    @Benchmark
+    public Set<String> types() {
+        return repository.rocketTypes();
+    }
+
+    @Benchmark
+    public List<RocketSnapshot> byTypeIndexed() {
+        return repository.rocketsBy(typeFilter);
+    }
+
+    @Benchmark
+    public List<RocketSnapshot> byTypeScan() {
+        return repository.rocketsBy(typeFilter::matches);
+    }
+}
@@ -0,0 +1,50 @@
+package org.home.work;
+
+import org.home.work.rockets.RocketFilter;
+import org.home.work.rockets.RocketPage;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.SortKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@code GET /rockets?sortBy=...} does as the fleet grows: the whole sorted list, and the first page of 100
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RocketSortBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int rockets;
+
+    @Param({"SPEED", "MISSION", "LAUNCH_TIME"})
+    SortKey sortKey;
+
+    RocketRepository repository;
+
+    @Setup
+    public void launchRockets() {
+        repository = new RocketRepository();
+        var random = ThreadLocalRandom.current();
+        for (int i = 0; i < rockets; i++) {
+            repository.processTelemetry(Messages.launchTelemetry(UUID.randomUUID().toString(), "Type-" + (i % 100), random.nextInt(100_000), "MISSION-" + (i % 10)));
+        }
+    }
+
+    @Benchmark
+    public RocketPage all() {
+        return repository.rocketPage(RocketFilter.ALL, sortKey, false, null, 0);
+    }
+
+    @Benchmark
+    public RocketPage firstPage() {
+        return repository.rocketPage(RocketFilter.ALL, sortKey, true, null, 100);
+    }
+}
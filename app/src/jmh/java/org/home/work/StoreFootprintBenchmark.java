@@ -0,0 +1,107 @@
+package org.home.work;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.work.messages.MessageController;
+import org.home.work.messages.MessageType;
+import org.home.work.messages.RocketEvent;
+import org.home.work.metrics.MetricsConfig;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.RetentionConfig;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.StorageEngine;
+import org.home.work.rockets.StoreConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory of the rocket repository per storage engine. Score is how long a full GC takes with the rockets alive,
+ * {@code bytesPerRocket} is the heap still used after it divided by the number of rockets (history and stats included, same for both engines).
+ * Messages carry their own strings and times, like decoded JSON does.
+ * With {@code archive} every rocket explodes and is moved to the archive (OBJECTS only).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseG1GC"})
+public class StoreFootprintBenchmark {
+
+    @Param({"OBJECTS", "COMPACT"})
+    StorageEngine engine;
+
+    @Param({"1000000"})
+    int rockets;
+
+    @Param({"false"})
+    boolean archive;
+
+    RocketRepository repository;
+    long baseline;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerRocket;
+    }
+
+    @Setup(Level.Iteration)
+    public void launchRockets() {
+        repository = null;
+        baseline = usedAfterGc();
+
+        var storeConfig = new StoreConfig();
+        storeConfig.setEngine(engine);
+        var retentionConfig = new RetentionConfig();
+        if (archive) {
+            retentionConfig.setArchiveAfter(Duration.ofNanos(1));
+        }
+        repository = new RocketRepository(new ReorderConfig(), storeConfig, retentionConfig, new MetricsConfig(), new SimpleMeterRegistry(), Optional.empty());
+
+        var random = ThreadLocalRandom.current();
+        for (int i = 0; i < rockets; i++) {
+            var channel = UUID.randomUUID().toString();
+            var time = Messages.TIME.plusNanos(i);
+            repository.processTelemetry(new MessageController.RocketTelemetry(
+                new MessageController.Metadata(channel, 1, MessageType.LAUNCHED, time),
+                new RocketEvent.Launched("Type-" + (i % 100), random.nextInt(100_000), "MISSION-" + (i % 10))
+            ));
+            repository.processTelemetry(new MessageController.RocketTelemetry(
+                new MessageController.Metadata(channel, 2, MessageType.SPEED_INCREASED, time.plusSeconds(1)),
+                new RocketEvent.SpeedChanged(100)
+            ));
+            if (archive) {
+                repository.processTelemetry(new MessageController.RocketTelemetry(
+                    new MessageController.Metadata(channel, 3, MessageType.EXPLODED, time.plusSeconds(2)),
+                    new RocketEvent.Exploded("PRESSURE_VESSEL_FAILURE")
+                ));
+            }
+        }
+        repository.archiveFinished();
+    }
+
+    @Benchmark
+    public long fullGc(Footprint footprint) {
+        var start = System.nanoTime();
+        System.gc();
+        var pause = System.nanoTime() - start;
+
+        footprint.bytesPerRocket = (used() - baseline) / rockets;
+        return pause + repository.rocketById("").map(rocket -> 1).orElse(0);
+    }
+
+    private static long usedAfterGc() {
+        System.gc();
+        return used();
+    }
+
+    private static long used() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,53 @@
+package org.home.work;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.home.work.messages.BinaryTelemetry;
+import org.home.work.messages.MessageController;
+import org.home.work.messages.TelemetryDecoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding one speed message: the previous ObjectMapper to Map path (including the Integer.parseInt done in Rocket.update)
+ * against the streaming {@link TelemetryDecoder}, and the same message in {@link BinaryTelemetry} format.
+ * Run with the gc profiler, "gc.alloc.rate.norm" is allocated bytes per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TelemetryDecodingBenchmark {
+
+    record MapMetadata(String channel, int messageNumber, String messageType, ZonedDateTime messageTime) {}
+
+    record MapTelemetry(MapMetadata metadata, Map<String, String> message) {}
+
+    final TelemetryDecoder decoder = new TelemetryDecoder();
+    final byte[] json = Messages.speedIncrease("193270a9-c9cf-404a-8f83-838e71d9ae67", 2, 300).getBytes(StandardCharsets.UTF_8);
+    final ByteBuf binary = Unpooled.wrappedBuffer(BinaryTelemetry.encode(Messages.speedTelemetry("193270a9-c9cf-404a-8f83-838e71d9ae67", 2, 300)));
+
+    @Benchmark
+    public int objectMapperToMap() throws JsonProcessingException {
+        var telemetry = App.objectMapper.readValue(new String(json, StandardCharsets.UTF_8), MapTelemetry.class);
+        return Integer.parseInt(telemetry.message().get("by"));
+    }
+
+    @Benchmark
+    public MessageController.RocketTelemetry streamingDecoder() throws IOException {
+        return decoder.decode(json);
+    }
+
+    @Benchmark
+    public MessageController.RocketTelemetry binaryDecoder() {
+        return BinaryTelemetry.decode(binary.readerIndex(0));
+    }
+}
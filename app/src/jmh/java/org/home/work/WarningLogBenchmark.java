@@ -0,0 +1,62 @@
+package org.home.work;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.core.joran.spi.JoranException;
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.RocketBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of redeliveries with the application's logging ({@code logback.xml}) instead of the benchmarks' quiet one:
+ * one rocket's 1000 speed messages, each delivered three times in a row. Score is per message
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WarningLogBenchmark {
+    static final int MESSAGES = 1000;
+
+    MessageController.RocketTelemetry[] messages;
+
+    @Setup
+    public void prepare() throws JoranException {
+        var context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+        var configurator = new JoranConfigurator();
+        configurator.setContext(context);
+        configurator.doConfigure(WarningLogBenchmark.class.getResource("/logback.xml"));
+
+        var list = new ArrayList<MessageController.RocketTelemetry>();
+        list.add(Messages.launchTelemetry("abc", "Falcon-9", 1000, "ARTEMIS"));
+        for (int i = 2; i <= MESSAGES + 1; i++) {
+            var telemetry = Messages.speedTelemetry("abc", i, 10);
+            list.add(telemetry);
+            list.add(telemetry);
+            list.add(telemetry);
+        }
+        messages = list.toArray(MessageController.RocketTelemetry[]::new);
+    }
+
+    @TearDown
+    public void stopLogging() {
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES * 3)
+    public RocketBuffer processTelemetry() {
+        var buffer = new RocketBuffer();
+        for (var telemetry : messages) {
+            buffer.processTelemetry(telemetry);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,249 @@
+package org.home.work.cluster;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.json.JsonMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.ProcessResult;
+import org.home.work.rockets.RocketController;
+import org.home.work.rockets.RocketListCache;
+import org.home.work.rockets.RocketPage;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.RocketSnapshot;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Rockets shared between several nodes ({@code rockets.cluster}). Every channel is owned by one node, picked by a
+ * {@link HashRing} over the peer list, so all messages of a rocket are sequenced in one place.
+ * A node forwards messages of channels it doesn't own to their owner, and asks every node for its part of a rocket list.
+ */
+@Slf4j
+@Singleton
+public class Cluster {
+    private static final Argument<List<RocketSnapshot>> ROCKETS = Argument.listOf(RocketSnapshot.class);
+
+    private final RocketRepository repository;
+    private final JsonMapper jsonMapper;
+    private final String self;
+    private final HashRing ring;
+    // other nodes by URL
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private final HttpClient httpClient;
+
+    public Cluster(ClusterConfig config, RocketRepository repository, JsonMapper jsonMapper) {
+        this.repository = repository;
+        this.jsonMapper = jsonMapper;
+        if (!config.isEnabled()) {
+            this.self = null;
+            this.ring = null;
+            this.httpClient = null;
+            return;
+        }
+
+        this.self = normalize(config.getSelf());
+        var nodes = config.getPeers().stream().map(Cluster::normalize).distinct().toList();
+        if (!nodes.contains(self)) {
+            throw new IllegalStateException("rockets.cluster.self %s is not one of rockets.cluster.peers %s".formatted(self, nodes));
+        }
+        this.ring = new HashRing(nodes, config.getVirtualNodes());
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(config.getTimeout())
+            .build();
+        for (var node : nodes) {
+            if (!node.equals(self)) {
+                peers.put(node, new Peer(node, config, httpClient, jsonMapper));
+            }
+        }
+        log.info("Cluster node {} of {}", self, nodes);
+    }
+
+    public boolean isEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * @return true if this node processes the channel's messages, always without a cluster
+     */
+    public boolean owns(String channel) {
+        return ring == null || ring.owner(channel).equals(self);
+    }
+
+    /**
+     * Sends a message to the node that owns its channel
+     *
+     * @return Result from the owner, failed if it could not be reached
+     */
+    public CompletableFuture<ProcessResult> forward(MessageController.RocketTelemetry telemetry) {
+        return owner(telemetry.metadata().channel()).forward(telemetry);
+    }
+
+    /**
+     * Sends messages of one channel to the node that owns it
+     *
+     * @return Result for each message from the owner, in the same order as given. Failed if it could not be reached
+     */
+    public CompletableFuture<List<ProcessResult>> forward(String channel, List<MessageController.RocketTelemetry> telemetryList) {
+        return owner(channel).forward(telemetryList);
+    }
+
+    /**
+     * @return Rocket from the node that owns it
+     * @throws IllegalStateException if the owner could not be reached
+     */
+    public Optional<RocketSnapshot> rocketById(String channel) {
+        if (owns(channel)) {
+            return repository.rocketById(channel);
+        }
+        var owner = owner(channel);
+        var response = join(owner.get("/rockets/" + encode(channel)));
+        if (response.statusCode() == 404) {
+            return Optional.empty();
+        }
+        return Optional.of(read(owner, response, Argument.of(RocketSnapshot.class)));
+    }
+
+    /**
+     * Asks every node for the page of its own rockets and merges them, each already sorted, into the page of all rockets.
+     * Nodes return at most a page each, so this costs O(nodes * limit log nodes) besides their queries.
+     *
+     * @param query Filter, order and page
+     * @return Sorted page of rockets of the whole cluster
+     * @throws IllegalArgumentException if the cursor is invalid
+     * @throws IllegalStateException    if a node could not be reached
+     */
+    public RocketPage rocketPage(RocketListCache.Query query) {
+        var pathAndQuery = "/cluster/rockets?" + queryString(query);
+        var remote = new ArrayList<CompletableFuture<HttpResponse<byte[]>>>(peers.size());
+        for (var peer : peers.values()) {
+            remote.add(peer.get(pathAndQuery));
+        }
+
+        var pages = new ArrayList<RocketPage>(peers.size() + 1);
+        pages.add(repository.rocketPage(query.filter(), query.sortKey(), query.descending(), query.cursor(), query.limit(), query.includeArchived()));
+        var i = 0;
+        for (var peer : peers.values()) {
+            var response = join(remote.get(i++));
+            if (response.statusCode() == 400) {
+                throw new IllegalArgumentException(new String(response.body(), StandardCharsets.UTF_8));
+            }
+            pages.add(new RocketPage(read(peer, response, ROCKETS), response.headers().firstValue(RocketController.NEXT_CURSOR).orElse(null)));
+        }
+        return merge(pages, query);
+    }
+
+    /**
+     * Pages of different nodes never share a rocket, a rocket has one owner
+     */
+    static RocketPage merge(List<RocketPage> pages, RocketListCache.Query query) {
+        var sortKey = query.sortKey();
+        var order = query.descending() ? sortKey.comparator().reversed() : sortKey.comparator();
+        var pageSize = query.limit() > 0 ? query.limit() : Integer.MAX_VALUE;
+
+        record Head(List<RocketSnapshot> rockets, int index) {
+            RocketSnapshot rocket() {
+                return rockets.get(index);
+            }
+        }
+        var heads = new PriorityQueue<Head>(Math.max(1, pages.size()), Comparator.comparing(Head::rocket, order));
+        var more = false;
+        for (var page : pages) {
+            if (!page.rockets().isEmpty()) {
+                heads.add(new Head(page.rockets(), 0));
+            }
+            more |= page.nextCursor() != null;
+        }
+
+        var merged = new ArrayList<RocketSnapshot>();
+        while (!heads.isEmpty() && merged.size() < pageSize) {
+            var head = heads.poll();
+            merged.add(head.rocket());
+            if (head.index() + 1 < head.rockets().size()) {
+                heads.add(new Head(head.rockets(), head.index() + 1));
+            }
+        }
+        more |= !heads.isEmpty();
+        return new RocketPage(merged, more && !merged.isEmpty() ? sortKey.cursor(merged.getLast()) : null);
+    }
+
+    @PreDestroy
+    void close() {
+        if (httpClient != null) {
+            httpClient.shutdownNow();
+        }
+    }
+
+    private Peer owner(String channel) {
+        var peer = peers.get(ring.owner(channel));
+        if (peer == null) {
+            throw new IllegalArgumentException("channel %s is owned by this node".formatted(channel));
+        }
+        return peer;
+    }
+
+    private <T> T read(Peer peer, HttpResponse<byte[]> response, Argument<T> type) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("%s answered %d".formatted(peer.getUrl(), response.statusCode()));
+        }
+        try {
+            return jsonMapper.readValue(response.body(), type);
+        } catch (IOException e) {
+            throw new IllegalStateException("%s answered unreadable JSON".formatted(peer.getUrl()), e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException(e.getCause().toString(), e.getCause());
+        }
+    }
+
+    private static String queryString(RocketListCache.Query query) {
+        var params = new StringBuilder()
+            .append("sortBy=").append(query.sortKey().str())
+            .append("&orderBy=").append(query.descending() ? "desc" : "asc");
+        query.filter().type().ifPresent(type -> params.append("&type=").append(encode(type)));
+        query.filter().status().ifPresent(status -> params.append("&status=").append(encode(status)));
+        query.filter().mission().ifPresent(mission -> params.append("&mission=").append(encode(mission)));
+        if (query.cursor() != null) {
+            params.append("&cursor=").append(encode(query.cursor()));
+        }
+        if (query.limit() > 0) {
+            params.append("&limit=").append(query.limit());
+        }
+        if (query.includeArchived()) {
+            params.append("&includeArchived=true");
+        }
+        return params.toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static String normalize(String url) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("rockets.cluster.self and rockets.cluster.peers need base URLs of the nodes");
+        }
+        var stripped = url.strip();
+        return stripped.endsWith("/") ? stripped.substring(0, stripped.length() - 1) : stripped;
+    }
+}
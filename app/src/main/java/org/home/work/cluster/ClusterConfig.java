@@ -0,0 +1,27 @@
+package org.home.work.cluster;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties("rockets.cluster")
+public class ClusterConfig {
+    /** share rockets between the nodes in peers, every channel is owned by one of them */
+    private boolean enabled;
+    /** base URL other nodes reach this one at, e.g. http://10.0.0.1:8088. Must be one of peers */
+    private String self;
+    /** base URLs of all nodes, this one included. Every node needs the same list */
+    private List<String> peers = new ArrayList<>();
+    /** points per node on the hash ring, more spread channels more evenly */
+    private int virtualNodes = 128;
+    /** messages forwarded to a node in one request */
+    private int maxBatch = 512;
+    /** forwarding requests to a node at the same time, further messages wait and go in the next batch */
+    private int maxInFlight = 8;
+    /** how long to wait for another node before giving up */
+    private Duration timeout = Duration.ofSeconds(5);
+}
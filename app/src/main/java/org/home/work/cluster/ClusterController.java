@@ -0,0 +1,117 @@
+package org.home.work.cluster;
+
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.Consumes;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Post;
+import io.micronaut.http.annotation.QueryValue;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
+import jakarta.inject.Inject;
+import org.home.work.messages.MessageController;
+import org.home.work.pipeline.IngestPipeline;
+import org.home.work.rockets.ProcessResult;
+import org.home.work.rockets.RocketController;
+import org.home.work.rockets.RocketFilter;
+import org.home.work.rockets.RocketJson;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.SortKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * What nodes of a cluster ask each other. Everything here is answered from this node's own rockets, never passed on again
+ */
+@Controller("/cluster")
+@ExecuteOn(TaskExecutors.BLOCKING)
+public class ClusterController {
+
+    @Inject
+    private RocketRepository repository;
+
+    @Inject
+    private IngestPipeline pipeline;
+
+    @Inject
+    private RocketJson rocketJson;
+
+    /**
+     * Messages forwarded by another node, processed here whoever owns them
+     *
+     * @param body Records as sent by {@link Peer}
+     * @return Result of every message, in the order they were sent
+     */
+    @Post("/messages")
+    @Consumes(Peer.TELEMETRY)
+    HttpResponse<?> receiveMessages(@Body byte[] body) {
+        List<MessageController.RocketTelemetry> telemetryList;
+        try {
+            telemetryList = Peer.decode(body);
+        } catch (IllegalArgumentException e) {
+            return HttpResponse.badRequest(e.getMessage());
+        }
+
+        var byChannel = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < telemetryList.size(); i++) {
+            byChannel.computeIfAbsent(telemetryList.get(i).metadata().channel(), k -> new ArrayList<>()).add(i);
+        }
+
+        var results = new ProcessResult[telemetryList.size()];
+        var queued = new LinkedHashMap<List<Integer>, CompletableFuture<List<ProcessResult>>>();
+        for (var entry : byChannel.entrySet()) {
+            var indexes = entry.getValue();
+            var channelTelemetry = indexes.stream().map(telemetryList::get).toList();
+            if (!pipeline.isEnabled()) {
+                queued.put(indexes, CompletableFuture.completedFuture(repository.processTelemetry(entry.getKey(), channelTelemetry)));
+                continue;
+            }
+            var channelResults = pipeline.submit(entry.getKey(), channelTelemetry);
+            queued.put(indexes, channelResults != null
+                ? channelResults
+                : CompletableFuture.completedFuture(Collections.nCopies(indexes.size(), ProcessResult.REJECTED)));
+        }
+        queued.forEach((indexes, channelResults) -> {
+            var channelList = channelResults.join();
+            for (int i = 0; i < indexes.size(); i++) {
+                results[indexes.get(i)] = channelList.get(i);
+            }
+        });
+        return HttpResponse.ok(List.of(results));
+    }
+
+    /**
+     * Page of this node's rockets, parameters as for {@code /rockets}
+     */
+    @Get("/rockets")
+    HttpResponse<?> rockets(
+        @QueryValue Optional<String> sortBy,
+        @QueryValue Optional<String> orderBy,
+        @QueryValue Optional<String> type,
+        @QueryValue Optional<String> status,
+        @QueryValue Optional<String> mission,
+        @QueryValue Optional<Integer> limit,
+        @QueryValue Optional<String> cursor,
+        @QueryValue Optional<Boolean> includeArchived
+    ) {
+        var descending = orderBy.isPresent() && "desc".equalsIgnoreCase(orderBy.get());
+        try {
+            var page = repository.rocketPage(new RocketFilter(type, status, mission), SortKey.ofStr(sortBy.orElse(null)), descending,
+                cursor.orElse(null), limit.orElse(0), includeArchived.orElse(false));
+            var response = HttpResponse.ok(rocketJson.list(page.rockets())).contentType(MediaType.APPLICATION_JSON_TYPE);
+            if (page.nextCursor() != null) {
+                response.header(RocketController.NEXT_CURSOR, page.nextCursor());
+            }
+            return response;
+        } catch (IllegalArgumentException e) {
+            return HttpResponse.badRequest(e.getMessage());
+        }
+    }
+}
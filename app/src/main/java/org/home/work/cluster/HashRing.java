@@ -0,0 +1,74 @@
+package org.home.work.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Consistent hashing of channels over nodes. Every node has a number of points on a ring of 64-bit hashes,
+ * a channel belongs to the node of the first point at or after the channel's hash.
+ * Adding or removing a node only moves the channels between its points and the ones before them, about 1/n of all.
+ */
+public final class HashRing {
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param nodes        Node names, every node must use the same ones
+     * @param virtualNodes Points per node
+     */
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("hash ring needs nodes and at least one point per node");
+        }
+        var size = nodes.size() * virtualNodes;
+        var hashes = new long[size];
+        var names = new String[size];
+        var i = 0;
+        for (var node : nodes) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[i] = hash(node + "#" + v);
+                names[i++] = node;
+            }
+        }
+
+        var order = IntStream.range(0, size).boxed()
+            .sorted(Comparator.<Integer>comparingLong(p -> hashes[p]).thenComparing(p -> names[p]))
+            .toArray(Integer[]::new);
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int p = 0; p < size; p++) {
+            points[p] = hashes[order[p]];
+            owners[p] = names[order[p]];
+        }
+    }
+
+    /**
+     * @return Node the channel belongs to
+     */
+    public String owner(String channel) {
+        var position = Arrays.binarySearch(points, hash(channel == null ? "" : channel));
+        if (position < 0) {
+            position = -position - 1;
+        }
+        return owners[position == points.length ? 0 : position];
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mix so that similar strings spread over the whole ring
+     */
+    static long hash(String str) {
+        var hash = 0xcbf29ce484222325L;
+        for (var b : str.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,244 @@
+package org.home.work.cluster;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.json.JsonMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.journal.TelemetryCodec;
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.ProcessResult;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Another node of the cluster.
+ * <p>
+ * Messages for its rockets are queued and sent in batches: whoever queues a message sends what is queued, unless
+ * {@link ClusterConfig#getMaxInFlight()} requests are already on their way, then the next one to finish sends it.
+ * So the busier the node, the bigger the batches, and a lone message is never held back waiting for company.
+ * Requests go over HTTP/2 where the node speaks it ({@code micronaut.server.http-version: 2.0}), one connection carrying all of them at once,
+ * otherwise over HTTP/1.1 with a connection each.
+ */
+@Slf4j
+final class Peer {
+    static final String TELEMETRY = "application/x-rocket-telemetry";
+    private static final Argument<List<ProcessResult>> RESULTS = Argument.listOf(ProcessResult.class);
+
+    @Getter
+    private final String url;
+    private final ClusterConfig config;
+    private final HttpClient httpClient;
+    private final JsonMapper jsonMapper;
+    private final URI messages;
+
+    private final ConcurrentLinkedQueue<Forward> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile CompletableFuture<Void> connected;
+
+    private record Forward(byte[] record, CompletableFuture<ProcessResult> result) {}
+
+    Peer(String url, ClusterConfig config, HttpClient httpClient, JsonMapper jsonMapper) {
+        this.url = url;
+        this.config = config;
+        this.httpClient = httpClient;
+        this.jsonMapper = jsonMapper;
+        this.messages = URI.create(url + "/cluster/messages");
+    }
+
+    /**
+     * @return Result from the node, failed if it could not be reached or turned the message away.
+     * Failed with an {@link IllegalArgumentException} if the message can't be encoded, it is not sent
+     */
+    CompletableFuture<ProcessResult> forward(MessageController.RocketTelemetry telemetry) {
+        Forward forward;
+        try {
+            forward = new Forward(TelemetryCodec.encode(telemetry), new CompletableFuture<>());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        queue.add(forward);
+        flush();
+        return forward.result();
+    }
+
+    /**
+     * @return Results in the same order as given. A message that can't be encoded is not sent and is {@link ProcessResult#REJECTED}
+     */
+    CompletableFuture<List<ProcessResult>> forward(List<MessageController.RocketTelemetry> telemetryList) {
+        var results = new ArrayList<CompletableFuture<ProcessResult>>(telemetryList.size());
+        for (var telemetry : telemetryList) {
+            Forward forward;
+            try {
+                forward = new Forward(TelemetryCodec.encode(telemetry), new CompletableFuture<>());
+            } catch (IllegalArgumentException e) {
+                log.warn("Not forwarding message #{} of rocket {}: {}", telemetry.metadata().messageNumber(), telemetry.metadata().channel(), e.getMessage());
+                results.add(CompletableFuture.completedFuture(ProcessResult.REJECTED));
+                continue;
+            }
+            queue.add(forward);
+            results.add(forward.result());
+        }
+        flush();
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> results.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * @param pathAndQuery e.g. /rockets/abc
+     */
+    CompletableFuture<HttpResponse<byte[]>> get(String pathAndQuery) {
+        var request = HttpRequest.newBuilder(URI.create(url + pathAndQuery)).timeout(config.getTimeout()).GET().build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private void flush() {
+        while (!queue.isEmpty()) {
+            var running = inFlight.get();
+            if (running >= config.getMaxInFlight()) {
+                return; // sent when one of them finishes
+            }
+            if (!inFlight.compareAndSet(running, running + 1)) {
+                continue;
+            }
+
+            var batch = new ArrayList<Forward>();
+            Forward forward;
+            while (batch.size() < config.getMaxBatch() && (forward = queue.poll()) != null) {
+                batch.add(forward);
+            }
+            if (batch.isEmpty()) {
+                inFlight.decrementAndGet(); // someone else took them, check again in case more came meanwhile
+                continue;
+            }
+            send(batch);
+        }
+    }
+
+    /**
+     * Over plain HTTP the switch to HTTP/2 happens on the first request of a connection, which the server can't take on a request
+     * with a body. So a connection is opened with a GET first, and again after a failure, since the connection may be gone
+     */
+    private CompletableFuture<Void> connect() {
+        var current = connected;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (connected == null) {
+                var connection = new CompletableFuture<Void>();
+                connected = connection;
+                get("/cluster/rockets?limit=1").whenComplete((response, error) -> {
+                    if (error != null) {
+                        disconnected(connection);
+                    }
+                    connection.complete(null);
+                });
+            }
+            return connected;
+        }
+    }
+
+    private synchronized void disconnected(CompletableFuture<Void> connection) {
+        if (connected == connection) {
+            connected = null;
+        }
+    }
+
+    private void send(List<Forward> batch) {
+        var connection = connect();
+        connection.thenRun(() -> post(batch, connection));
+    }
+
+    private void post(List<Forward> batch, CompletableFuture<Void> connection) {
+        var request = HttpRequest.newBuilder(messages)
+            .timeout(config.getTimeout())
+            .header("Content-Type", TELEMETRY)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(encode(batch)))
+            .build();
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+            inFlight.decrementAndGet();
+            if (error != null) {
+                disconnected(connection);
+            }
+            try {
+                complete(batch, response, error);
+            } finally {
+                flush();
+            }
+        });
+    }
+
+    private void complete(List<Forward> batch, HttpResponse<byte[]> response, Throwable error) {
+        if (error == null && response.statusCode() != 200) {
+            error = new IllegalStateException("%s answered %d".formatted(url, response.statusCode()));
+        }
+        List<ProcessResult> results = null;
+        if (error == null) {
+            try {
+                results = jsonMapper.readValue(response.body(), RESULTS);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error == null && results.size() != batch.size()) {
+            error = new IllegalStateException("%s answered %d results for %d messages".formatted(url, results.size(), batch.size()));
+        }
+
+        if (error != null) {
+            log.warn("Forwarding {} message(s) to {} failed: {}", batch.size(), url, error.toString());
+            for (var forward : batch) {
+                forward.result().completeExceptionally(error);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(results.get(i));
+        }
+    }
+
+    /**
+     * Records one after another, each as int length and {@link TelemetryCodec} record
+     */
+    private static byte[] encode(List<Forward> batch) {
+        var size = 0;
+        for (var forward : batch) {
+            size += Integer.BYTES + forward.record().length;
+        }
+        var buffer = ByteBuffer.allocate(size);
+        for (var forward : batch) {
+            buffer.putInt(forward.record().length).put(forward.record());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if a record is cut short
+     */
+    static List<MessageController.RocketTelemetry> decode(byte[] body) {
+        var buffer = ByteBuffer.wrap(body);
+        var telemetryList = new ArrayList<MessageController.RocketTelemetry>();
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < Integer.BYTES) {
+                throw new IllegalArgumentException("telemetry record cut short");
+            }
+            var length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("telemetry record cut short");
+            }
+            telemetryList.add(TelemetryCodec.decode(buffer.slice(buffer.position(), length)));
+            buffer.position(buffer.position() + length);
+        }
+        return telemetryList;
+    }
+}
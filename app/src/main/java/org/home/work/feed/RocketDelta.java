@@ -0,0 +1,45 @@
+package org.home.work.feed;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.serde.annotation.Serdeable;
+import org.home.work.rockets.RocketSnapshot;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * Change of one rocket: its channel and last message number, plus only the properties that changed (others are left out of the JSON).
+ * The first change of a rocket, its launch, has all of them.
+ */
+@Serdeable
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RocketDelta(
+    String id,
+    int lastMessageNumber,
+    String type,
+    Integer speed,
+    String mission,
+    ZonedDateTime launchTime,
+    String status,
+    ZonedDateTime missionEndTime,
+    Boolean degraded
+) {
+    public static RocketDelta of(RocketSnapshot before, RocketSnapshot after) {
+        var all = before.id() == null;
+        return new RocketDelta(
+            after.id(),
+            after.lastMessageNumber(),
+            changed(all, before.type(), after.type()),
+            all || before.speed() != after.speed() ? after.speed() : null,
+            changed(all, before.mission(), after.mission()),
+            changed(all, before.launchTime(), after.launchTime()),
+            changed(all, before.status(), after.status()),
+            changed(all, before.missionEndTime(), after.missionEndTime()),
+            all || before.degraded() != after.degraded() ? after.degraded() : null
+        );
+    }
+
+    private static <T> T changed(boolean all, T before, T after) {
+        return all || !Objects.equals(before, after) ? after : null;
+    }
+}
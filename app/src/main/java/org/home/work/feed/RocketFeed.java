@@ -0,0 +1,219 @@
+package org.home.work.feed;
+
+import io.micronaut.http.sse.Event;
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.RocketListener;
+import org.home.work.rockets.RocketSnapshot;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Pushes rocket changes to subscribers as {@link RocketDelta}s.
+ * <p>
+ * Processing a message only records the rocket in a map of changed rockets (and nothing while nobody subscribes),
+ * one dispatcher thread hands the changes to subscribers, so subscribers never slow down message processing.
+ * <p>
+ * Every subscriber has a bounded buffer of unsent changes with at most one entry per rocket: when a rocket changes again
+ * before its change was sent, the two are merged into one, so a slow client gets fewer and more recent changes.
+ * A subscriber that falls behind on more than {@code bufferSize} rockets gets an error and is dropped,
+ * it should load the rockets again and subscribe anew.
+ */
+@Slf4j
+public class RocketFeed implements RocketListener {
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final int bufferSize;
+    private final Set<Feed> feeds = ConcurrentHashMap.newKeySet();
+    // rockets changed since the dispatcher last looked: state before the first change and after the latest one
+    private final ConcurrentHashMap<String, Change> changed = new ConcurrentHashMap<>();
+    // runs while there are subscribers, written under this
+    private volatile Thread dispatcher;
+    // set by the dispatcher before it parks, so rocket changes know to wake it up
+    private volatile boolean sleeping;
+
+    private record Change(RocketSnapshot before, RocketSnapshot after) {
+        Change merge(Change newer) {
+            return new Change(before, newer.after);
+        }
+    }
+
+    public RocketFeed() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize Most rockets with unsent changes per subscriber
+     */
+    public RocketFeed(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void rocketChanged(RocketSnapshot before, RocketSnapshot after, MessageController.RocketTelemetry telemetry) {
+        if (feeds.isEmpty() || after.id() == null) {
+            return;
+        }
+        changed.merge(after.id(), new Change(before, after), Change::merge);
+        if (sleeping) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Nothing is sent for rockets as they are at the time of subscribing, only for their changes from then on
+     *
+     * @param type    Only rockets of this type (ignoring case), null for all
+     * @param channel Only the rocket of this channel, null for all
+     * @return Server-sent events with a {@link RocketDelta} each
+     */
+    public Publisher<Event<RocketDelta>> subscribe(String type, String channel) {
+        Predicate<RocketSnapshot> filter = rocket -> (type == null || type.equalsIgnoreCase(rocket.type()))
+            && (channel == null || channel.equals(rocket.id()));
+        return subscriber -> {
+            var feed = new Feed(Objects.requireNonNull(subscriber), filter);
+            subscriber.onSubscribe(feed);
+            feeds.add(feed);
+            if (feed.done) {
+                feeds.remove(feed); // cancelled right away
+                return;
+            }
+            startDispatcher();
+        };
+    }
+
+    /**
+     * @return Current subscribers
+     */
+    public int subscribers() {
+        return feeds.size();
+    }
+
+    private synchronized void startDispatcher() {
+        if (dispatcher == null && !feeds.isEmpty()) {
+            dispatcher = Thread.ofPlatform().name("rocket-feed").daemon().start(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        while (true) {
+            for (var channel : changed.keySet()) {
+                var change = changed.remove(channel);
+                if (change == null) {
+                    continue;
+                }
+                for (var feed : feeds) {
+                    feed.offer(channel, change);
+                }
+            }
+            if (!changed.isEmpty()) {
+                continue;
+            }
+
+            synchronized (this) {
+                if (feeds.isEmpty()) {
+                    dispatcher = null;
+                    changed.clear();
+                    return;
+                }
+            }
+            sleeping = true;
+            // a change made before the flag was seen would otherwise wait for the timeout
+            if (changed.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    /**
+     * One subscriber. Signals to it are serialized by {@link #drain()}: whichever thread gets there first
+     * (the dispatcher after a change, the subscriber's thread after requesting more) sends whatever can be sent
+     */
+    private final class Feed implements Subscription {
+        private final Subscriber<? super Event<RocketDelta>> subscriber;
+        private final Predicate<RocketSnapshot> filter;
+        // unsent changes in the order rockets first changed, guarded by this
+        private final LinkedHashMap<String, Change> pending = new LinkedHashMap<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger draining = new AtomicInteger();
+        private volatile Throwable error;
+        private volatile boolean done;
+
+        Feed(Subscriber<? super Event<RocketDelta>> subscriber, Predicate<RocketSnapshot> filter) {
+            this.subscriber = subscriber;
+            this.filter = filter;
+        }
+
+        void offer(String channel, Change change) {
+            if (done || !filter.test(change.after())) {
+                return;
+            }
+            synchronized (this) {
+                var unsent = pending.get(channel);
+                if (unsent != null) {
+                    pending.put(channel, unsent.merge(change));
+                } else if (pending.size() < bufferSize) {
+                    pending.put(channel, change);
+                } else if (error == null) {
+                    log.warn("Dropping a rocket stream subscriber, {} rockets changed since it last kept up", bufferSize);
+                    error = new IllegalStateException("Subscriber fell behind on more than " + bufferSize + " rockets");
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " events, must be positive");
+            } else {
+                requested.accumulateAndGet(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            feeds.remove(this);
+        }
+
+        private void drain() {
+            if (draining.getAndIncrement() != 0) {
+                return; // the thread draining now will loop once more
+            }
+            do {
+                if (!done && error != null) {
+                    cancel();
+                    subscriber.onError(error);
+                }
+                while (!done && requested.get() > 0) {
+                    Change change;
+                    synchronized (this) {
+                        var unsent = pending.values().iterator();
+                        if (!unsent.hasNext()) {
+                            break;
+                        }
+                        change = unsent.next();
+                        unsent.remove();
+                    }
+                    requested.decrementAndGet();
+                    subscriber.onNext(Event.of(RocketDelta.of(change.before(), change.after())));
+                }
+            } while (draining.decrementAndGet() != 0);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.home.work.history;
+
+import java.util.Arrays;
+
+/**
+ * Up to {@link #MAX_POINTS} speed points of one rocket, stored as three compressed columns of varints:
+ * <ul>
+ *     <li>time - delta of delta of epoch microseconds, regularly spaced messages take one byte</li>
+ *     <li>speed - delta to the previous speed</li>
+ *     <li>message number - delta to the previous number, usually 1</li>
+ * </ul>
+ * The first point is kept uncompressed in the header. Deltas are zigzag encoded, so small negative values stay small.
+ * Not thread safe, {@link RocketHistory} guards it.
+ */
+final class HistoryChunk {
+    static final int MAX_POINTS = 1024;
+
+    private final long firstTime;
+    private final int firstSpeed;
+    private final int firstMessageNumber;
+    private long minTime;
+    private long maxTime;
+    private int count;
+
+    private final Column times = new Column();
+    private final Column speeds = new Column();
+    private final Column messageNumbers = new Column();
+
+    // last appended point, deltas continue from it
+    private long lastTime;
+    private long lastTimeDelta;
+    private int lastSpeed;
+    private int lastMessageNumber;
+
+    @FunctionalInterface
+    interface PointConsumer {
+        void accept(long time, int speed, int messageNumber);
+    }
+
+    HistoryChunk(long time, int speed, int messageNumber) {
+        this.firstTime = this.lastTime = this.minTime = this.maxTime = time;
+        this.firstSpeed = this.lastSpeed = speed;
+        this.firstMessageNumber = this.lastMessageNumber = messageNumber;
+        this.count = 1;
+    }
+
+    /**
+     * @return false if the chunk is full
+     */
+    boolean append(long time, int speed, int messageNumber) {
+        if (count == MAX_POINTS) {
+            return false;
+        }
+
+        var timeDelta = time - lastTime;
+        times.putSigned(timeDelta - lastTimeDelta);
+        speeds.putSigned(speed - lastSpeed);
+        messageNumbers.putSigned(messageNumber - lastMessageNumber);
+
+        lastTime = time;
+        lastTimeDelta = timeDelta;
+        lastSpeed = speed;
+        lastMessageNumber = messageNumber;
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        count++;
+        return true;
+    }
+
+    /**
+     * Calls consumer for every point with from <= time < to, in the order they were appended
+     */
+    void forEach(long from, long to, PointConsumer consumer) {
+        if (maxTime < from || minTime >= to) {
+            return;
+        }
+
+        long time = firstTime;
+        long timeDelta = 0;
+        int speed = firstSpeed;
+        int messageNumber = firstMessageNumber;
+        var timeReader = times.reader();
+        var speedReader = speeds.reader();
+        var numberReader = messageNumbers.reader();
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                timeDelta += timeReader.nextSigned();
+                time += timeDelta;
+                speed += (int) speedReader.nextSigned();
+                messageNumber += (int) numberReader.nextSigned();
+            }
+
+            if (time >= from && time < to) {
+                consumer.accept(time, speed, messageNumber);
+            }
+        }
+    }
+
+    /**
+     * Releases spare capacity once no more points will be appended
+     */
+    void trim() {
+        times.trim();
+        speeds.trim();
+        messageNumbers.trim();
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return Bytes used by the point data, without object headers
+     */
+    long sizeInBytes() {
+        return Long.BYTES * 5 + Integer.BYTES * 5 + times.data.length + speeds.data.length + messageNumbers.data.length;
+    }
+
+    /**
+     * Growable byte array of zigzag varints
+     */
+    private static final class Column {
+        private byte[] data = new byte[32];
+        private int size;
+
+        void putSigned(long value) {
+            var zigzag = (value << 1) ^ (value >> 63);
+            if (size + 10 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 10));
+            }
+            while ((zigzag & ~0x7FL) != 0) {
+                data[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            data[size++] = (byte) zigzag;
+        }
+
+        Reader reader() {
+            return new Reader(data);
+        }
+
+        void trim() {
+            if (data.length > size) {
+                data = Arrays.copyOf(data, size);
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        long nextSigned() {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
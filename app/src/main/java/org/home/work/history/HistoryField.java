@@ -0,0 +1,30 @@
+package org.home.work.history;
+
+/**
+ * Rocket properties with a history
+ */
+public enum HistoryField {
+    SPEED("speed"),
+    MISSION("mission"),
+    STATUS("status");
+
+    private final String str;
+
+    HistoryField(String str) {
+        this.str = str;
+    }
+
+    /**
+     * @param str Query parameter value
+     * @return Matching field
+     * @throws IllegalArgumentException if there is no such field
+     */
+    public static HistoryField ofStr(String str) {
+        for (var field : values()) {
+            if (field.str.equals(str)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("unknown history field: " + str);
+    }
+}
@@ -0,0 +1,20 @@
+package org.home.work.history;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Value of a rocket property after the message with given number
+ */
+public sealed interface HistoryPoint {
+    ZonedDateTime time();
+
+    int messageNumber();
+
+    @Serdeable
+    record Speed(ZonedDateTime time, int messageNumber, int speed) implements HistoryPoint {}
+
+    @Serdeable
+    record Text(ZonedDateTime time, int messageNumber, String value) implements HistoryPoint {}
+}
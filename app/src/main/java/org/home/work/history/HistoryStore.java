@@ -0,0 +1,43 @@
+package org.home.work.history;
+
+import org.home.work.messages.MessageController;
+import org.home.work.messages.RocketEvent;
+import org.home.work.rockets.RocketListener;
+import org.home.work.rockets.RocketSnapshot;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records every applied message's effect on speed, mission and status, by rocket channel.
+ * History starts with the messages processed since startup (including the journal replayed after the state snapshot).
+ */
+public class HistoryStore implements RocketListener {
+    private final ConcurrentHashMap<String, RocketHistory> histories = new ConcurrentHashMap<>();
+
+    @Override
+    public void rocketChanged(RocketSnapshot before, RocketSnapshot after, MessageController.RocketTelemetry telemetry) {
+        if (telemetry == null || after.id() == null) {
+            return; // not caused by a message, nothing happened at a point in time
+        }
+
+        var history = histories.computeIfAbsent(after.id(), k -> new RocketHistory());
+        var time = telemetry.metadata().messageTime();
+        var messageNumber = telemetry.metadata().messageNumber();
+
+        if (telemetry.event() instanceof RocketEvent.Launched || telemetry.event() instanceof RocketEvent.SpeedChanged) {
+            history.speed(time, messageNumber, after.speed());
+        }
+        if (!Objects.equals(before.mission(), after.mission())) {
+            history.mission(time, messageNumber, after.mission());
+        }
+        if (!Objects.equals(before.status(), after.status())) {
+            history.status(time, messageNumber, after.status());
+        }
+    }
+
+    public Optional<RocketHistory> history(String channel) {
+        return Optional.ofNullable(histories.get(channel));
+    }
+}
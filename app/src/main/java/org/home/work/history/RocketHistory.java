@@ -0,0 +1,102 @@
+package org.home.work.history;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Past values of one rocket. Speed changes are frequent and go to compressed {@link HistoryChunk}s,
+ * mission and status change a few times in a rocket's life and are kept as they are.
+ * Appended to by the rocket's buffer while it holds its lock, read by requests.
+ */
+public class RocketHistory {
+    private final List<HistoryChunk> chunks = new ArrayList<>();
+    private final List<Change> missions = new ArrayList<>();
+    private final List<Change> statuses = new ArrayList<>();
+    private long lastTime;
+
+    private record Change(long time, int messageNumber, String value) {}
+
+    public synchronized void speed(ZonedDateTime time, int messageNumber, int speed) {
+        var micros = micros(time);
+        if (chunks.isEmpty() || !chunks.getLast().append(micros, speed, messageNumber)) {
+            if (!chunks.isEmpty()) {
+                chunks.getLast().trim();
+            }
+            chunks.add(new HistoryChunk(micros, speed, messageNumber));
+        }
+    }
+
+    public synchronized void mission(ZonedDateTime time, int messageNumber, String mission) {
+        missions.add(new Change(micros(time), messageNumber, mission));
+    }
+
+    public synchronized void status(ZonedDateTime time, int messageNumber, String status) {
+        statuses.add(new Change(micros(time), messageNumber, status));
+    }
+
+    /**
+     * @param field Property to return
+     * @param from  Earliest message time, inclusive, null for no limit
+     * @param to    Latest message time, exclusive, null for no limit
+     * @return Values of the property in the order messages were applied
+     */
+    public synchronized List<HistoryPoint> points(HistoryField field, ZonedDateTime from, ZonedDateTime to) {
+        var fromMicros = from == null ? Long.MIN_VALUE : toMicros(from);
+        var toMicros = to == null ? Long.MAX_VALUE : toMicros(to);
+
+        var points = new ArrayList<HistoryPoint>();
+        switch (field) {
+            case SPEED -> {
+                for (var chunk : chunks) {
+                    chunk.forEach(fromMicros, toMicros, (time, speed, messageNumber) ->
+                        points.add(new HistoryPoint.Speed(time(time), messageNumber, speed)));
+                }
+            }
+            case MISSION -> addChanges(missions, fromMicros, toMicros, points);
+            case STATUS -> addChanges(statuses, fromMicros, toMicros, points);
+        }
+        return points;
+    }
+
+    /**
+     * @return Number of speed points
+     */
+    public synchronized int speedPoints() {
+        return chunks.stream().mapToInt(HistoryChunk::count).sum();
+    }
+
+    /**
+     * @return Bytes used by speed point data
+     */
+    public synchronized long speedBytes() {
+        return chunks.stream().mapToLong(HistoryChunk::sizeInBytes).sum();
+    }
+
+    private static void addChanges(List<Change> changes, long from, long to, List<HistoryPoint> points) {
+        for (var change : changes) {
+            if (change.time() >= from && change.time() < to) {
+                points.add(new HistoryPoint.Text(time(change.time()), change.messageNumber(), change.value()));
+            }
+        }
+    }
+
+    private long micros(ZonedDateTime time) {
+        // a message without a time is placed at the previous one
+        if (time != null) {
+            lastTime = toMicros(time);
+        }
+        return lastTime;
+    }
+
+    private static long toMicros(ZonedDateTime time) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, time.toInstant());
+    }
+
+    private static ZonedDateTime time(long micros) {
+        return ZonedDateTime.ofInstant(Instant.EPOCH.plus(micros, ChronoUnit.MICROS), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,13 @@
+package org.home.work.journal;
+
+/**
+ * When journal writes are forced to disk
+ */
+public enum FsyncPolicy {
+    /** after every written batch, requests wait for it: an acknowledged message survives a power loss */
+    ALWAYS,
+    /** at most every {@link JournalConfig#getFsyncInterval()}, requests don't wait: a power loss may lose the last interval */
+    INTERVAL,
+    /** left to the operating system: survives an application crash, not a power loss */
+    NEVER
+}
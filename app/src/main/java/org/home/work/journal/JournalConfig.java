@@ -0,0 +1,23 @@
+package org.home.work.journal;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("rockets.journal")
+public class JournalConfig {
+    private boolean enabled;
+    private String directory = "journal";
+    /** bytes per segment file before a new one is started */
+    private long segmentSize = 64L * 1024 * 1024;
+    private FsyncPolicy fsync = FsyncPolicy.INTERVAL;
+    private Duration fsyncInterval = Duration.ofMillis(100);
+    /** records waiting to be written before appending blocks */
+    private int queueCapacity = 65536;
+    /** records written together in one batch (group commit) */
+    private int maxBatch = 4096;
+    /** how often a state snapshot is written, startup replays the journal after the newest one */
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+}
@@ -0,0 +1,43 @@
+package org.home.work.journal;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.context.event.StartupEvent;
+import io.micronaut.core.util.StringUtils;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.rockets.RocketRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Rebuilds rocket state when the application starts, before the HTTP server accepts messages:
+ * the newest state snapshot, then the journal after it
+ */
+@Slf4j
+@Singleton
+@Requires(property = "rockets.journal.enabled", value = StringUtils.TRUE)
+public class JournalRecovery implements ApplicationEventListener<StartupEvent> {
+    private final TelemetryJournal journal;
+    private final RocketRepository repository;
+    private final StateSnapshotter snapshotter;
+
+    public JournalRecovery(TelemetryJournal journal, RocketRepository repository, StateSnapshotter snapshotter) {
+        this.journal = journal;
+        this.repository = repository;
+        this.snapshotter = snapshotter;
+    }
+
+    @Override
+    public void onApplicationEvent(StartupEvent event) {
+        var start = System.nanoTime();
+        try {
+            var sequence = snapshotter.restore();
+            var count = journal.replay(sequence, repository::replay);
+            log.info("Replayed {} journaled messages in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal replay failed", e);
+        }
+    }
+}
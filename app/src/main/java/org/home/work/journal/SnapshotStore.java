@@ -0,0 +1,253 @@
+package org.home.work.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.RocketBuffer;
+import org.home.work.rockets.RocketSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * State snapshot files: the state of every rocket as of a journal sequence number, so startup only replays the journal after it.
+ * <p>
+ * Layout: int magic, short format version, long journal sequence number, int rocket count, then for each rocket
+ * its channel, {@link RocketSnapshot} fields, int queued message count and each queued message as int length + {@link TelemetryCodec} record.
+ * The file ends with the CRC32 of everything before it. Strings and times are stored as in {@link TelemetryCodec}.
+ * <p>
+ * Files are written under a temporary name and renamed when complete, so a crash never leaves a partial snapshot behind.
+ */
+@Slf4j
+public class SnapshotStore {
+    static final int MAGIC = 0x524B5353; // "RKSS"
+    static final short VERSION = 3; // 2: queued messages with int string lengths, 3: all strings
+    private static final String SUFFIX = ".snapshot";
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    /**
+     * @param sequence Journal sequence number the snapshot includes everything up to
+     * @param rockets  State by rocket channel
+     */
+    public record Snapshot(long sequence, Map<String, RocketBuffer.State> rockets) {}
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return Written file
+     */
+    public Path write(Snapshot snapshot) throws IOException {
+        Files.createDirectories(directory);
+        var file = directory.resolve("%020d%s".formatted(snapshot.sequence(), SUFFIX));
+        var temp = directory.resolve(file.getFileName() + ".tmp");
+
+        try (var stream = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+            var crc = new CRC32();
+            var out = new DataOutputStream(new CheckedOutputStream(stream, crc));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(snapshot.sequence());
+            out.writeInt(snapshot.rockets().size());
+            for (var entry : snapshot.rockets().entrySet()) {
+                writeString(out, entry.getKey());
+                writeRocket(out, entry.getValue().rocket());
+
+                var queued = entry.getValue().queued();
+                out.writeInt(queued.size());
+                for (var telemetry : queued) {
+                    var record = TelemetryCodec.encode(telemetry);
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+            }
+            out.flush();
+            stream.write(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array());
+        }
+
+        try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Reads the newest snapshot that is complete and of a known version, older ones are tried if a newer one can't be read
+     *
+     * @return Snapshot, empty if there is none
+     */
+    public Optional<Snapshot> readLatest() throws IOException {
+        var files = files();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try {
+                return Optional.of(read(files.get(i)));
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Can't read state snapshot {}: {}", files.get(i).getFileName(), e.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return Sequence numbers of the snapshots on disk, oldest first
+     */
+    public List<Long> sequences() throws IOException {
+        return files().stream().map(SnapshotStore::sequenceOf).toList();
+    }
+
+    /**
+     * Deletes snapshots older than given sequence number
+     */
+    public void deleteBefore(long sequence) throws IOException {
+        for (var file : files()) {
+            if (sequenceOf(file) < sequence) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    Snapshot read(Path file) throws IOException {
+        try (var stream = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            var crc = new CRC32();
+            var in = new DataInputStream(new CheckedInputStream(stream, crc));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("not a state snapshot");
+            }
+            var version = in.readShort();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unknown format version " + version);
+            }
+
+            var sequence = in.readLong();
+            var count = in.readInt();
+            var rockets = HashMap.<String, RocketBuffer.State>newHashMap(count);
+            for (int i = 0; i < count; i++) {
+                var channel = readString(in);
+                var rocket = readRocket(in);
+
+                var queuedCount = in.readInt();
+                var queued = new ArrayList<MessageController.RocketTelemetry>(queuedCount);
+                for (int j = 0; j < queuedCount; j++) {
+                    var record = new byte[in.readInt()];
+                    in.readFully(record);
+                    queued.add(TelemetryCodec.decode(ByteBuffer.wrap(record)));
+                }
+                rockets.put(channel, new RocketBuffer.State(rocket, queued));
+            }
+
+            var expected = (int) crc.getValue();
+            if (new DataInputStream(stream).readInt() != expected) {
+                throw new IllegalArgumentException("checksum mismatch");
+            }
+            return new Snapshot(sequence, rockets);
+        }
+    }
+
+    /**
+     * Writes the rocket the way snapshot files hold it, also used by the rocket archive
+     */
+    public static void writeRocket(DataOutputStream out, RocketSnapshot rocket) throws IOException {
+        writeString(out, rocket.id());
+        writeString(out, rocket.type());
+        out.writeInt(rocket.speed());
+        writeString(out, rocket.mission());
+        writeTime(out, rocket.launchTime());
+        out.writeInt(rocket.lastMessageNumber());
+        writeString(out, rocket.status());
+        writeTime(out, rocket.missionEndTime());
+        out.writeBoolean(rocket.degraded());
+    }
+
+    public static RocketSnapshot readRocket(DataInputStream in) throws IOException {
+        return new RocketSnapshot(
+            readString(in),
+            readString(in),
+            in.readInt(),
+            readString(in),
+            readTime(in),
+            in.readInt(),
+            readString(in),
+            readTime(in),
+            in.readBoolean()
+        );
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        var bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, ZonedDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(NO_TIME);
+            out.writeInt(0);
+        } else {
+            out.writeLong(time.toEpochSecond());
+            out.writeInt(time.getNano());
+        }
+    }
+
+    private static ZonedDateTime readTime(DataInputStream in) throws IOException {
+        var epochSecond = in.readLong();
+        var nanos = in.readInt();
+        return epochSecond == NO_TIME ? null : ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nanos), ZoneOffset.UTC);
+    }
+
+    private List<Path> files() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (var files = Files.list(directory)) {
+            return files
+                .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                .sorted(Comparator.comparing(SnapshotStore::sequenceOf))
+                .toList();
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        var name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+}
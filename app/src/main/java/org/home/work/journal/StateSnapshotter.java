@@ -0,0 +1,74 @@
+package org.home.work.journal;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.rockets.RocketRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Writes a state snapshot every {@code rockets.journal.snapshot-interval} and deletes journal segments it covers,
+ * so startup replays at most one interval of messages on top of the newest snapshot.
+ * <p>
+ * The journal sequence number is read before rockets are captured. Every message journaled up to it was already processed,
+ * messages processed while capturing are replayed again on startup and come back as duplicates.
+ * The previous snapshot and the journal after it are kept, in case the newest can't be read.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "rockets.journal.enabled", value = StringUtils.TRUE)
+public class StateSnapshotter {
+    private final TelemetryJournal journal;
+    private final RocketRepository repository;
+    private final SnapshotStore store;
+
+    public StateSnapshotter(JournalConfig config, TelemetryJournal journal, RocketRepository repository) {
+        this.journal = journal;
+        this.repository = repository;
+        this.store = new SnapshotStore(Path.of(config.getDirectory()));
+    }
+
+    /**
+     * Loads the newest snapshot into the repository
+     *
+     * @return Journal sequence number the snapshot covers, replay the journal after it. 0 if there is no snapshot
+     */
+    public long restore() throws IOException {
+        var snapshot = store.readLatest();
+        if (snapshot.isEmpty()) {
+            return 0;
+        }
+
+        snapshot.get().rockets().forEach(repository::restore);
+        log.info("Restored {} rockets from state snapshot at #{}", snapshot.get().rockets().size(), snapshot.get().sequence());
+        return snapshot.get().sequence();
+    }
+
+    @Scheduled(fixedDelay = "${rockets.journal.snapshot-interval:5m}", initialDelay = "${rockets.journal.snapshot-interval:5m}")
+    public void snapshot() {
+        try {
+            var sequence = journal.lastWrittenSequence();
+            var sequences = store.sequences();
+            if (!sequences.isEmpty() && sequences.getLast() == sequence) {
+                return; // nothing new
+            }
+
+            var start = System.nanoTime();
+            var file = store.write(new SnapshotStore.Snapshot(sequence, repository.states()));
+            log.info("Wrote state snapshot {} in {} ms", file.getFileName(), (System.nanoTime() - start) / 1_000_000);
+
+            if (!sequences.isEmpty()) {
+                var previous = sequences.getLast();
+                store.deleteBefore(previous);
+                journal.deleteUpTo(previous);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("State snapshot failed", e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.home.work.journal;
+
+import org.home.work.messages.MessageController;
+import org.home.work.messages.MessageType;
+import org.home.work.messages.RocketEvent;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Compact binary form of {@link MessageController.RocketTelemetry} for files.
+ * <p>
+ * Layout: channel, int message number, byte {@link MessageType#code()}, message time (long epoch second + int nanos,
+ * {@link Long#MIN_VALUE} seconds for no time), then the event fields of that type.
+ * Strings are an int byte length (-1 for null) and UTF-8 bytes, so whatever the decoders accepted can be stored.
+ * Times are read back in UTC.
+ */
+public class TelemetryCodec {
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private TelemetryCodec() {}
+
+    public static byte[] encode(MessageController.RocketTelemetry telemetry) {
+        var metadata = telemetry.metadata();
+        var channel = bytes(metadata.channel());
+        var event = telemetry.event();
+
+        byte[] text1 = null;
+        byte[] text2 = null;
+        switch (event) {
+            case RocketEvent.Launched launched -> {
+                text1 = bytes(launched.type());
+                text2 = bytes(launched.mission());
+            }
+            case RocketEvent.Exploded exploded -> text1 = bytes(exploded.reason());
+            case RocketEvent.MissionChanged missionChanged -> text1 = bytes(missionChanged.newMission());
+            case RocketEvent.SpeedChanged ignored -> {}
+            case RocketEvent.Unknown ignored -> {}
+        }
+
+        var size = stringSize(channel) + Integer.BYTES + 1 + Long.BYTES + Integer.BYTES
+            + (text1 != null ? stringSize(text1) : 0) + (text2 != null ? stringSize(text2) : 0)
+            + (event instanceof RocketEvent.Launched || event instanceof RocketEvent.SpeedChanged ? Integer.BYTES : 0);
+
+        var buffer = ByteBuffer.allocate(size);
+        putString(buffer, channel);
+        buffer.putInt(metadata.messageNumber());
+        buffer.put(metadata.messageType().code());
+        if (metadata.messageTime() == null) {
+            buffer.putLong(NO_TIME).putInt(0);
+        } else {
+            buffer.putLong(metadata.messageTime().toEpochSecond()).putInt(metadata.messageTime().getNano());
+        }
+
+        switch (event) {
+            case RocketEvent.Launched launched -> {
+                putString(buffer, text1);
+                buffer.putInt(launched.launchSpeed());
+                putString(buffer, text2);
+            }
+            case RocketEvent.SpeedChanged speedChanged -> buffer.putInt(speedChanged.delta());
+            case RocketEvent.Exploded ignored -> putString(buffer, text1);
+            case RocketEvent.MissionChanged ignored -> putString(buffer, text1);
+            case RocketEvent.Unknown ignored -> {}
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param buffer Positioned at an encoded record, left after it
+     * @throws IllegalArgumentException if the record is cut short
+     */
+    public static MessageController.RocketTelemetry decode(ByteBuffer buffer) {
+        try {
+            var channel = getString(buffer);
+            var messageNumber = buffer.getInt();
+            var type = MessageType.ofCode(buffer.get());
+            var epochSecond = buffer.getLong();
+            var nanos = buffer.getInt();
+            var time = epochSecond == NO_TIME ? null : ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nanos), ZoneOffset.UTC);
+
+            RocketEvent event = switch (type) {
+                case LAUNCHED -> new RocketEvent.Launched(getString(buffer), buffer.getInt(), getString(buffer));
+                case SPEED_INCREASED, SPEED_DECREASED -> new RocketEvent.SpeedChanged(buffer.getInt());
+                case EXPLODED -> new RocketEvent.Exploded(getString(buffer));
+                case MISSION_CHANGED -> new RocketEvent.MissionChanged(getString(buffer));
+                case UNKNOWN -> RocketEvent.UNKNOWN;
+            };
+
+            return new MessageController.RocketTelemetry(new MessageController.Metadata(channel, messageNumber, type, time), event);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("telemetry record cut short", e);
+        }
+    }
+
+    static byte[] bytes(String str) {
+        return str == null ? null : str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int stringSize(byte[] bytes) {
+        return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    static String getString(ByteBuffer buffer) {
+        var length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (buffer.hasArray()) {
+            var str = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return str;
+        }
+
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
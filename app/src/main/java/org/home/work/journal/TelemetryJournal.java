@@ -0,0 +1,392 @@
+package org.home.work.journal;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.messages.MessageController;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of received telemetry, replayed into the rockets on startup.
+ * A message is journaled before it is applied, with {@link FsyncPolicy#ALWAYS} it is on disk by then.
+ * Copies of messages a rocket already received are left out, a copy that slips through is found a duplicate on replay.
+ * <p>
+ * Records go to segment files named after the sequence number of their first record. Each record is
+ * [int payload length][int CRC32 of payload][long sequence number][{@link TelemetryCodec} payload].
+ * <p>
+ * One writer thread owns the files. Requests hand records over through a bounded queue and the writer writes
+ * everything waiting as one batch (group commit), then forces it to disk according to {@link FsyncPolicy}.
+ * A record cut short by a crash is detected by its length or checksum and cut off when the journal is opened.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "rockets.journal.enabled", value = StringUtils.TRUE)
+public class TelemetryJournal implements Closeable {
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    private final JournalConfig config;
+    private final Path directory;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+
+    // writer thread only, after construction
+    private final CRC32 crc = new CRC32();
+    private FileChannel segment;
+    private long segmentPosition;
+    private long nextSequence;
+
+    private volatile long lastWrittenSequence;
+    private volatile boolean running = true;
+
+    /**
+     * @param written Completed once the record is on disk, only when requests wait for it
+     */
+    private record Entry(byte[] payload, CompletableFuture<Void> written) {}
+
+    public TelemetryJournal(JournalConfig config) {
+        this.config = config;
+        this.directory = Path.of(config.getDirectory());
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+
+        try {
+            Files.createDirectories(directory);
+            openLastSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open journal in " + directory.toAbsolutePath(), e);
+        }
+
+        writer = Thread.ofPlatform().name("telemetry-journal").daemon().start(this::writeLoop);
+    }
+
+    /**
+     * Journals a record. With {@link FsyncPolicy#ALWAYS} returns once it is on disk, otherwise once it is queued for writing
+     *
+     * @param telemetry Accepted rocket telemetry
+     */
+    public void append(MessageController.RocketTelemetry telemetry) {
+        var entry = enqueue(telemetry);
+        if (entry.written() != null) {
+            entry.written().join();
+        }
+    }
+
+    /**
+     * Journals several records, waiting (if the policy says so) only once for all of them
+     *
+     * @param telemetryList Accepted rocket telemetry
+     */
+    public void append(List<MessageController.RocketTelemetry> telemetryList) {
+        Entry last = null;
+        for (var telemetry : telemetryList) {
+            last = enqueue(telemetry);
+        }
+        // written in order, so when the last one is on disk all of them are
+        if (last != null && last.written() != null) {
+            last.written().join();
+        }
+    }
+
+    private Entry enqueue(MessageController.RocketTelemetry telemetry) {
+        if (!running) {
+            throw new IllegalStateException("Journal is closed");
+        }
+
+        var entry = new Entry(TelemetryCodec.encode(telemetry), config.getFsync() == FsyncPolicy.ALWAYS ? new CompletableFuture<>() : null);
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while journaling", e);
+        }
+        return entry;
+    }
+
+    /**
+     * @return Sequence number of the last record handed to the file system, every record up to it can be read back
+     */
+    public long lastWrittenSequence() {
+        return lastWrittenSequence;
+    }
+
+    /**
+     * Reads every journaled record, oldest first
+     *
+     * @param consumer Receives the records
+     * @return Number of records read
+     */
+    public long replay(Consumer<MessageController.RocketTelemetry> consumer) throws IOException {
+        return replay(0, consumer);
+    }
+
+    /**
+     * Reads journaled records after given sequence number, oldest first.
+     * Segments are memory-mapped for reading.
+     *
+     * @param afterSequence Skip records up to and including this sequence number
+     * @param consumer      Receives the records
+     * @return Number of records read
+     */
+    public long replay(long afterSequence, Consumer<MessageController.RocketTelemetry> consumer) throws IOException {
+        var segments = segments();
+        long count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && baseSequence(segments.get(i + 1)) <= afterSequence + 1) {
+                continue; // everything in this segment is older
+            }
+
+            try (var channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                var crc = new CRC32();
+                while (true) {
+                    var payload = nextRecord(buffer, crc);
+                    if (payload == null) {
+                        break;
+                    }
+                    if (sequenceOf(buffer, payload) > afterSequence) {
+                        consumer.accept(TelemetryCodec.decode(payload));
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Deletes segments whose records all have a sequence number up to given one, e.g. once they are covered by a state snapshot
+     *
+     * @param sequence Records up to and including this one are no longer needed
+     */
+    public void deleteUpTo(long sequence) throws IOException {
+        var segments = segments();
+        // the last segment is being written to, never deleted
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (baseSequence(segments.get(i + 1)) - 1 <= sequence) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * Stops accepting records, writes and forces what is queued
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        var batch = new ArrayList<Entry>(config.getMaxBatch());
+        var buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        var fsyncInterval = config.getFsyncInterval().toNanos();
+        var lastForce = System.nanoTime();
+        var unforced = false;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, config.getMaxBatch() - 1);
+
+                    for (var entry : batch) {
+                        write(entry.payload(), buffer);
+                    }
+                    flush(buffer);
+                    unforced = true;
+                }
+
+                var now = System.nanoTime();
+                var force = switch (config.getFsync()) {
+                    case ALWAYS -> unforced;
+                    case INTERVAL -> unforced && (now - lastForce >= fsyncInterval || !running);
+                    case NEVER -> false;
+                };
+                if (force) {
+                    segment.force(false);
+                    lastForce = now;
+                    unforced = false;
+                }
+
+                for (var entry : batch) {
+                    if (entry.written() != null) {
+                        entry.written().complete(null);
+                    }
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException | RuntimeException e) {
+                log.error("Journal write failed", e);
+                buffer.clear();
+                for (var entry : batch) {
+                    if (entry.written() != null) {
+                        entry.written().completeExceptionally(e);
+                    }
+                }
+            }
+            batch.clear();
+        }
+
+        try {
+            segment.force(false);
+            segment.close();
+        } catch (IOException e) {
+            log.error("Journal close failed", e);
+        }
+    }
+
+    private void write(byte[] payload, ByteBuffer buffer) throws IOException {
+        var recordSize = HEADER_SIZE + payload.length;
+        var segmentEnd = segmentPosition + buffer.position();
+        // a record bigger than a segment still gets one of its own
+        if (segmentEnd > 0 && segmentEnd + recordSize > config.getSegmentSize()) {
+            flush(buffer);
+            rollSegment();
+        }
+        if (buffer.remaining() < recordSize) {
+            flush(buffer);
+        }
+
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).putLong(nextSequence++).put(payload);
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentPosition += segment.write(buffer);
+        }
+        buffer.clear();
+        lastWrittenSequence = nextSequence - 1;
+    }
+
+    private void rollSegment() throws IOException {
+        if (config.getFsync() != FsyncPolicy.NEVER) {
+            segment.force(false);
+        }
+        segment.close();
+        segment = openSegment(nextSequence);
+        segmentPosition = 0;
+    }
+
+    /**
+     * Continues the newest segment, after its last complete record
+     */
+    private void openLastSegment() throws IOException {
+        var segments = segments();
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            segment = openSegment(nextSequence);
+            segmentPosition = 0;
+            lastWrittenSequence = 0;
+            return;
+        }
+
+        var last = segments.getLast();
+        nextSequence = baseSequence(last);
+        long validEnd = 0;
+        try (var channel = FileChannel.open(last, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            var crc = new CRC32();
+            ByteBuffer payload;
+            while ((payload = nextRecord(buffer, crc)) != null) {
+                nextSequence = sequenceOf(buffer, payload) + 1;
+                validEnd = buffer.position();
+            }
+        }
+
+        segment = FileChannel.open(last, StandardOpenOption.WRITE);
+        if (segment.size() > validEnd) {
+            log.warn("Journal segment {} has an incomplete record at {}, cutting it off", last.getFileName(), validEnd);
+            segment.truncate(validEnd);
+        }
+        segment.position(validEnd);
+        segmentPosition = validEnd;
+        lastWrittenSequence = nextSequence - 1;
+    }
+
+    private FileChannel openSegment(long baseSequence) throws IOException {
+        var path = directory.resolve("%020d%s".formatted(baseSequence, SEGMENT_SUFFIX));
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * @param buffer Positioned at a record, left after it if it is complete
+     * @return Payload of the record, or null if there is no complete record
+     */
+    private static ByteBuffer nextRecord(ByteBuffer buffer, CRC32 crc) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+
+        var start = buffer.position();
+        var length = buffer.getInt(start);
+        var checksum = buffer.getInt(start + Integer.BYTES);
+        if (length <= 0 || length > buffer.remaining() - HEADER_SIZE) {
+            return null;
+        }
+
+        var payload = buffer.slice(start + HEADER_SIZE, length);
+        crc.reset();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        buffer.position(start + HEADER_SIZE + length);
+        return payload;
+    }
+
+    /**
+     * @return Sequence number of the record {@link #nextRecord(ByteBuffer, CRC32)} just returned
+     */
+    private static long sequenceOf(ByteBuffer buffer, ByteBuffer payload) {
+        return buffer.getLong(buffer.position() - payload.remaining() - Long.BYTES);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files
+                .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static long baseSequence(Path segment) {
+        var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
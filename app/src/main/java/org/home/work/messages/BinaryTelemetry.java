@@ -0,0 +1,175 @@
+package org.home.work.messages;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary wire format of telemetry, {@value #CONTENT_TYPE}, accepted by {@link MessageController} next to JSON.
+ * <p>
+ * Layout: channel as a 16-byte UUID (most significant half first), int message number, byte {@link MessageType#code()},
+ * long message time in epoch microseconds ({@link Long#MIN_VALUE} for no time), then the fields of that type:
+ * LAUNCHED type, int launch speed, mission; SPEED_INCREASED and SPEED_DECREASED int by, positive like in JSON;
+ * EXPLODED reason; MISSION_CHANGED new mission. Strings are an unsigned short byte length and UTF-8 bytes,
+ * at most {@link RocketEvent#MAX_TEXT_BYTES} like in JSON, numbers are big-endian. Times are read back in UTC.
+ * <p>
+ * A batch is a sequence of messages, each preceded by its int byte length,
+ * so a message that can't be read is rejected on its own and one of a type added later is skipped.
+ * Encoding only needs {@link ByteBuffer}, senders don't need Netty
+ */
+public class BinaryTelemetry {
+    public static final String CONTENT_TYPE = "application/x-rocket-binary";
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int HEADER_SIZE = 2 * Long.BYTES + Integer.BYTES + 1 + Long.BYTES;
+
+    private BinaryTelemetry() {}
+
+    /**
+     * @throws IllegalArgumentException if the channel is not a UUID, or a field the type needs is missing or too long
+     */
+    public static byte[] encode(MessageController.RocketTelemetry telemetry) {
+        var metadata = telemetry.metadata();
+        var channel = UUID.fromString(metadata.channel());
+        var time = metadata.messageTime();
+        var event = telemetry.event();
+
+        byte[] text1 = null;
+        byte[] text2 = null;
+        switch (event) {
+            case RocketEvent.Launched launched -> {
+                text1 = bytes(launched.type());
+                text2 = bytes(launched.mission());
+            }
+            case RocketEvent.Exploded exploded -> text1 = bytes(exploded.reason());
+            case RocketEvent.MissionChanged missionChanged -> text1 = bytes(missionChanged.newMission());
+            case RocketEvent.SpeedChanged ignored -> {}
+            case RocketEvent.Unknown ignored -> {}
+        }
+
+        var size = HEADER_SIZE + (text1 != null ? Short.BYTES + text1.length : 0) + (text2 != null ? Short.BYTES + text2.length : 0)
+            + (event instanceof RocketEvent.Launched || event instanceof RocketEvent.SpeedChanged ? Integer.BYTES : 0);
+
+        var buffer = ByteBuffer.allocate(size);
+        buffer.putLong(channel.getMostSignificantBits()).putLong(channel.getLeastSignificantBits());
+        buffer.putInt(metadata.messageNumber());
+        buffer.put(metadata.messageType().code());
+        buffer.putLong(time == null ? NO_TIME : Math.addExact(Math.multiplyExact(time.toEpochSecond(), 1_000_000L), time.getNano() / 1000));
+
+        switch (event) {
+            case RocketEvent.Launched launched -> {
+                putString(buffer, text1);
+                buffer.putInt(launched.launchSpeed());
+                putString(buffer, text2);
+            }
+            case RocketEvent.SpeedChanged speedChanged -> buffer.putInt(Math.abs(speedChanged.delta()));
+            case RocketEvent.Exploded ignored -> putString(buffer, text1);
+            case RocketEvent.MissionChanged ignored -> putString(buffer, text1);
+            case RocketEvent.Unknown ignored -> {}
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if a channel is not a UUID, or a field a type needs is missing or too long
+     */
+    public static byte[] encodeBatch(Collection<MessageController.RocketTelemetry> telemetryList) {
+        var messages = telemetryList.stream().map(BinaryTelemetry::encode).toList();
+        var buffer = ByteBuffer.allocate(messages.stream().mapToInt(message -> Integer.BYTES + message.length).sum());
+        for (var message : messages) {
+            buffer.putInt(message.length).put(message);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads fields straight from the request buffer, strings are the only copies made
+     *
+     * @param buf One message, read to its end
+     * @throws IllegalArgumentException if the message is cut short, followed by more bytes, or has a text that is too long
+     */
+    public static MessageController.RocketTelemetry decode(ByteBuf buf) {
+        try {
+            var telemetry = read(buf);
+            if (buf.isReadable() && telemetry.event() != RocketEvent.UNKNOWN) {
+                throw new IllegalArgumentException("%d byte(s) after the message".formatted(buf.readableBytes()));
+            }
+            return telemetry;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("message cut short", e);
+        }
+    }
+
+    /**
+     * @param buf Length-prefixed messages, read to its end
+     * @return A result for every message, in the order they were sent
+     * @throws IllegalArgumentException if a length points past the end, messages can't be told apart anymore
+     */
+    public static List<TelemetryDecoder.Decoded> decodeBatch(ByteBuf buf) {
+        var records = new ArrayList<TelemetryDecoder.Decoded>();
+        while (buf.isReadable()) {
+            var length = buf.readableBytes() >= Integer.BYTES ? buf.readInt() : -1;
+            if (length < 0 || length > buf.readableBytes()) {
+                throw new IllegalArgumentException("batch cut short at message %d".formatted(records.size()));
+            }
+            try {
+                records.add(new TelemetryDecoder.Decoded(decode(buf.readSlice(length)), null));
+            } catch (IllegalArgumentException e) {
+                records.add(new TelemetryDecoder.Decoded(null, e.getMessage()));
+            }
+        }
+        return records;
+    }
+
+    private static MessageController.RocketTelemetry read(ByteBuf buf) {
+        var channel = new UUID(buf.readLong(), buf.readLong()).toString();
+        var messageNumber = buf.readInt();
+        var type = MessageType.ofCode(buf.readByte());
+        var micros = buf.readLong();
+        var time = micros == NO_TIME ? null : ZonedDateTime.ofInstant(
+            Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1000), ZoneOffset.UTC);
+
+        RocketEvent event = switch (type) {
+            case LAUNCHED -> new RocketEvent.Launched(readString(buf), buf.readInt(), readString(buf));
+            case SPEED_INCREASED -> new RocketEvent.SpeedChanged(buf.readInt());
+            case SPEED_DECREASED -> new RocketEvent.SpeedChanged(-buf.readInt());
+            case EXPLODED -> new RocketEvent.Exploded(readString(buf));
+            case MISSION_CHANGED -> new RocketEvent.MissionChanged(readString(buf));
+            case UNKNOWN -> RocketEvent.UNKNOWN; // fields of a newer type, ignored
+        };
+
+        return new MessageController.RocketTelemetry(new MessageController.Metadata(channel, messageNumber, type, time), event);
+    }
+
+    private static String readString(ByteBuf buf) {
+        var length = buf.readUnsignedShort();
+        if (length > RocketEvent.MAX_TEXT_BYTES) {
+            throw new IllegalArgumentException("text longer than %d bytes".formatted(RocketEvent.MAX_TEXT_BYTES));
+        }
+        buf.skipBytes(length); // checks the string is all there, toString() would read past the end
+        return buf.toString(buf.readerIndex() - length, length, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String str) {
+        if (str == null) {
+            throw new IllegalArgumentException("missing message field");
+        }
+        var bytes = str.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > RocketEvent.MAX_TEXT_BYTES) {
+            throw new IllegalArgumentException("text longer than %d bytes".formatted(RocketEvent.MAX_TEXT_BYTES));
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+}
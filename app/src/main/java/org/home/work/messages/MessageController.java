@@ -1,50 +1,313 @@
 package org.home.work.messages;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.Consumes;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Post;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
+import io.micronaut.serde.annotation.Serdeable;
+import io.netty.buffer.ByteBuf;
+import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
-import org.home.work.App;
+import org.home.work.cluster.Cluster;
+import org.home.work.metrics.MetricsConfig;
+import org.home.work.metrics.SampledTimer;
+import org.home.work.pipeline.IngestPipeline;
+import org.home.work.rockets.ProcessResult;
 import org.home.work.rockets.RocketRepository;
 
+import java.io.IOException;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Controller("/messages")
+// journaling may wait for the disk
+@ExecuteOn(TaskExecutors.BLOCKING)
 public class MessageController {
 
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     @Inject
     private RocketRepository repository;
 
+    @Inject
+    private TelemetryDecoder decoder;
+
+    @Inject
+    private IngestPipeline pipeline;
+
+    @Inject
+    private Cluster cluster;
+
+    @Inject
+    private MetricsConfig metricsConfig;
+
+    @Inject
+    private MeterRegistry meterRegistry;
+
+    private SampledTimer parseTimer;
+    private SampledTimer batchParseTimer;
+    private SampledTimer binaryParseTimer;
+    private SampledTimer binaryBatchParseTimer;
+    private Counter unreadable;
+
+    @PostConstruct
+    void registerMeters() {
+        var parsing = "Time to decode a request body into telemetry (sampled)";
+        parseTimer = SampledTimer.register("rockets.messages.parse", parsing, metricsConfig, meterRegistry,
+            "kind", "single", "format", "json");
+        batchParseTimer = SampledTimer.register("rockets.messages.parse", parsing, metricsConfig, meterRegistry,
+            "kind", "batch", "format", "json");
+        binaryParseTimer = SampledTimer.register("rockets.messages.parse", parsing, metricsConfig, meterRegistry,
+            "kind", "single", "format", "binary");
+        binaryBatchParseTimer = SampledTimer.register("rockets.messages.parse", parsing, metricsConfig, meterRegistry,
+            "kind", "batch", "format", "binary");
+        unreadable = Counter.builder("rockets.messages.unreadable")
+            .description("Messages or batch records that could not be read, never reached a rocket")
+            .register(meterRegistry);
+    }
+
     public record Metadata(
         String channel,
         int messageNumber,
-        String messageType,
+        MessageType messageType,
         ZonedDateTime messageTime
-    ) {}
+    ) {
+        public Metadata(String channel, int messageNumber, String messageType, ZonedDateTime messageTime) {
+            this(channel, messageNumber, MessageType.ofStr(messageType), messageTime);
+        }
+    }
 
     public record RocketTelemetry(
         Metadata metadata,
-        Map<String, String> message
+        RocketEvent event
+    ) {
+        /**
+         * @param message Message fields as they are sent in JSON
+         * @throws IllegalArgumentException if a field the message type needs is missing
+         */
+        public RocketTelemetry(Metadata metadata, Map<String, String> message) {
+            this(metadata, RocketEvent.of(metadata.messageType(), message));
+        }
+    }
+
+    @Serdeable
+    public record RecordResult(
+        int index,
+        ProcessResult result,
+        String error
+    ) {}
+
+    @Serdeable
+    public record BatchSummary(
+        int applied,
+        int duplicate,
+        int buffered,
+        int rejected,
+        List<RecordResult> records
     ) {}
 
+    /**
+     * Results still to come for the records of one channel
+     *
+     * @param forwarded Sent to the node owning the channel, otherwise queued in the ingest pipeline
+     */
+    private record Pending(List<Integer> indexes, CompletableFuture<List<ProcessResult>> results, boolean forwarded) {}
+
+    /**
+     * With the ingest pipeline enabled the message is only queued: 202 once it is, 503 if its shard is full.
+     * In a cluster a message of another node's rocket is forwarded to it, 503 if it can't be reached
+     */
+    @Post
+    HttpResponse<String> receiveMessage(@Body byte[] json) {
+        RocketTelemetry telemetry;
+        try {
+            var start = parseTimer.start();
+            telemetry = decoder.decode(json);
+            parseTimer.stop(start);
+        } catch (IOException e) {
+            log.error("Json processing exception", e);
+            unreadable.increment();
+            return HttpResponse.badRequest("json processing exception: %s".formatted(e.getMessage()));
+        }
+        return receive(telemetry);
+    }
+
+    /**
+     * Same as {@link #receiveMessage(byte[])} for a message in {@link BinaryTelemetry} format,
+     * decoded from the request's own buffer
+     */
     @Post
-    HttpResponse<String> receiveMessage(@Body String json) {
+    @Consumes(BinaryTelemetry.CONTENT_TYPE)
+    HttpResponse<String> receiveBinaryMessage(@Body ByteBuf body) {
+        RocketTelemetry telemetry;
         try {
-            var telemetry = App.objectMapper.readValue(json, RocketTelemetry.class);
-            repository.processTelemetry(telemetry);
+            var start = binaryParseTimer.start();
+            telemetry = BinaryTelemetry.decode(body);
+            binaryParseTimer.stop(start);
+        } catch (IllegalArgumentException e) {
+            unreadable.increment();
+            return HttpResponse.badRequest("unreadable message: %s".formatted(e.getMessage()));
+        }
+        return receive(telemetry);
+    }
 
-        } catch (JsonProcessingException e) {
+    /**
+     * Accepts many messages at once, either as a JSON array or as newline-delimited JSON (one message per line).
+     * Messages are grouped by channel so each rocket is locked once per request.
+     * A record that can't be read is rejected on its own, the rest of the batch is still processed.
+     * Broken JSON array syntax rejects the whole request, same as a single message would.
+     * With the ingest pipeline enabled, channels whose shard is full are rejected, 503 if that is all of them.
+     * In a cluster, channels of other nodes are forwarded to them, rejected if they can't be reached.
+     *
+     * @param body JSON array or NDJSON of rocket telemetry
+     * @return Result counts and a result for every record, in the order they were sent
+     */
+    @Post("/batch")
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
+    HttpResponse<?> receiveBatch(@Body byte[] body) {
+        List<TelemetryDecoder.Decoded> records;
+        try {
+            var start = batchParseTimer.start();
+            records = decoder.decodeBatch(body);
+            batchParseTimer.stop(start);
+        } catch (IOException e) {
             log.error("Json processing exception", e);
+            unreadable.increment();
             return HttpResponse.badRequest("json processing exception: %s".formatted(e.getMessage()));
         }
+        return receive(records);
+    }
 
+    /**
+     * Same as {@link #receiveBatch(byte[])} for messages in {@link BinaryTelemetry} format.
+     * A length pointing past the end of the body rejects the whole request
+     */
+    @Post("/batch")
+    @Consumes(BinaryTelemetry.CONTENT_TYPE)
+    HttpResponse<?> receiveBinaryBatch(@Body ByteBuf body) {
+        List<TelemetryDecoder.Decoded> records;
+        try {
+            var start = binaryBatchParseTimer.start();
+            records = BinaryTelemetry.decodeBatch(body);
+            binaryBatchParseTimer.stop(start);
+        } catch (IllegalArgumentException e) {
+            unreadable.increment();
+            return HttpResponse.badRequest("unreadable batch: %s".formatted(e.getMessage()));
+        }
+        return receive(records);
+    }
+
+    private HttpResponse<String> receive(RocketTelemetry telemetry) {
+        if (!cluster.owns(telemetry.metadata().channel())) {
+            return forward(telemetry);
+        }
+        if (pipeline.isEnabled()) {
+            return pipeline.submit(telemetry) ? HttpResponse.accepted() : overloaded();
+        }
+        repository.processTelemetry(telemetry);
         return HttpResponse.ok();
     }
 
+    private HttpResponse<?> receive(List<TelemetryDecoder.Decoded> records) {
+        var results = new RecordResult[records.size()];
+        var byChannel = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < records.size(); i++) {
+            var telemetry = records.get(i).telemetry();
+            if (telemetry != null) {
+                byChannel.computeIfAbsent(telemetry.metadata().channel(), k -> new ArrayList<>()).add(i);
+            } else {
+                results[i] = new RecordResult(i, ProcessResult.REJECTED, records.get(i).error());
+                unreadable.increment();
+            }
+        }
 
+        var queued = new ArrayList<Pending>();
+        var overloaded = false;
+        for (var entry : byChannel.entrySet()) {
+            var indexes = entry.getValue();
+            var telemetryList = indexes.stream().map(i -> records.get(i).telemetry()).toList();
+
+            if (!cluster.owns(entry.getKey())) {
+                queued.add(new Pending(indexes, cluster.forward(entry.getKey(), telemetryList), true));
+                continue;
+            }
+            if (!pipeline.isEnabled()) {
+                setResults(results, indexes, repository.processTelemetry(entry.getKey(), telemetryList));
+                continue;
+            }
+            var channelResults = pipeline.submit(entry.getKey(), telemetryList);
+            if (channelResults != null) {
+                queued.add(new Pending(indexes, channelResults, false));
+            } else {
+                overloaded = true;
+                for (var i : indexes) {
+                    results[i] = new RecordResult(i, ProcessResult.REJECTED, "overloaded, retry later");
+                }
+            }
+        }
+        if (overloaded && queued.isEmpty()) {
+            return overloaded();
+        }
+        for (var pending : queued) {
+            try {
+                setResults(results, pending.indexes(), pending.results().join());
+            } catch (CompletionException e) {
+                var error = pending.forwarded() ? "owner node unavailable, retry later" : "processing failed: %s".formatted(e.getCause());
+                for (var i : pending.indexes()) {
+                    results[i] = new RecordResult(i, ProcessResult.REJECTED, error);
+                }
+            }
+        }
+
+        var counts = new EnumMap<ProcessResult, Integer>(ProcessResult.class);
+        for (var result : results) {
+            counts.merge(result.result(), 1, Integer::sum);
+        }
+
+        return HttpResponse.ok(new BatchSummary(
+            counts.getOrDefault(ProcessResult.APPLIED, 0),
+            counts.getOrDefault(ProcessResult.DUPLICATE, 0),
+            counts.getOrDefault(ProcessResult.BUFFERED, 0),
+            counts.getOrDefault(ProcessResult.REJECTED, 0),
+            List.of(results)
+        ));
+    }
+
+    private HttpResponse<String> forward(RocketTelemetry telemetry) {
+        try {
+            cluster.forward(telemetry).join();
+            return HttpResponse.ok();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IllegalArgumentException invalid) {
+                return HttpResponse.badRequest("can't forward message: %s".formatted(invalid.getMessage()));
+            }
+            return overloaded();
+        }
+    }
+
+    private static void setResults(RecordResult[] results, List<Integer> indexes, List<ProcessResult> channelResults) {
+        for (int i = 0; i < indexes.size(); i++) {
+            results[indexes.get(i)] = new RecordResult(indexes.get(i), channelResults.get(i), null);
+        }
+    }
+
+    private static <T> HttpResponse<T> overloaded() {
+        return HttpResponse.<T>status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1");
+    }
 }
@@ -1,27 +1,148 @@
 package org.home.work.messages;
 
+import java.util.Map;
+import java.util.function.Function;
+
 public enum MessageType {
-    LAUNCHED("RocketLaunched"),
-    SPEED_INCREASED("RocketSpeedIncreased"),
-    SPEED_DECREASED("RocketSpeedDecreased"),
-    EXPLODED("RocketExploded"),
-    MISSION_CHANGED("RocketMissionChanged"),
+    LAUNCHED("RocketLaunched", 1, message -> new RocketEvent.Launched(
+        required(message, "type"), parseInt(message, "launchSpeed"), required(message, "mission"))),
+    SPEED_INCREASED("RocketSpeedIncreased", 2, message -> new RocketEvent.SpeedChanged(parseInt(message, "by"))),
+    SPEED_DECREASED("RocketSpeedDecreased", 3, message -> new RocketEvent.SpeedChanged(-parseInt(message, "by"))),
+    EXPLODED("RocketExploded", 4, message -> new RocketEvent.Exploded(required(message, "reason"))),
+    MISSION_CHANGED("RocketMissionChanged", 5, message -> new RocketEvent.MissionChanged(required(message, "newMission"))),
 
-    UNKNOWN("Unknown")
+    UNKNOWN("Unknown", 0, message -> RocketEvent.UNKNOWN)
     ;
 
+    // open addressing, at most half full so a miss ends at an empty slot quickly.
+    // The hash only looks at the length and two characters that tell the names apart ("Increased"/"Decreased",
+    // "Launched"/"Exploded"), the candidate is then compared in full
+    private static final int TABLE_MASK = 15;
+    private static final int SAMPLE_FROM_END = 9;
+    private static final MessageType[] BY_NAME = new MessageType[TABLE_MASK + 1];
+    private static final MessageType[] BY_CODE = new MessageType[Byte.MAX_VALUE + 1];
+
+    static {
+        for (var type : values()) {
+            var i = hash(type.str) & TABLE_MASK;
+            while (BY_NAME[i] != null) {
+                i = (i + 1) & TABLE_MASK;
+            }
+            BY_NAME[i] = type;
+            BY_CODE[type.code] = type;
+        }
+    }
+
     private final String str;
+    private final byte code;
+    private final Function<Map<String, String>, RocketEvent> parser;
 
-    MessageType(String str) {
+    MessageType(String str, int code, Function<Map<String, String>, RocketEvent> parser) {
         this.str = str;
+        this.code = (byte) code;
+        this.parser = parser;
     }
 
+    /**
+     * Case-insensitive, without allocating
+     *
+     * @return Type with given name, {@link #UNKNOWN} if there is none
+     */
     public static MessageType ofStr(String str) {
-        for (var updateType : values()) {
-            if (updateType.str.equalsIgnoreCase(str)) {
-                return updateType;
+        if (str == null) {
+            return UNKNOWN;
+        }
+        for (int i = hash(str) & TABLE_MASK; BY_NAME[i] != null; i = (i + 1) & TABLE_MASK) {
+            var type = BY_NAME[i];
+            if (type.str.equalsIgnoreCase(str)) {
+                return type;
             }
         }
         return UNKNOWN;
     }
+
+    /**
+     * Same as {@link #ofStr(String)} for a name that is not a String yet, e.g. the JSON parser's text buffer
+     */
+    public static MessageType of(char[] text, int offset, int length) {
+        var hash = length < SAMPLE_FROM_END
+            ? length
+            : hash(length, text[offset + length - SAMPLE_FROM_END], text[offset + length - 3]);
+
+        for (int i = hash & TABLE_MASK; BY_NAME[i] != null; i = (i + 1) & TABLE_MASK) {
+            var type = BY_NAME[i];
+            if (type.matches(text, offset, length)) {
+                return type;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return Stable one byte id for binary formats, unlike ordinal() it doesn't change when types are added
+     */
+    public byte code() {
+        return code;
+    }
+
+    public static MessageType ofCode(byte code) {
+        var type = code >= 0 ? BY_CODE[code] : null;
+        return type != null ? type : UNKNOWN;
+    }
+
+    /**
+     * Builds the event of this type from string message fields, the way they look in JSON
+     *
+     * @throws IllegalArgumentException if a field the type needs is missing, not a number or too long
+     */
+    public RocketEvent parse(Map<String, String> message) {
+        return parser.apply(message);
+    }
+
+    private boolean matches(char[] text, int offset, int length) {
+        if (length != str.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (fold(text[offset + i]) != fold(str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String name) {
+        var length = name.length();
+        return length < SAMPLE_FROM_END ? length : hash(length, name.charAt(length - SAMPLE_FROM_END), name.charAt(length - 3));
+    }
+
+    private static int hash(int length, char c1, char c2) {
+        return (length * 31 + fold(c1)) * 31 + fold(c2);
+    }
+
+    /**
+     * Type names are ASCII letters, so ASCII lower case is enough to ignore case
+     */
+    private static int fold(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static String required(Map<String, String> message, String field) {
+        var value = message == null ? null : message.get(field);
+        if (value == null) {
+            throw new IllegalArgumentException("missing message field \"%s\"".formatted(field));
+        }
+        if (!RocketEvent.fits(value)) {
+            throw new IllegalArgumentException("message field \"%s\" longer than %d bytes".formatted(field, RocketEvent.MAX_TEXT_BYTES));
+        }
+        return value;
+    }
+
+    private static int parseInt(Map<String, String> message, String field) {
+        try {
+            return Integer.parseInt(required(message, field));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("message field \"%s\" is not a number".formatted(field));
+        }
+    }
 }
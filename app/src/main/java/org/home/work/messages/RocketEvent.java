@@ -0,0 +1,60 @@
+package org.home.work.messages;
+
+import java.util.Map;
+
+/**
+ * Typed contents of a telemetry message, one record per {@link MessageType}
+ */
+public sealed interface RocketEvent {
+
+    record Launched(String type, int launchSpeed, String mission) implements RocketEvent {}
+
+    /**
+     * @param delta Positive for RocketSpeedIncreased, negative for RocketSpeedDecreased
+     */
+    record SpeedChanged(int delta) implements RocketEvent {}
+
+    record Exploded(String reason) implements RocketEvent {}
+
+    record MissionChanged(String newMission) implements RocketEvent {}
+
+    record Unknown() implements RocketEvent {}
+
+    Unknown UNKNOWN = new Unknown();
+
+    /**
+     * Longest channel or text field a message may have, in UTF-8 bytes. Decoders reject longer ones,
+     * every format that holds telemetry or rockets can store what they accept
+     */
+    int MAX_TEXT_BYTES = Short.MAX_VALUE;
+
+    /**
+     * @return Whether the text is at most {@link #MAX_TEXT_BYTES} long in UTF-8, counted without encoding it
+     */
+    static boolean fits(String text) {
+        if (text == null || text.length() * 3 <= MAX_TEXT_BYTES) {
+            return true; // at most 3 bytes per char
+        }
+        if (text.length() > MAX_TEXT_BYTES) {
+            return false;
+        }
+        var bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3; // a surrogate pair is 4
+        }
+        return bytes <= MAX_TEXT_BYTES;
+    }
+
+    /**
+     * Builds an event from string message fields, the way they look in JSON
+     *
+     * @param type    Message type
+     * @param message Message fields
+     * @return Event of given type
+     * @throws IllegalArgumentException if a field the type needs is missing or not a number
+     */
+    static RocketEvent of(MessageType type, Map<String, String> message) {
+        return type.parse(message);
+    }
+}
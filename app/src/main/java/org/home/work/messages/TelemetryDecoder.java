@@ -0,0 +1,443 @@
+package org.home.work.messages;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.InputCoercionException;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads telemetry JSON token by token straight into {@link MessageController.RocketTelemetry} with a typed {@link RocketEvent},
+ * without building a string body, a field map or parsing numbers twice.
+ * <p>
+ * Accepts the same documents the ObjectMapper did: unknown top level or metadata fields are an error,
+ * unknown message fields are ignored, numbers may be sent as JSON numbers or strings.
+ * Message times are converted to UTC, like Jackson does by default.
+ */
+@Singleton
+public class TelemetryDecoder {
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * A record of a batch, either decoded telemetry or the reason it was rejected
+     */
+    public record Decoded(MessageController.RocketTelemetry telemetry, String error) {}
+
+    /**
+     * The document is valid JSON but not valid telemetry. The parser is left after the end of the rejected record,
+     * so the next record of a batch can still be read
+     */
+    public static class InvalidTelemetryException extends JsonParseException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        public InvalidTelemetryException(JsonParser parser, String message) {
+            super(parser, message);
+        }
+    }
+
+    /**
+     * @param json One telemetry JSON document
+     * @return Decoded telemetry
+     * @throws IOException if JSON is malformed or is not valid telemetry
+     */
+    public MessageController.RocketTelemetry decode(byte[] json) throws IOException {
+        try (var parser = jsonFactory.createParser(json)) {
+            parser.nextToken();
+            return decode(parser);
+        }
+    }
+
+    /**
+     * Decodes a JSON array or newline-delimited JSON of telemetry records.
+     * Invalid records are returned as rejected, the others are still decoded.
+     * In a JSON array, broken JSON syntax fails the whole batch (records can't be told apart anymore);
+     * in NDJSON only that line is rejected.
+     *
+     * @param body JSON array or NDJSON
+     * @return A result for every record, in the order they were sent
+     * @throws IOException if the JSON array is malformed
+     */
+    public List<Decoded> decodeBatch(byte[] body) throws IOException {
+        int start = 0;
+        while (start < body.length && Character.isWhitespace(body[start])) {
+            start++;
+        }
+
+        return start < body.length && body[start] == '[' ? decodeArray(body) : decodeLines(body);
+    }
+
+    private List<Decoded> decodeArray(byte[] body) throws IOException {
+        var records = new ArrayList<Decoded>();
+        try (var parser = jsonFactory.createParser(body)) {
+            parser.nextToken();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                try {
+                    records.add(new Decoded(decode(parser), null));
+                } catch (InvalidTelemetryException e) {
+                    records.add(new Decoded(null, e.getOriginalMessage()));
+                }
+            }
+        }
+        return records;
+    }
+
+    private List<Decoded> decodeLines(byte[] body) {
+        var records = new ArrayList<Decoded>();
+        int lineStart = 0;
+        for (int i = 0; i <= body.length; i++) {
+            if (i < body.length && body[i] != '\n') {
+                continue;
+            }
+
+            if (!isBlank(body, lineStart, i)) {
+                try (var parser = jsonFactory.createParser(body, lineStart, i - lineStart)) {
+                    parser.nextToken();
+                    records.add(new Decoded(decode(parser), null));
+                } catch (IOException e) {
+                    var message = e instanceof JsonProcessingException jpe ? jpe.getOriginalMessage() : e.getMessage();
+                    records.add(new Decoded(null, message));
+                }
+            }
+            lineStart = i + 1;
+        }
+        return records;
+    }
+
+    private static boolean isBlank(byte[] body, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(body[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param parser Parser positioned on the first token of the record
+     * @return Decoded telemetry, parser positioned on the record's last token
+     * @throws IOException if JSON is malformed or is not valid telemetry
+     */
+    public MessageController.RocketTelemetry decode(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            throw new InvalidTelemetryException(parser, "Telemetry must be a JSON object");
+        }
+
+        int depth = parser.getParsingContext().getNestingDepth();
+        try {
+            return readTelemetry(parser);
+        } catch (InvalidTelemetryException e) {
+            // skip whatever is left of the rejected record
+            while (parser.getParsingContext().getNestingDepth() >= depth && parser.nextToken() != null) {
+            }
+            throw e;
+        }
+    }
+
+    private MessageController.RocketTelemetry readTelemetry(JsonParser parser) throws IOException {
+        MessageController.Metadata metadata = null;
+        RocketEvent event = null;
+        Map<String, String> earlyMessage = null; // message sent before metadata, type not known yet
+
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            var token = parser.nextToken();
+            switch (field) {
+                case "metadata" -> metadata = readMetadata(parser, token);
+                case "message" -> {
+                    if (metadata != null) {
+                        event = readEvent(parser, token, metadata.messageType());
+                    } else {
+                        earlyMessage = readMessageMap(parser, token);
+                    }
+                }
+                default -> throw new InvalidTelemetryException(parser, "Unrecognized field \"%s\"".formatted(field));
+            }
+        }
+
+        if (metadata == null) {
+            throw new InvalidTelemetryException(parser, "Missing field \"metadata\"");
+        }
+
+        if (event == null) {
+            try {
+                event = RocketEvent.of(metadata.messageType(), earlyMessage);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidTelemetryException(parser, e.getMessage());
+            }
+        }
+
+        return new MessageController.RocketTelemetry(metadata, event);
+    }
+
+    private MessageController.Metadata readMetadata(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new InvalidTelemetryException(parser, "Field \"metadata\" must be an object");
+        }
+
+        String channel = null;
+        int messageNumber = 0;
+        MessageType messageType = MessageType.UNKNOWN;
+        ZonedDateTime messageTime = null;
+
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            var valueToken = parser.nextToken();
+            switch (field) {
+                case "channel" -> channel = readText(parser, valueToken);
+                case "messageNumber" -> messageNumber = readInt(parser, valueToken);
+                case "messageType" -> messageType = readType(parser, valueToken);
+                case "messageTime" -> messageTime = readTime(parser, valueToken);
+                default -> throw new InvalidTelemetryException(parser, "Unrecognized metadata field \"%s\"".formatted(field));
+            }
+        }
+
+        if (channel == null) {
+            throw new InvalidTelemetryException(parser, "Missing metadata field \"channel\"");
+        }
+
+        return new MessageController.Metadata(channel, messageNumber, messageType, messageTime);
+    }
+
+    private RocketEvent readEvent(JsonParser parser, JsonToken token, MessageType type) throws IOException {
+        if (type == MessageType.UNKNOWN || token == JsonToken.VALUE_NULL) {
+            parser.skipChildren();
+            return type == MessageType.UNKNOWN ? RocketEvent.UNKNOWN : null; // null -> reported as missing fields
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new InvalidTelemetryException(parser, "Field \"message\" must be an object");
+        }
+
+        String text = null;
+        String mission = null;
+        int number = 0;
+        boolean hasNumber = false;
+
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            var valueToken = parser.nextToken();
+            switch (type) {
+                case LAUNCHED -> {
+                    switch (field) {
+                        case "type" -> text = readText(parser, valueToken);
+                        case "mission" -> mission = readText(parser, valueToken);
+                        case "launchSpeed" -> {
+                            number = readInt(parser, valueToken);
+                            hasNumber = true;
+                        }
+                        default -> parser.skipChildren();
+                    }
+                }
+                case SPEED_INCREASED, SPEED_DECREASED -> {
+                    if (field.equals("by")) {
+                        number = readInt(parser, valueToken);
+                        hasNumber = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case EXPLODED -> {
+                    if (field.equals("reason")) {
+                        text = readText(parser, valueToken);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case MISSION_CHANGED -> {
+                    if (field.equals("newMission")) {
+                        text = readText(parser, valueToken);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        return switch (type) {
+            case LAUNCHED -> new RocketEvent.Launched(
+                required(parser, text, "type"),
+                required(parser, hasNumber, number, "launchSpeed"),
+                required(parser, mission, "mission")
+            );
+            case SPEED_INCREASED -> new RocketEvent.SpeedChanged(required(parser, hasNumber, number, "by"));
+            case SPEED_DECREASED -> new RocketEvent.SpeedChanged(-required(parser, hasNumber, number, "by"));
+            case EXPLODED -> new RocketEvent.Exploded(required(parser, text, "reason"));
+            case MISSION_CHANGED -> new RocketEvent.MissionChanged(required(parser, text, "newMission"));
+            case UNKNOWN -> RocketEvent.UNKNOWN;
+        };
+    }
+
+    private static String required(JsonParser parser, String value, String field) throws InvalidTelemetryException {
+        if (value == null) {
+            throw new InvalidTelemetryException(parser, "missing message field \"%s\"".formatted(field));
+        }
+        return value;
+    }
+
+    private static int required(JsonParser parser, boolean present, int value, String field) throws InvalidTelemetryException {
+        if (!present) {
+            throw new InvalidTelemetryException(parser, "missing message field \"%s\"".formatted(field));
+        }
+        return value;
+    }
+
+    private Map<String, String> readMessageMap(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new InvalidTelemetryException(parser, "Field \"message\" must be an object");
+        }
+
+        var message = new HashMap<String, String>();
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            message.put(field, readText(parser, parser.nextToken()));
+        }
+        return message;
+    }
+
+    private static String readText(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new InvalidTelemetryException(parser, "Field \"%s\" must be a text value".formatted(parser.currentName()));
+        }
+        var text = parser.getText();
+        if (!RocketEvent.fits(text)) {
+            throw new InvalidTelemetryException(parser, "Field \"%s\" longer than %d bytes".formatted(parser.currentName(), RocketEvent.MAX_TEXT_BYTES));
+        }
+        return text;
+    }
+
+    /**
+     * Looks the type up in the parser's text buffer, no String is created for it
+     */
+    private static MessageType readType(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return MessageType.of(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        return MessageType.ofStr(readText(parser, token));
+    }
+
+    private static int readInt(JsonParser parser, JsonToken token) throws IOException {
+        try {
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return parser.getIntValue();
+            }
+            if (token == JsonToken.VALUE_STRING) {
+                return Integer.parseInt(parser.getText().trim());
+            }
+        } catch (InputCoercionException | NumberFormatException e) {
+            // reported below
+        }
+        throw new InvalidTelemetryException(parser, "Field \"%s\" must be an integer".formatted(parser.currentName()));
+    }
+
+    private static ZonedDateTime readTime(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw new InvalidTelemetryException(parser, "Field \"messageTime\" must be an ISO date time");
+        }
+
+        try {
+            var time = parseIsoOffsetTime(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            if (time == null) {
+                // zone ids and other less common formats
+                time = ZonedDateTime.parse(parser.getText(), DateTimeFormatter.ISO_ZONED_DATE_TIME).withZoneSameInstant(ZoneOffset.UTC);
+            }
+            return time;
+        } catch (DateTimeException e) {
+            throw new InvalidTelemetryException(parser, "Field \"messageTime\" must be an ISO date time: %s".formatted(e.getMessage()));
+        }
+    }
+
+    /**
+     * Parses the common "2022-02-02T19:39:05.86337+01:00" form without the formatter machinery
+     *
+     * @return Time in UTC or null if text is in some other format
+     * @throws DateTimeException if the format matches but a field is out of range
+     */
+    static ZonedDateTime parseIsoOffsetTime(char[] text, int offset, int length) {
+        int end = offset + length;
+        if (length < 20
+            || text[offset + 4] != '-' || text[offset + 7] != '-' || (text[offset + 10] != 'T' && text[offset + 10] != 't')
+            || text[offset + 13] != ':' || text[offset + 16] != ':') {
+            return null;
+        }
+
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        int hour = digits(text, offset + 11, 2);
+        int minute = digits(text, offset + 14, 2);
+        int second = digits(text, offset + 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) {
+            return null;
+        }
+
+        int i = offset + 19;
+        int nanos = 0;
+        if (text[i] == '.') {
+            int fractionStart = ++i;
+            while (i < end && i - fractionStart < 9 && text[i] >= '0' && text[i] <= '9') {
+                nanos = nanos * 10 + (text[i++] - '0');
+            }
+            if (i == fractionStart) {
+                return null;
+            }
+            for (int scale = i - fractionStart; scale < 9; scale++) {
+                nanos *= 10;
+            }
+        }
+
+        ZoneOffset zoneOffset;
+        if (i == end - 1 && (text[i] == 'Z' || text[i] == 'z')) {
+            zoneOffset = ZoneOffset.UTC;
+        } else if (i == end - 6 && (text[i] == '+' || text[i] == '-') && text[i + 3] == ':') {
+            int offsetHours = digits(text, i + 1, 2);
+            int offsetMinutes = digits(text, i + 4, 2);
+            if ((offsetHours | offsetMinutes) < 0) {
+                return null;
+            }
+            int sign = text[i] == '-' ? -1 : 1;
+            zoneOffset = ZoneOffset.ofHoursMinutes(sign * offsetHours, sign * offsetMinutes);
+        } else {
+            return null;
+        }
+
+        var localTime = LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+        return ZonedDateTime.ofInstant(localTime, zoneOffset, ZoneOffset.UTC);
+    }
+
+    private static int digits(char[] text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,11 @@
+package org.home.work.metrics;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("rockets.metrics")
+public class MetricsConfig {
+    /** one in this many messages is timed on the ingest path (parse, lock wait, processing). 1 times every message, 0 none */
+    private int timingSampleRate = 32;
+}
@@ -0,0 +1,25 @@
+package org.home.work.metrics;
+
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Produces;
+import jakarta.inject.Inject;
+
+@Controller("/metrics")
+public class MetricsController {
+
+    public static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Inject
+    private PrometheusMeterRegistry meterRegistry;
+
+    /**
+     * @return Every meter in the Prometheus text format, for scraping
+     */
+    @Get
+    @Produces(PROMETHEUS_TEXT)
+    String scrape() {
+        return meterRegistry.scrape();
+    }
+}
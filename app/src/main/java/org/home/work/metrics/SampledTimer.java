@@ -0,0 +1,82 @@
+package org.home.work.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer for hot paths that times only one in {@link MetricsConfig#getTimingSampleRate()} calls.
+ * Counts of the recorded timings are therefore a sample too, count events with a counter.
+ * <pre>
+ * var start = timer.start();
+ * ...
+ * timer.stop(start);
+ * </pre>
+ */
+public final class SampledTimer {
+    public static final SampledTimer NONE = new SampledTimer(null, 0);
+
+    private final Timer timer;
+    private final int sampleRate;
+
+    private SampledTimer(Timer timer, int sampleRate) {
+        this.timer = timer;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Registers a timer with a percentile histogram from 100ns to 1s
+     *
+     * @param tags Tag names and values
+     */
+    public static SampledTimer register(String name, String description, MetricsConfig config, MeterRegistry meterRegistry, String... tags) {
+        if (config.getTimingSampleRate() <= 0) {
+            return NONE;
+        }
+        var timer = Timer.builder(name)
+            .description(description)
+            .tags(tags)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofNanos(100))
+            .maximumExpectedValue(Duration.ofSeconds(1))
+            .register(meterRegistry);
+        return new SampledTimer(timer, config.getTimingSampleRate());
+    }
+
+    /**
+     * @return System.nanoTime() if this call is timed, otherwise 0
+     */
+    public long start() {
+        if (sampleRate == 0 || sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * @param start What {@link #start()} returned
+     * @return System.nanoTime() if the call is timed, otherwise 0
+     */
+    public long now(long start) {
+        return start == 0 ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records the time since start, if the call is timed
+     */
+    public void stop(long start) {
+        record(start, now(start));
+    }
+
+    /**
+     * Records the time from start to end, if the call is timed
+     */
+    public void record(long start, long end) {
+        if (start != 0) {
+            timer.record(end - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.home.work.pipeline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.ProcessResult;
+import org.home.work.rockets.RocketRepository;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands received telemetry to shard workers instead of processing it on the request thread.
+ * <p>
+ * Every channel belongs to one shard and every shard has one worker thread, so a rocket only ever changes on
+ * its worker and messages of a channel are processed in the order they were queued.
+ * Each shard has a bounded queue, when it is full the message is turned away instead of waiting,
+ * so a sender that is too fast is told to slow down before the service runs out of memory.
+ * <p>
+ * Does nothing unless {@code rockets.pipeline.enabled} is set, then requests are processed on their own thread as before.
+ */
+@Slf4j
+@Singleton
+public class IngestPipeline implements Closeable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final RocketRepository repository;
+    private final Shard[] shards;
+    private volatile boolean running = true;
+
+    /**
+     * Messages of one channel, {@code results} is null when nobody waits for them
+     */
+    private record Task(String channel, List<MessageController.RocketTelemetry> telemetryList,
+                        CompletableFuture<List<ProcessResult>> results, long queuedAt) {}
+
+    public IngestPipeline(PipelineConfig config, RocketRepository repository, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        if (!config.isEnabled()) {
+            this.shards = new Shard[0];
+            return;
+        }
+
+        var count = config.getShards() > 0 ? config.getShards() : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, config.getQueueCapacity(), meterRegistry);
+        }
+        log.info("Ingest pipeline started with {} shard(s), queue capacity {}", count, shards[0].queue.capacity());
+    }
+
+    public boolean isEnabled() {
+        return shards.length > 0;
+    }
+
+    /**
+     * Queues a message without waiting for it to be processed
+     *
+     * @param telemetry Received rocket telemetry
+     * @return false if the shard queue is full
+     */
+    public boolean submit(MessageController.RocketTelemetry telemetry) {
+        var channel = telemetry.metadata().channel();
+        return shard(channel).offer(new Task(channel, List.of(telemetry), null, System.nanoTime()));
+    }
+
+    /**
+     * Queues messages of one channel as a single task
+     *
+     * @param channel       Rocket channel all messages belong to
+     * @param telemetryList Received rocket telemetry
+     * @return Result for each message once processed, in the same order as given. Null if the shard queue is full
+     */
+    public CompletableFuture<List<ProcessResult>> submit(String channel, List<MessageController.RocketTelemetry> telemetryList) {
+        var task = new Task(channel, telemetryList, new CompletableFuture<>(), System.nanoTime());
+        return shard(channel).offer(task) ? task.results() : null;
+    }
+
+    /**
+     * Stops the workers after they processed what is queued
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (var shard : shards) {
+            LockSupport.unpark(shard.worker);
+        }
+        for (var shard : shards) {
+            try {
+                shard.worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Tasks waiting in every shard
+     */
+    public int queuedTasks() {
+        var queued = 0;
+        for (var shard : shards) {
+            queued += shard.queue.size();
+        }
+        return queued;
+    }
+
+    private Shard shard(String channel) {
+        if (!running || shards.length == 0) {
+            throw new IllegalStateException("Ingest pipeline is not running");
+        }
+        var hash = channel == null ? 0 : channel.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    private class Shard {
+        private final MpscRing<Task> queue;
+        private final Thread worker;
+        // set by the worker before it parks, so producers know to wake it up
+        private volatile boolean sleeping;
+
+        private final Timer enqueueLatency;
+        private final Timer applyLatency;
+        private final Counter rejected;
+
+        Shard(int index, int capacity, MeterRegistry meterRegistry) {
+            this.queue = new MpscRing<>(capacity);
+            var tag = String.valueOf(index);
+            Gauge.builder("rockets.pipeline.queue.depth", queue, MpscRing::size)
+                .description("Tasks waiting for the shard worker")
+                .tag("shard", tag)
+                .register(meterRegistry);
+            this.enqueueLatency = Timer.builder("rockets.pipeline.enqueue.latency")
+                .description("Time taken to queue a task")
+                .tag("shard", tag)
+                .register(meterRegistry);
+            this.applyLatency = Timer.builder("rockets.pipeline.apply.latency")
+                .description("Time from queuing a task until its messages are processed")
+                .tag("shard", tag)
+                .register(meterRegistry);
+            this.rejected = meterRegistry.counter("rockets.pipeline.rejected", "shard", tag);
+            this.worker = Thread.ofPlatform().name("ingest-shard-" + index).daemon().start(this::work);
+        }
+
+        boolean offer(Task task) {
+            var queued = queue.offer(task);
+            enqueueLatency.record(System.nanoTime() - task.queuedAt(), TimeUnit.NANOSECONDS);
+            if (!queued) {
+                rejected.increment();
+                return false;
+            }
+            if (sleeping) {
+                LockSupport.unpark(worker);
+            }
+            return true;
+        }
+
+        private void work() {
+            while (true) {
+                var task = queue.poll();
+                if (task != null) {
+                    process(task);
+                    continue;
+                }
+                if (!running && queue.size() == 0) {
+                    return;
+                }
+
+                sleeping = true;
+                // a task queued before the flag was seen would otherwise wait for the timeout
+                if (queue.size() == 0 && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        }
+
+        private void process(Task task) {
+            try {
+                var results = repository.processTelemetry(task.channel(), task.telemetryList());
+                applyLatency.record(System.nanoTime() - task.queuedAt(), TimeUnit.NANOSECONDS);
+                if (task.results() != null) {
+                    task.results().complete(results);
+                }
+            } catch (RuntimeException e) {
+                log.error("Processing messages of channel {} failed", task.channel(), e);
+                if (task.results() != null) {
+                    task.results().completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.home.work.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer for many producer threads and one consumer thread.
+ * Producers claim a position with a compare-and-set on the tail and then fill its slot,
+ * the consumer takes slots in position order and empties them before moving the head on,
+ * so a producer can only claim a slot that was already emptied.
+ *
+ * @param <E> Element type
+ */
+class MpscRing<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // written by the consumer only
+    private volatile long head;
+
+    /**
+     * @param capacity Rounded up to a power of two
+     */
+    MpscRing(int capacity) {
+        var size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return false if the ring is full
+     */
+    boolean offer(E element) {
+        long position;
+        do {
+            position = tail.get();
+            if (position - head >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+
+        slots.setRelease((int) position & mask, element);
+        return true;
+    }
+
+    /**
+     * Consumer only
+     *
+     * @return Oldest element, null if there is none (or its producer hasn't filled the slot yet)
+     */
+    E poll() {
+        var position = head;
+        var index = (int) position & mask;
+        var element = slots.getAcquire(index);
+        if (element == null) {
+            return null;
+        }
+        slots.setRelease(index, null);
+        head = position + 1;
+        return element;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,15 @@
+package org.home.work.pipeline;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("rockets.pipeline")
+public class PipelineConfig {
+    /** hand messages to shard workers instead of processing them on the request thread */
+    private boolean enabled;
+    /** shard workers, each one owns the rockets whose channel hashes to it. 0 for one per CPU core */
+    private int shards;
+    /** messages (or batch channel groups) waiting per shard before requests are turned away */
+    private int queueCapacity = 8192;
+}
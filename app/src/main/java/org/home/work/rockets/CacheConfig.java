@@ -0,0 +1,11 @@
+package org.home.work.rockets;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("rockets.cache")
+public class CacheConfig {
+    /** serialized rocket lists kept for repeated requests, least recently used ones are dropped beyond this. 0 to keep none */
+    private long maxBytes = 64L * 1024 * 1024;
+}
@@ -0,0 +1,535 @@
+package org.home.work.rockets;
+
+import org.home.work.messages.MessageController;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Predicate;
+
+/**
+ * {@link StorageEngine#COMPACT} rocket state: one row per rocket in primitive columns instead of objects.
+ * <p>
+ * Type, mission and status are {@link RocketDictionary} codes, times are epoch nanoseconds (read back in UTC).
+ * UUID channels are kept as two longs and found through an open-addressing table of row numbers, other channels go to a map.
+ * Columns are split into pages, so growing never copies them.
+ * <p>
+ * Messages of a rocket are processed under one of {@value #STRIPES} locks, by a {@link RocketBuffer} restored from the row,
+ * which is written back afterward. Only a rocket waiting for a missing message keeps its buffer (and queue) until it catches up.
+ * Readers don't lock: every row has a version that is odd while the row is written, a read is retried if it changed meanwhile.
+ */
+final class CompactRocketStore {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int STRIPES = 1024;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final byte LAUNCHED = 1;
+    private static final byte DEGRADED = 2;
+    private static final byte NAMED = 4; // channel is not a UUID
+    private static final byte WAITING = 8; // has a buffer in waiting
+    private static final VarHandle TABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final ReorderConfig config;
+    private final ReorderStats stats;
+    private final RocketListener listener;
+    private final RocketDictionary dictionary;
+    private final Object[] locks = new Object[STRIPES];
+
+    private volatile Page[] pages = new Page[0];
+    private volatile int size;
+    // row + 1 by UUID hash, 0 for empty. Replaced when it grows, written under this
+    private volatile int[] table = new int[1024];
+    private final ConcurrentHashMap<String, Integer> namedRows = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> rowNames = new ConcurrentHashMap<>();
+    // rockets waiting for a missing message, by row
+    private final ConcurrentHashMap<Integer, RocketBuffer> waiting = new ConcurrentHashMap<>();
+    // values the dictionary had no room for, by row of a rocket with the UNCODED code. Written inside the row's version
+    private final ConcurrentHashMap<Integer, String> uncodedTypes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> uncodedMissions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> uncodedStatuses = new ConcurrentHashMap<>();
+
+    private static final class Page {
+        final AtomicIntegerArray versions = new AtomicIntegerArray(PAGE_SIZE);
+        final long[] channelHigh = new long[PAGE_SIZE];
+        final long[] channelLow = new long[PAGE_SIZE];
+        final int[] lastMessageNumber = new int[PAGE_SIZE];
+        final int[] speed = new int[PAGE_SIZE];
+        final int[] type = new int[PAGE_SIZE];
+        final int[] mission = new int[PAGE_SIZE];
+        final int[] status = new int[PAGE_SIZE];
+        final long[] launchTime = new long[PAGE_SIZE];
+        final long[] endTime = new long[PAGE_SIZE];
+        final byte[] flags = new byte[PAGE_SIZE];
+    }
+
+    CompactRocketStore(ReorderConfig config, ReorderStats stats, RocketListener listener, RocketDictionary dictionary) {
+        this.config = config;
+        this.stats = stats;
+        this.listener = listener;
+        this.dictionary = dictionary;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param changed Set to whether the rocket changed
+     */
+    ProcessResult process(MessageController.RocketTelemetry telemetry, boolean[] changed) {
+        var row = row(telemetry.metadata().channel(), true);
+        var lockWait = stats.getLockWait();
+        var start = lockWait.start();
+        long locked;
+        ProcessResult result;
+        synchronized (locks[row & (STRIPES - 1)]) {
+            locked = lockWait.now(start);
+            var buffer = buffer(row);
+            var before = buffer.getSnapshot();
+            result = buffer.processTelemetry(telemetry);
+            changed[0] = buffer.getSnapshot() != before;
+            release(row, buffer);
+        }
+        lockWait.record(start, locked);
+        return result;
+    }
+
+    /**
+     * @param telemetryList Messages of one channel, sorted by message number
+     * @param changed       Set to whether the rocket changed
+     */
+    List<ProcessResult> process(String channel, List<MessageController.RocketTelemetry> telemetryList, boolean[] changed) {
+        var row = row(channel, true);
+        var lockWait = stats.getLockWait();
+        var start = lockWait.start();
+        long locked;
+        List<ProcessResult> results;
+        synchronized (locks[row & (STRIPES - 1)]) {
+            locked = lockWait.now(start);
+            var buffer = buffer(row);
+            var before = buffer.getSnapshot();
+            results = buffer.processTelemetry(telemetryList);
+            changed[0] = buffer.getSnapshot() != before;
+            release(row, buffer);
+        }
+        lockWait.record(start, locked);
+        return results;
+    }
+
+    /**
+     * @return Buffer of the rocket if it waits for a missing message, otherwise null
+     */
+    RocketBuffer waiting(String channel) {
+        var row = row(channel, false);
+        return row < 0 ? null : waiting.get(row);
+    }
+
+    /**
+     * Runs the gap policy of every rocket waiting for a missing message
+     *
+     * @return Whether any rocket changed
+     */
+    boolean expireGaps() {
+        var changed = false;
+        for (var row : waiting.keySet()) {
+            synchronized (locks[row & (STRIPES - 1)]) {
+                var buffer = waiting.get(row);
+                if (buffer != null) {
+                    changed |= buffer.expireGap();
+                    release(row, buffer);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return Whether processing the message now would find it a duplicate, see {@link RocketBuffer#received(int)}
+     */
+    boolean received(String channel, int messageNumber) {
+        var row = row(channel, false);
+        if (row < 0) {
+            return false;
+        }
+        var buffer = waiting.get(row);
+        if (buffer != null) {
+            return buffer.received(messageNumber);
+        }
+        // a stale number only lets a duplicate through
+        return !MessageNumbers.isNewer(messageNumber, pages[row >>> PAGE_BITS].lastMessageNumber[row & (PAGE_SIZE - 1)]);
+    }
+
+    boolean contains(String channel) {
+        return row(channel, false) >= 0;
+    }
+
+    Optional<RocketSnapshot> rocket(String channel) {
+        var row = row(channel, false);
+        return row < 0 ? Optional.empty() : Optional.of(read(row));
+    }
+
+    /**
+     * @return Every rocket matching the predicate, launched or not
+     */
+    List<RocketSnapshot> rockets(Predicate<RocketSnapshot> predicate) {
+        var rockets = new ArrayList<RocketSnapshot>();
+        var rows = size;
+        for (int row = 0; row < rows; row++) {
+            var rocket = read(row);
+            if (predicate.test(rocket)) {
+                rockets.add(rocket);
+            }
+        }
+        return rockets;
+    }
+
+    /**
+     * Compares codes, only matching rockets are read into snapshots
+     *
+     * @return Launched rockets matching the filter
+     */
+    List<RocketSnapshot> rockets(RocketFilter filter) {
+        var types = filter.type().map(dictionary.getTypes()::codesIgnoringCase).orElse(null);
+        var statuses = filter.status().map(dictionary.getStatuses()::codesIgnoringCase).orElse(null);
+        var missions = filter.mission().map(dictionary.getMissions()::codesIgnoringCase).orElse(null);
+
+        var rockets = new ArrayList<RocketSnapshot>();
+        var rows = size;
+        var current = pages;
+        for (int row = 0; row < rows; row++) {
+            var page = current[row >>> PAGE_BITS];
+            var i = row & (PAGE_SIZE - 1);
+            if ((page.flags[i] & LAUNCHED) != 0
+                && matches(types, page.type[i]) && matches(statuses, page.status[i]) && matches(missions, page.mission[i])) {
+                var rocket = read(row);
+                if (rocket.id() != null && filter.matches(rocket)) { // the row may have changed since its codes were compared
+                    rockets.add(rocket);
+                }
+            }
+        }
+        return rockets;
+    }
+
+    /**
+     * @return State of every rocket, one rocket at a time
+     */
+    Map<String, RocketBuffer.State> states() {
+        var rows = size;
+        var states = new HashMap<String, RocketBuffer.State>(rows);
+        for (int row = 0; row < rows; row++) {
+            synchronized (locks[row & (STRIPES - 1)]) {
+                var buffer = waiting.get(row);
+                states.put(channel(row), buffer != null ? buffer.state() : new RocketBuffer.State(read(row), List.of()));
+            }
+        }
+        return states;
+    }
+
+    void restore(String channel, RocketBuffer.State state) {
+        var row = row(channel, true);
+        synchronized (locks[row & (STRIPES - 1)]) {
+            var buffer = buffer(row);
+            buffer.restore(state);
+            release(row, buffer);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Every type a rocket had, the types without a code only while a rocket has them
+     */
+    Set<String> types() {
+        var types = dictionary.getTypes().values();
+        types.addAll(uncodedTypes.values());
+        return types;
+    }
+
+    /**
+     * Caller holds the row's lock
+     */
+    private RocketBuffer buffer(int row) {
+        if ((pages[row >>> PAGE_BITS].flags[row & (PAGE_SIZE - 1)] & WAITING) != 0) {
+            return waiting.get(row);
+        }
+        return new RocketBuffer(config, stats, listener, dictionary, read(row), false);
+    }
+
+    /**
+     * Caller holds the row's lock. Writes the rocket back, keeps the buffer only while it has queued messages
+     */
+    private void release(int row, RocketBuffer buffer) {
+        var queued = buffer.queuedMessages() > 0;
+        if (queued) {
+            waiting.put(row, buffer);
+        }
+        write(row, buffer.getSnapshot(), queued);
+        if (!queued) {
+            waiting.remove(row);
+        }
+    }
+
+    private RocketSnapshot read(int row) {
+        var page = pages[row >>> PAGE_BITS];
+        var i = row & (PAGE_SIZE - 1);
+        while (true) {
+            var version = page.versions.get(i);
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            var flags = page.flags[i];
+            var lastMessageNumber = page.lastMessageNumber[i];
+            var speed = page.speed[i];
+            var type = page.type[i];
+            var mission = page.mission[i];
+            var status = page.status[i];
+            var launchTime = page.launchTime[i];
+            var endTime = page.endTime[i];
+            VarHandle.loadLoadFence();
+            if (page.versions.get(i) != version) {
+                continue;
+            }
+
+            return new RocketSnapshot(
+                (flags & LAUNCHED) != 0 ? channel(row) : null,
+                value(dictionary.getTypes(), uncodedTypes, row, type),
+                speed,
+                value(dictionary.getMissions(), uncodedMissions, row, mission),
+                time(launchTime),
+                lastMessageNumber,
+                value(dictionary.getStatuses(), uncodedStatuses, row, status),
+                time(endTime),
+                (flags & DEGRADED) != 0
+            );
+        }
+    }
+
+    /**
+     * Caller holds the row's lock
+     */
+    private void write(int row, RocketSnapshot rocket, boolean queued) {
+        var page = pages[row >>> PAGE_BITS];
+        var i = row & (PAGE_SIZE - 1);
+        var type = dictionary.getTypes().code(rocket.type());
+        var mission = dictionary.getMissions().code(rocket.mission());
+        var status = dictionary.getStatuses().code(rocket.status());
+        var flags = (byte) ((page.flags[i] & NAMED) | (rocket.id() != null ? LAUNCHED : 0) | (rocket.degraded() ? DEGRADED : 0) | (queued ? WAITING : 0));
+
+        var version = page.versions.get(i);
+        page.versions.set(i, version + 1);
+        VarHandle.storeStoreFence();
+        page.flags[i] = flags;
+        page.lastMessageNumber[i] = rocket.lastMessageNumber();
+        page.speed[i] = rocket.speed();
+        keepUncoded(uncodedTypes, row, page.type[i], type, rocket.type());
+        keepUncoded(uncodedMissions, row, page.mission[i], mission, rocket.mission());
+        keepUncoded(uncodedStatuses, row, page.status[i], status, rocket.status());
+        page.type[i] = type;
+        page.mission[i] = mission;
+        page.status[i] = status;
+        page.launchTime[i] = nanos(rocket.launchTime());
+        page.endTime[i] = nanos(rocket.missionEndTime());
+        page.versions.set(i, version + 2);
+    }
+
+    private String channel(int row) {
+        var page = pages[row >>> PAGE_BITS];
+        var i = row & (PAGE_SIZE - 1);
+        if ((page.flags[i] & NAMED) != 0) {
+            return rowNames.get(row);
+        }
+        return new UUID(page.channelHigh[i], page.channelLow[i]).toString();
+    }
+
+    /**
+     * @return Row of the channel, -1 if there is none and {@code create} is false
+     */
+    private int row(String channel, boolean create) {
+        if (!isUuid(channel)) {
+            var row = namedRows.get(channel);
+            if (row != null || !create) {
+                return row != null ? row : -1;
+            }
+            synchronized (this) {
+                return namedRows.computeIfAbsent(channel, k -> {
+                    var added = addRow(0, 0, NAMED);
+                    rowNames.put(added, k);
+                    return added;
+                });
+            }
+        }
+
+        var high = hexLong(channel, 0, 8) << 32 | hexLong(channel, 9, 13) << 16 | hexLong(channel, 14, 18);
+        var low = hexLong(channel, 19, 23) << 48 | hexLong(channel, 24, 36);
+        var row = find(table, high, low);
+        if (row >= 0 || !create) {
+            return row;
+        }
+
+        synchronized (this) {
+            row = find(table, high, low);
+            if (row >= 0) {
+                return row;
+            }
+            row = addRow(high, low, (byte) 0);
+            if ((size - namedRows.size()) * 2 > table.length) {
+                rehash();
+            } else {
+                insert(table, row, high, low);
+            }
+            return row;
+        }
+    }
+
+    private int find(int[] table, long high, long low) {
+        var mask = table.length - 1;
+        for (int i = hash(high, low) & mask; ; i = (i + 1) & mask) {
+            var entry = (int) TABLE.getAcquire(table, i);
+            if (entry == 0) {
+                return -1;
+            }
+            var row = entry - 1;
+            var page = pages[row >>> PAGE_BITS];
+            var index = row & (PAGE_SIZE - 1);
+            if (page.channelHigh[index] == high && page.channelLow[index] == low && (page.flags[index] & NAMED) == 0) {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * Caller holds this. The row's channel columns are written before the row can be found
+     */
+    private void insert(int[] table, int row, long high, long low) {
+        var mask = table.length - 1;
+        var i = hash(high, low) & mask;
+        while ((int) TABLE.getAcquire(table, i) != 0) {
+            i = (i + 1) & mask;
+        }
+        TABLE.setRelease(table, i, row + 1);
+    }
+
+    /**
+     * Caller holds this
+     */
+    private void rehash() {
+        var grown = new int[table.length * 2];
+        var current = pages;
+        for (int row = 0; row < size; row++) {
+            var page = current[row >>> PAGE_BITS];
+            var i = row & (PAGE_SIZE - 1);
+            if ((page.flags[i] & NAMED) == 0) {
+                insert(grown, row, page.channelHigh[i], page.channelLow[i]);
+            }
+        }
+        table = grown;
+    }
+
+    /**
+     * Caller holds this
+     */
+    private int addRow(long high, long low, byte flags) {
+        var row = size;
+        if (row >>> PAGE_BITS == pages.length) {
+            var grown = Arrays.copyOf(pages, pages.length + 1);
+            grown[pages.length] = new Page();
+            pages = grown;
+        }
+
+        var page = pages[row >>> PAGE_BITS];
+        var i = row & (PAGE_SIZE - 1);
+        page.channelHigh[i] = high;
+        page.channelLow[i] = low;
+        page.flags[i] = flags;
+        page.launchTime[i] = NO_TIME;
+        page.endTime[i] = NO_TIME;
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * A value without a code matches, the caller compares the value itself
+     */
+    private static boolean matches(boolean[] codes, int code) {
+        return codes == null || code == Dictionary.UNCODED || (code < codes.length && codes[code]);
+    }
+
+    private static String value(Dictionary dictionary, Map<Integer, String> uncoded, int row, int code) {
+        return code != Dictionary.UNCODED ? dictionary.value(code) : uncoded.get(row);
+    }
+
+    /**
+     * Caller holds the row's lock, inside the row's version
+     */
+    private static void keepUncoded(Map<Integer, String> uncoded, int row, int oldCode, int code, String value) {
+        if (code == Dictionary.UNCODED) {
+            uncoded.put(row, value);
+        } else if (oldCode == Dictionary.UNCODED) {
+            uncoded.remove(row);
+        }
+    }
+
+    private static long nanos(ZonedDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        var instant = time.toInstant();
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static ZonedDateTime time(long nanos) {
+        return nanos == NO_TIME ? null : ZonedDateTime.ofInstant(Instant.ofEpochSecond(0, nanos), ZoneOffset.UTC);
+    }
+
+    /**
+     * @return true for the canonical lower case form, the only one {@link UUID#toString()} gives back
+     */
+    private static boolean isUuid(String channel) {
+        if (channel == null || channel.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            var c = channel.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hexLong(String text, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            var c = text.charAt(i);
+            value = value << 4 | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return value;
+    }
+
+    private static int hash(long high, long low) {
+        var h = high * 0x9E3779B97F4A7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
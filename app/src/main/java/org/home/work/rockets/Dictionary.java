@@ -0,0 +1,118 @@
+package org.home.work.rockets;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every distinct string a small int code, for values shared by many rockets (type, mission, status).
+ * Codes are never reused or removed. Code 0 is null.
+ * <p>
+ * Values are free text from clients, so there are at most {@code capacity} codes: once they are taken a new value gets
+ * {@link #UNCODED} and whoever holds it keeps the string itself. Unique explosion reasons can't grow the dictionary forever.
+ * <p>
+ * Looking up a code is a concurrent map read, adding a value takes a lock.
+ */
+public class Dictionary {
+    public static final int NULL = 0;
+    public static final int UNCODED = -1;
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    // values by code, replaced when it grows. A value is in it before its code can be seen in codes
+    private volatile String[] values = new String[16];
+    private int size = 1; // guarded by this
+    private final int capacity;
+
+    public Dictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Values given a code at most
+     */
+    public Dictionary(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return Code of given value, added if it is new. {@link #UNCODED} if it is new and the dictionary is full
+     */
+    public int code(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        var code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (size > capacity) {
+                return UNCODED;
+            }
+            var current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[size] = value;
+            values = current;
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @return Code of given value, {@link #UNCODED} if it has none
+     */
+    public int find(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        var code = codes.get(value);
+        return code != null ? code : UNCODED;
+    }
+
+    /**
+     * @param code Code from {@link #code(String)}, not {@link #UNCODED}
+     */
+    public String value(int code) {
+        return values[code];
+    }
+
+    /**
+     * @return Which codes have a value equal to given one ignoring case, indexed by code
+     */
+    public boolean[] codesIgnoringCase(String value) {
+        var current = values;
+        var matches = new boolean[current.length];
+        for (int code = 1; code < current.length; code++) {
+            matches[code] = current[code] != null && current[code].equalsIgnoreCase(value);
+        }
+        return matches;
+    }
+
+    /**
+     * @return Every value, in O(number of values)
+     */
+    public Set<String> values() {
+        var current = values;
+        var all = new HashSet<String>();
+        for (int code = 1; code < current.length && current[code] != null; code++) {
+            all.add(current[code]);
+        }
+        return all;
+    }
+
+    /**
+     * @return Number of codes, including {@link #NULL}
+     */
+    public int size() {
+        return codes.size() + 1;
+    }
+}
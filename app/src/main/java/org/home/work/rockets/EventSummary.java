@@ -0,0 +1,106 @@
+package org.home.work.rockets;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-message events of rocket buffers counted by rocket, logged as a periodic summary instead of a line each,
+ * so a burst of redeliveries doesn't wait for the log. Counting a rocket's event again allocates nothing.
+ * The events themselves are logged at debug level where they happen.
+ * Counts are approximate: an event counted while its rocket is dropped from the summary after a quiet period is lost
+ */
+@Slf4j
+public class EventSummary {
+    private static final Event[] EVENTS = Event.values();
+
+    public enum Event {
+        DUPLICATE("duplicate(s)", true),
+        QUEUED("queued for a missing message", true),
+        GAP_SKIPPED("gap(s) skipped", true),
+        DROPPED("queued message(s) dropped", true),
+        LAUNCHED("launched", false),
+        EXPLODED("exploded", false);
+
+        private final String description;
+        // named per rocket in the summary
+        private final boolean warning;
+
+        Event(String description, boolean warning) {
+            this.description = description;
+            this.warning = warning;
+        }
+    }
+
+    // counts since the last summary by channel, a rocket is dropped after a summary without events
+    private final ConcurrentHashMap<String, AtomicLongArray> byChannel = new ConcurrentHashMap<>();
+
+    void count(Event event, String channel, int count) {
+        var key = channel != null ? channel : "?"; // not launched yet
+        var counts = byChannel.get(key);
+        if (counts == null) {
+            counts = byChannel.computeIfAbsent(key, k -> new AtomicLongArray(EVENTS.length));
+        }
+        counts.addAndGet(event.ordinal(), count);
+    }
+
+    /**
+     * Logs the counts since the last call, if there are any: totals, and the rockets with the most warnings
+     *
+     * @param maxRockets Rockets named, a line each
+     */
+    public void report(int maxRockets) {
+        record Rocket(String channel, long[] counts, long warnings) {}
+
+        var totals = new long[EVENTS.length];
+        var rockets = 0;
+        var top = new PriorityQueue<>(Comparator.comparingLong(Rocket::warnings)); // fewest warnings on top
+        for (var entry : byChannel.entrySet()) {
+            var counts = new long[EVENTS.length];
+            var warnings = 0L;
+            var any = false;
+            for (var event : EVENTS) {
+                var count = entry.getValue().getAndSet(event.ordinal(), 0);
+                counts[event.ordinal()] = count;
+                totals[event.ordinal()] += count;
+                any |= count > 0;
+                warnings += event.warning ? count : 0;
+            }
+            if (!any) {
+                byChannel.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            rockets++;
+            if (warnings > 0) {
+                top.add(new Rocket(entry.getKey(), counts, warnings));
+                if (top.size() > maxRockets) {
+                    top.poll();
+                }
+            }
+        }
+        if (rockets == 0) {
+            return;
+        }
+
+        log.info("{} rocket(s) since the last summary: {}", rockets, describe(totals, false));
+        var named = new ArrayList<>(top);
+        named.sort(Comparator.comparingLong(Rocket::warnings).reversed());
+        for (var rocket : named) {
+            log.warn("Rocket {}: {}", rocket.channel(), describe(rocket.counts(), true));
+        }
+    }
+
+    private static String describe(long[] counts, boolean warningsOnly) {
+        var text = new StringBuilder();
+        for (var event : EVENTS) {
+            if (counts[event.ordinal()] > 0 && (event.warning || !warningsOnly)) {
+                text.append(text.isEmpty() ? "" : ", ").append(counts[event.ordinal()]).append(' ').append(event.description);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package org.home.work.rockets;
+
+/**
+ * What to do when a rocket has waited too long for a missing message, or has too many messages queued behind it
+ */
+public enum GapPolicy {
+    /** give up on the missing messages and continue with the queued ones */
+    SKIP_GAP,
+    /** same as {@link #SKIP_GAP}, and mark the rocket as degraded since its state may be wrong from then on */
+    DEGRADE,
+    /** keep waiting for the missing message (the source delivers at least once), drop the queued messages that waited the longest */
+    DROP_OLDEST
+}
@@ -0,0 +1,108 @@
+package org.home.work.rockets;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of non-negative values in HdrHistogram-style buckets: exact below 128, above that each power of two
+ * is split into 64 buckets, so a bucket's bounds are within 1/64 (~1.6%) of any value in it.
+ * Recording and removing are O(1) and thread safe, reads walk a fixed number of buckets.
+ */
+class LogHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long maxValue;
+    private final AtomicLongArray counts;
+
+    /**
+     * @param valueBits Largest recordable value is 2^valueBits - 1, larger values are counted as that
+     */
+    LogHistogram(int valueBits) {
+        this.maxValue = (1L << valueBits) - 1;
+        this.counts = new AtomicLongArray(index(maxValue) + 1);
+    }
+
+    void record(long value) {
+        counts.incrementAndGet(index(clamp(value)));
+    }
+
+    void remove(long value) {
+        counts.decrementAndGet(index(clamp(value)));
+    }
+
+    /**
+     * @return Smallest value of the lowest non-empty bucket, null if empty
+     */
+    Long min() {
+        for (int i = 0; i < counts.length(); i++) {
+            if (counts.get(i) > 0) {
+                return lowestValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Largest value of the highest non-empty bucket, null if empty
+     */
+    Long max() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return highestValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return Largest value of the bucket the percentile falls in, null if empty
+     */
+    Long percentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return null;
+        }
+
+        var target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return highestValue(i);
+            }
+        }
+        return max();
+    }
+
+    private long clamp(long value) {
+        return Math.min(Math.max(value, 0), maxValue);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        var magnitude = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS
+        var shift = magnitude - SUB_BUCKET_BITS + 1;
+        var subBucket = (int) (value >>> shift) - HALF_SUB_BUCKETS;
+        return SUB_BUCKETS + (magnitude - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + subBucket;
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        var magnitude = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + SUB_BUCKET_BITS;
+        var subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return (long) subBucket << (magnitude - SUB_BUCKET_BITS + 1);
+    }
+
+    static long highestValue(int index) {
+        return lowestValue(index + 1) - 1;
+    }
+}
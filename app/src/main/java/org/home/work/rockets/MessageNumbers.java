@@ -0,0 +1,24 @@
+package org.home.work.rockets;
+
+/**
+ * Message numbers compared as sequence numbers that wrap around (RFC 1982 serial number arithmetic):
+ * a number is newer than another if it is less than 2^31 ahead of it, so after {@link Integer#MAX_VALUE} comes {@link Integer#MIN_VALUE}.
+ */
+final class MessageNumbers {
+
+    private MessageNumbers() {}
+
+    /**
+     * @return true if number comes after last
+     */
+    static boolean isNewer(int number, int last) {
+        return number - last > 0;
+    }
+
+    /**
+     * Sequence order, consistent for numbers less than 2^31 apart
+     */
+    static int compare(int a, int b) {
+        return Integer.compare(a - b, 0);
+    }
+}
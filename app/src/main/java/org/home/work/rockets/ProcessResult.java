@@ -0,0 +1,18 @@
+package org.home.work.rockets;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * What happened to a single telemetry record
+ */
+@Serdeable
+public enum ProcessResult {
+    /** next in sequence, applied to the rocket right away */
+    APPLIED,
+    /** already received (message number not newer than the last applied one) */
+    DUPLICATE,
+    /** arrived ahead of a missing message, waiting in the queue */
+    BUFFERED,
+    /** could not be read, or dropped by {@link GapPolicy#DROP_OLDEST} for being too far ahead of a full {@link Sequencer#RING}, never reached a rocket */
+    REJECTED
+}
@@ -0,0 +1,24 @@
+package org.home.work.rockets;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Limits of the per-rocket queue of messages waiting for a missing message
+ */
+@Data
+@ConfigurationProperties("rockets.reorder")
+public class ReorderConfig {
+    /** queued messages per rocket before the gap policy runs */
+    private int maxQueueDepth = 1000;
+    /** how long to wait for a missing message before the gap policy runs */
+    private Duration maxGapAge = Duration.ofSeconds(30);
+    private GapPolicy gapPolicy = GapPolicy.SKIP_GAP;
+    private Sequencer sequencer = Sequencer.LOCK;
+    /** slots of the {@link Sequencer#RING} sequencer, rounded up to a power of two. Messages further ahead than that run the gap policy */
+    private int ringSize = 64;
+    /** rockets named in the log summary of duplicates, queued messages and skipped gaps (every log-summary-interval), those with the most */
+    private int logSummaryRockets = 10;
+}
@@ -0,0 +1,57 @@
+package org.home.work.rockets;
+
+import lombok.Getter;
+import org.home.work.messages.MessageController;
+import org.home.work.metrics.SampledTimer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gap policy and ignored message counters, per-rocket event counts for the log summary, and the lock wait timer, shared by all rocket buffers
+ */
+@Getter
+public class ReorderStats {
+    private final LongAdder gapsSkipped = new LongAdder();
+    private final LongAdder messagesSkipped = new LongAdder();
+    private final LongAdder messagesDropped = new LongAdder();
+    private final LongAdder unknownMessages = new LongAdder();
+    private final EventSummary events = new EventSummary();
+    // time from asking for a rocket's lock until holding it, set up by the repository
+    private SampledTimer lockWait = SampledTimer.NONE;
+
+    void gapSkipped(String channel, int missingMessages) {
+        gapsSkipped.increment();
+        messagesSkipped.add(missingMessages);
+        events.count(EventSummary.Event.GAP_SKIPPED, channel, 1);
+    }
+
+    void messagesDropped(String channel, int count) {
+        messagesDropped.add(count);
+        events.count(EventSummary.Event.DROPPED, channel, count);
+    }
+
+    void duplicate(String channel) {
+        events.count(EventSummary.Event.DUPLICATE, channel, 1);
+    }
+
+    void queued(String channel) {
+        events.count(EventSummary.Event.QUEUED, channel, 1);
+    }
+
+    void applied(MessageController.RocketTelemetry telemetry) {
+        switch (telemetry.metadata().messageType()) {
+            case LAUNCHED -> events.count(EventSummary.Event.LAUNCHED, telemetry.metadata().channel(), 1);
+            case EXPLODED -> events.count(EventSummary.Event.EXPLODED, telemetry.metadata().channel(), 1);
+            default -> {
+            }
+        }
+    }
+
+    void timeLockWait(SampledTimer lockWait) {
+        this.lockWait = lockWait;
+    }
+
+    void unknownMessage() {
+        unknownMessages.increment();
+    }
+}
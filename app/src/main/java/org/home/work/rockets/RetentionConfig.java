@@ -0,0 +1,17 @@
+package org.home.work.rockets;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("rockets.retention")
+public class RetentionConfig {
+    /** exploded rockets move to the compressed archive this long after they exploded. 0 to keep every rocket live */
+    private Duration archiveAfter = Duration.ZERO;
+    /** how often rockets due for the archive are looked for */
+    private Duration checkInterval = Duration.ofSeconds(10);
+    /** archived rockets compressed together, bigger blocks compress better but take longer to read one rocket from */
+    private int blockSize = 256;
+}
@@ -0,0 +1,393 @@
+package org.home.work.rockets;
+
+import lombok.extern.slf4j.Slf4j;
+import org.home.work.messages.MessageController;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free {@link Sequencer#RING} ordering for one {@link RocketBuffer}.
+ * <p>
+ * A message goes to slot {@code messageNumber & mask} with a compare-and-set, so only messages within ring size of the
+ * last applied one fit. A thread that placed a message then tries to become the drainer: only the drainer applies messages,
+ * taking them from the slot after the last applied one for as long as they are there.
+ * A thread that can't become the drainer just returns, the drainer checks the next slot again after letting go,
+ * so a message placed meanwhile is never left behind.
+ * <p>
+ * Gap policy work, taking the state and restoring it need the rocket to themselves, they wait to become the drainer.
+ * Messages further ahead than the ring make the rocket skip its gap ({@link GapPolicy#SKIP_GAP}, {@link GapPolicy#DEGRADE}),
+ * or are dropped ({@link GapPolicy#DROP_OLDEST}) since there is no room to keep them.
+ */
+@Slf4j
+final class RingSequencer {
+    private final RocketBuffer buffer;
+    private final ReorderConfig config;
+    private final ReorderStats stats;
+    private final AtomicReferenceArray<RocketBuffer.Pending> slots;
+    private final int mask;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // same as the rocket's lastMessageNumber, written by the drainer only, read by everyone
+    private final AtomicInteger lastApplied = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    // drainer only: System.nanoTime() when the rocket started waiting for the current missing message, 0 if it isn't
+    private long gapOpenedAt;
+
+    RingSequencer(RocketBuffer buffer, ReorderConfig config, ReorderStats stats) {
+        this.buffer = buffer;
+        this.config = config;
+        this.stats = stats;
+        var size = Integer.highestOneBit(Math.max(2, config.getRingSize() - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    ProcessResult process(MessageController.RocketTelemetry telemetry) {
+        var messageNumber = telemetry.metadata().messageNumber();
+        var mine = new RocketBuffer.Pending(telemetry, System.nanoTime());
+
+        while (true) {
+            var last = lastApplied.get();
+            if (!MessageNumbers.isNewer(messageNumber, last)) {
+                duplicate(telemetry);
+                return ProcessResult.DUPLICATE;
+            }
+            if (messageNumber - last > slots.length()) {
+                if (!makeRoom(messageNumber)) {
+                    return ProcessResult.REJECTED;
+                }
+                continue;
+            }
+
+            if (!place(mine)) {
+                duplicate(telemetry);
+                return ProcessResult.DUPLICATE;
+            }
+            // a copy may have been applied between the check above and placing this one, don't leave it for the drainer
+            if (!MessageNumbers.isNewer(messageNumber, lastApplied.get()) && remove(slot(messageNumber), mine)) {
+                duplicate(telemetry);
+                return ProcessResult.DUPLICATE;
+            }
+            break;
+        }
+
+        drain();
+        return MessageNumbers.isNewer(messageNumber, lastApplied.get()) ? ProcessResult.BUFFERED : ProcessResult.APPLIED;
+    }
+
+    private void duplicate(MessageController.RocketTelemetry telemetry) {
+        stats.duplicate(telemetry.metadata().channel());
+        if (log.isDebugEnabled()) {
+            log.debug("Ignoring message #{} of rocket {}, already received", telemetry.metadata().messageNumber(), telemetry.metadata().channel());
+        }
+    }
+
+    /**
+     * Runs the gap policy if the rocket has waited for a missing message longer than allowed.
+     * Skipped if another thread is applying messages, it checks the gap age itself.
+     *
+     * @return Whether the rocket changed, i.e. a gap was skipped
+     */
+    boolean expireGap() {
+        if (pending.get() <= 0 || !draining.compareAndSet(false, true)) {
+            return false;
+        }
+        var before = buffer.getSnapshot();
+        boolean changed;
+        try {
+            enforceLimits();
+            changed = buffer.getSnapshot() != before;
+        } finally {
+            draining.set(false);
+        }
+        drain();
+        return changed;
+    }
+
+    int queuedMessages() {
+        return Math.max(0, pending.get());
+    }
+
+    RocketBuffer.State state() {
+        RocketBuffer.State state;
+        acquire();
+        try {
+            var queued = pendingMessages();
+            queued.sort((a, b) -> MessageNumbers.compare(a.messageNumber(), b.messageNumber()));
+            state = new RocketBuffer.State(buffer.getSnapshot(), queued.stream().map(RocketBuffer.Pending::telemetry).toList());
+        } finally {
+            draining.set(false);
+        }
+        drain(); // messages placed meanwhile were left to this thread
+        return state;
+    }
+
+    /**
+     * @param restore Replaces the rocket, called while no messages are applied
+     */
+    void restore(Runnable restore, List<MessageController.RocketTelemetry> queued) {
+        acquire();
+        try {
+            restore.run();
+            for (int i = 0; i < slots.length(); i++) {
+                slots.set(i, null);
+            }
+            pending.set(0);
+            lastApplied.set(buffer.getRocket().getLastMessageNumber());
+            gapOpenedAt = 0;
+
+            var now = System.nanoTime();
+            for (var telemetry : queued) {
+                var messageNumber = telemetry.metadata().messageNumber();
+                if (MessageNumbers.isNewer(messageNumber, lastApplied.get()) && messageNumber - lastApplied.get() <= slots.length()) {
+                    place(new RocketBuffer.Pending(telemetry, now));
+                } else if (MessageNumbers.isNewer(messageNumber, lastApplied.get())) {
+                    stats.messagesDropped(telemetry.metadata().channel(), 1);
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+        drain();
+    }
+
+    /**
+     * @return false if the message is already waiting
+     */
+    private boolean place(RocketBuffer.Pending mine) {
+        var index = slot(mine.messageNumber());
+        pending.incrementAndGet();
+        while (true) {
+            var current = slots.get(index);
+            if (current == null) {
+                if (slots.compareAndSet(index, null, mine)) {
+                    return true;
+                }
+            } else if (current.messageNumber() == mine.messageNumber()) {
+                pending.decrementAndGet();
+                return false;
+            } else if (!MessageNumbers.isNewer(current.messageNumber(), lastApplied.get())) {
+                // a copy left behind by a message that was applied meanwhile
+                if (slots.compareAndSet(index, current, mine)) {
+                    pending.decrementAndGet();
+                    return true;
+                }
+            } else {
+                // the slot is taken by a newer message, so this one is at least a ring behind it and was applied already
+                pending.decrementAndGet();
+                return false;
+            }
+        }
+    }
+
+    private boolean remove(int index, RocketBuffer.Pending entry) {
+        if (slots.compareAndSet(index, entry, null)) {
+            pending.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies contiguous messages unless another thread is, then checks again in case a message arrived while it let go
+     */
+    private void drain() {
+        while (draining.compareAndSet(false, true)) {
+            try {
+                applyContiguous();
+                enforceLimits();
+            } finally {
+                draining.set(false);
+            }
+
+            var next = lastApplied.get() + 1;
+            var waiting = slots.get(slot(next));
+            if (waiting == null || waiting.messageNumber() != next) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drainer only
+     */
+    private void applyContiguous() {
+        var applied = false;
+        while (true) {
+            var next = lastApplied.get() + 1;
+            var index = slot(next);
+            var entry = slots.get(index);
+            if (entry == null) {
+                break;
+            }
+            if (entry.messageNumber() != next) {
+                if (MessageNumbers.isNewer(next, entry.messageNumber()) && remove(index, entry)) {
+                    continue; // copy of an applied message
+                }
+                break;
+            }
+
+            buffer.apply(entry.telemetry());
+            // the slot is emptied after moving on, so a copy arriving in between finds the original and is a duplicate
+            lastApplied.set(buffer.getRocket().getLastMessageNumber());
+            remove(index, entry);
+            applied = true;
+        }
+
+        if (pending.get() <= 0) {
+            gapOpenedAt = 0;
+        } else if (applied || gapOpenedAt == 0) {
+            gapOpenedAt = System.nanoTime(); // waiting for another missing message from now on
+        }
+    }
+
+    /**
+     * Drainer only, same limits as the queue of {@link Sequencer#LOCK}
+     */
+    private void enforceLimits() {
+        if (pending.get() <= 0) {
+            return;
+        }
+
+        var now = System.nanoTime();
+        var expired = now - gapOpenedAt >= config.getMaxGapAge().toNanos();
+        switch (config.getGapPolicy()) {
+            case SKIP_GAP, DEGRADE -> {
+                while (pending.get() > 0 && (pending.get() > config.getMaxQueueDepth() || expired)) {
+                    if (!skipGap(null)) {
+                        break;
+                    }
+                    applyContiguous();
+                    expired = gapOpenedAt != 0 && System.nanoTime() - gapOpenedAt >= config.getMaxGapAge().toNanos();
+                }
+            }
+            case DROP_OLDEST -> dropOldest(now);
+        }
+    }
+
+    /**
+     * Message further ahead than the ring: skip the gap until it fits, or drop it
+     *
+     * @return true if the message should be placed again
+     */
+    private boolean makeRoom(int messageNumber) {
+        acquire();
+        try {
+            if (messageNumber - lastApplied.get() <= slots.length()) {
+                return true; // the drainer moved on meanwhile
+            }
+            if (config.getGapPolicy() == GapPolicy.DROP_OLDEST) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Rocket {} still waiting for #{}, dropping #{} that is too far ahead", buffer.getSnapshot().id(), lastApplied.get() + 1, messageNumber);
+                }
+                stats.messagesDropped(buffer.getSnapshot().id(), 1);
+                return false;
+            }
+
+            while (messageNumber - lastApplied.get() > slots.length()) {
+                skipGap(messageNumber);
+                applyContiguous();
+            }
+            return true;
+        } finally {
+            draining.set(false);
+            drain();
+        }
+    }
+
+    /**
+     * Drainer only. Gives up on the missing messages before the first waiting one
+     *
+     * @param ahead Message that doesn't fit the ring, skipped to if nothing waiting comes before it
+     * @return false if there was nothing to skip to
+     */
+    private boolean skipGap(Integer ahead) {
+        var last = lastApplied.get();
+        // how far ahead of the last applied message, numbers wrap around
+        var distance = pendingMessages().stream().mapToInt(pending -> pending.messageNumber() - last).min().orElse(Integer.MAX_VALUE);
+        if (ahead != null) {
+            distance = Math.min(distance, ahead - slots.length() + 1 - last);
+        }
+        if (distance == Integer.MAX_VALUE) {
+            return false;
+        }
+
+        var next = last + distance;
+        var missing = next - last - 1;
+        if (log.isDebugEnabled()) {
+            log.debug("Rocket {} stopped waiting for #{}..#{}, skipping {} message(s)", buffer.getSnapshot().id(), last + 1, next - 1, missing);
+        }
+        stats.gapSkipped(buffer.getSnapshot().id(), missing);
+        buffer.getRocket().setLastMessageNumber(next - 1);
+        if (config.getGapPolicy() == GapPolicy.DEGRADE) {
+            buffer.getRocket().setDegraded(true);
+        }
+        buffer.publish(null);
+        lastApplied.set(next - 1);
+        gapOpenedAt = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Drainer only. Drops waiting messages while there are too many or they waited too long, the longest waiting first
+     */
+    private void dropOldest(long now) {
+        var byArrival = pendingMessages();
+        byArrival.sort(Comparator.comparingLong(RocketBuffer.Pending::receivedAt));
+
+        var maxGapAge = config.getMaxGapAge().toNanos();
+        var expired = 0;
+        while (expired < byArrival.size() && now - byArrival.get(expired).receivedAt() >= maxGapAge) {
+            expired++;
+        }
+
+        var toDrop = Math.max(byArrival.size() - config.getMaxQueueDepth(), expired);
+        var dropped = 0;
+        for (int i = 0; i < toDrop; i++) {
+            var entry = byArrival.get(i);
+            if (remove(slot(entry.messageNumber()), entry)) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rocket {} still waiting for #{}, dropping {} queued message(s)", buffer.getSnapshot().id(), lastApplied.get() + 1, dropped);
+            }
+            stats.messagesDropped(buffer.getSnapshot().id(), dropped);
+        }
+    }
+
+    /**
+     * @return Messages waiting in the ring, not in order
+     */
+    private List<RocketBuffer.Pending> pendingMessages() {
+        var last = lastApplied.get();
+        var waiting = new ArrayList<RocketBuffer.Pending>();
+        for (int i = 0; i < slots.length(); i++) {
+            var entry = slots.get(i);
+            if (entry != null && MessageNumbers.isNewer(entry.messageNumber(), last)) {
+                waiting.add(entry);
+            }
+        }
+        return waiting;
+    }
+
+    /**
+     * Waits until this thread is the drainer
+     */
+    private void acquire() {
+        while (!draining.compareAndSet(false, true)) {
+            Thread.onSpinWait();
+            Thread.yield();
+        }
+    }
+
+    private int slot(int messageNumber) {
+        return messageNumber & mask;
+    }
+}
@@ -1,70 +1,161 @@
 package org.home.work.rockets;
 
 import io.micronaut.serde.annotation.Serdeable;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.home.work.messages.MessageController;
 import org.home.work.messages.MessageType;
+import org.home.work.messages.RocketEvent;
 
 import java.time.ZonedDateTime;
 
+/**
+ * Mutable rocket state. Changed only by its {@link RocketBuffer}, one thread at a time (the buffer's lock or its ring drainer),
+ * everyone else reads {@link RocketSnapshot}s.
+ * Type, mission and status are kept as {@link RocketDictionary} codes, their getters and snapshots return the shared strings.
+ * A value the dictionary has no room for is kept as it is, next to its {@link Dictionary#UNCODED} code
+ */
 @Slf4j
 @Data
 @Serdeable
 public class Rocket {
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final RocketDictionary dictionary;
+
     private String id;
-    private String type;
+    private int type;
     private int speed;
-    private String mission;
+    private int mission;
     private ZonedDateTime launchTime;
     private int lastMessageNumber;
 
-    private String status;
+    private int status;
     private ZonedDateTime missionEndTime;
+    private boolean degraded; // messages were skipped, state may not be exact
 
-    public synchronized void update(MessageController.RocketTelemetry telemetry) {
-        var message = telemetry.message();
-        var type = MessageType.ofStr(telemetry.metadata().messageType());
-
-        switch (type) {
-            case LAUNCHED -> {
-                this.id = telemetry.metadata().channel();
-                this.type = message.get("type");
-                this.speed = Integer.parseInt(message.get("launchSpeed"));
-                this.mission = message.get("mission");
-                this.launchTime = telemetry.metadata().messageTime();
-
-                this.status = "LAUNCHED";
-
-                log.info("\uD83D\uDE80 Rocket {} launched", this.id);
-            }
-
-            case SPEED_INCREASED -> {
-                this.speed += Integer.parseInt(message.get("by"));
-            }
-            case SPEED_DECREASED -> {
-                this.speed -= Integer.parseInt(message.get("by"));
-            }
-            case EXPLODED -> {
-                log.warn("\uD83D\uDCA5 Rocket {} exploded", id);
-
-                this.status = message.get("reason");
-                this.missionEndTime = telemetry.metadata().messageTime();
-            }
-            case MISSION_CHANGED -> {
-                this.mission = message.get("newMission");
-            }
-            case null, default -> {
-                return;
-            }
-        }
+    // values without a code, null while they have one
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String typeText;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String missionText;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String statusText;
+
+    /**
+     * Applies one message type, bound per {@link MessageType} so picking it is an array lookup
+     */
+    private interface EventHandler {
+        void apply(Rocket rocket, MessageController.Metadata metadata, RocketEvent event);
+    }
+
+    private static final EventHandler[] HANDLERS = new EventHandler[MessageType.values().length];
+
+    static {
+        HANDLERS[MessageType.LAUNCHED.ordinal()] = (rocket, metadata, event) -> rocket.launched(metadata, (RocketEvent.Launched) event);
+        HANDLERS[MessageType.SPEED_INCREASED.ordinal()] = (rocket, metadata, event) -> rocket.speed += ((RocketEvent.SpeedChanged) event).delta();
+        HANDLERS[MessageType.SPEED_DECREASED.ordinal()] = HANDLERS[MessageType.SPEED_INCREASED.ordinal()];
+        HANDLERS[MessageType.EXPLODED.ordinal()] = (rocket, metadata, event) -> rocket.exploded(metadata, (RocketEvent.Exploded) event);
+        HANDLERS[MessageType.MISSION_CHANGED.ordinal()] = (rocket, metadata, event) -> rocket.setMission(((RocketEvent.MissionChanged) event).newMission());
+        // UNKNOWN has none, such messages are ignored
+    }
+
+    /**
+     * A rocket with a dictionary of its own, e.g. one read from JSON
+     */
+    public Rocket() {
+        this(new RocketDictionary());
+    }
 
+    public Rocket(RocketDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public String getType() {
+        return type != Dictionary.UNCODED ? dictionary.getTypes().value(type) : typeText;
+    }
+
+    public void setType(String type) {
+        this.type = dictionary.getTypes().code(type);
+        this.typeText = this.type == Dictionary.UNCODED ? type : null;
+    }
+
+    public String getMission() {
+        return mission != Dictionary.UNCODED ? dictionary.getMissions().value(mission) : missionText;
+    }
+
+    public void setMission(String mission) {
+        this.mission = dictionary.getMissions().code(mission);
+        this.missionText = this.mission == Dictionary.UNCODED ? mission : null;
+    }
+
+    public String getStatus() {
+        return status != Dictionary.UNCODED ? dictionary.getStatuses().value(status) : statusText;
+    }
+
+    public void setStatus(String status) {
+        this.status = dictionary.getStatuses().code(status);
+        this.statusText = this.status == Dictionary.UNCODED ? status : null;
+    }
+
+    /**
+     * @return false if the message type is unknown, the rocket is left as it was
+     */
+    public boolean update(MessageController.RocketTelemetry telemetry) {
+        var handler = HANDLERS[telemetry.metadata().messageType().ordinal()];
+        if (handler == null) {
+            return false;
+        }
+        handler.apply(this, telemetry.metadata(), telemetry.event());
         this.lastMessageNumber++;
+        return true;
+    }
+
+    private void launched(MessageController.Metadata metadata, RocketEvent.Launched launched) {
+        this.id = metadata.channel();
+        setType(launched.type());
+        this.speed = launched.launchSpeed();
+        setMission(launched.mission());
+        this.launchTime = metadata.messageTime();
+
+        setStatus("LAUNCHED");
+
+        log.debug("\uD83D\uDE80 Rocket {} launched", this.id);
+    }
+
+    private void exploded(MessageController.Metadata metadata, RocketEvent.Exploded exploded) {
+        log.debug("\uD83D\uDCA5 Rocket {} exploded", id);
+
+        setStatus(exploded.reason());
+        this.missionEndTime = metadata.messageTime();
+    }
+
+    public void restore(RocketSnapshot snapshot) {
+        this.id = snapshot.id();
+        setType(snapshot.type());
+        this.speed = snapshot.speed();
+        setMission(snapshot.mission());
+        this.launchTime = snapshot.launchTime();
+        this.lastMessageNumber = snapshot.lastMessageNumber();
+        setStatus(snapshot.status());
+        this.missionEndTime = snapshot.missionEndTime();
+        this.degraded = snapshot.degraded();
+    }
+
+    public RocketSnapshot snapshot() {
+        return new RocketSnapshot(id, getType(), speed, getMission(), launchTime, lastMessageNumber, getStatus(), missionEndTime, degraded);
     }
 
     @Override
     public String toString() {
-        return new ReflectionToStringBuilder(this).toString();
+        return new ReflectionToStringBuilder(this).setExcludeFieldNames("dictionary").toString();
     }
 }
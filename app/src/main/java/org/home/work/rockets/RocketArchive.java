@@ -0,0 +1,219 @@
+package org.home.work.rockets;
+
+import org.home.work.journal.SnapshotStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold tier for finished rockets: deflated blocks instead of live buffers, snapshots, index and sorted view entries.
+ * Rockets go into an open block, which is encoded like a state snapshot and deflated once it holds {@link RetentionConfig#getBlockSize()} rockets.
+ * Reading one archived rocket inflates its block, listing archived rockets inflates every block.
+ * A rocket taken out of a full block stays in it, skipped on reading, and the block is dropped once none of its rockets are left
+ */
+class RocketArchive {
+    private final int blockSize;
+    // entry of every archived rocket, looked up without locking
+    private final ConcurrentHashMap<String, Entry> byChannel = new ConcurrentHashMap<>();
+    // full blocks, guarded by this
+    private final List<Block> full = new ArrayList<>();
+    private Block open = new Block(); // guarded by this
+    private long bytes; // guarded by this
+
+    /**
+     * Fields guarded by the archive
+     */
+    private static final class Block {
+        // rockets while the block is open, null once full
+        List<RocketSnapshot> rockets = new ArrayList<>();
+        // rockets once full
+        byte[] deflated;
+        // rockets of a full block not taken out since
+        int archived;
+    }
+
+    /**
+     * Where a rocket is archived. A new one each time it is, so taking out a copy read earlier leaves a newer one alone
+     */
+    static final class Entry {
+        private final Block block;
+
+        private Entry(Block block) {
+            this.block = block;
+        }
+    }
+
+    RocketArchive(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * Archives the rocket, replacing a copy of it that is still here: it was read back but not taken out yet.
+     * A block filled by the rocket is deflated before anything changes, so the archive is left as it was if that fails
+     *
+     * @throws IllegalArgumentException if the rocket has no id, it never launched
+     * @throws UncheckedIOException     if the rocket can't be encoded
+     */
+    void add(RocketSnapshot rocket) {
+        if (rocket.id() == null) {
+            throw new IllegalArgumentException("Rocket without an id can't be archived");
+        }
+        synchronized (this) {
+            var rockets = new ArrayList<>(open.rockets);
+            rockets.removeIf(other -> other.id().equals(rocket.id()));
+            rockets.add(rocket);
+            var deflated = rockets.size() >= blockSize ? deflate(rockets) : null;
+
+            var previous = byChannel.put(rocket.id(), new Entry(open));
+            if (previous != null) {
+                takeOut(rocket.id(), previous.block);
+            }
+            open.rockets.add(rocket);
+            if (deflated != null) {
+                open.deflated = deflated;
+                open.archived = open.rockets.size();
+                open.rockets = null;
+                bytes += open.deflated.length;
+                full.add(open);
+                open = new Block();
+            }
+        }
+    }
+
+    /**
+     * @return Archived rocket, null if it is not archived
+     */
+    RocketSnapshot get(String channel) {
+        return get(channel, entry(channel));
+    }
+
+    /**
+     * @return Where the rocket is archived, null if it is not
+     */
+    Entry entry(String channel) {
+        return byChannel.get(channel);
+    }
+
+    /**
+     * @return Rocket archived at the entry, null if there is none
+     */
+    RocketSnapshot get(String channel, Entry entry) {
+        if (entry == null) {
+            return null;
+        }
+        for (var rocket : rockets(entry.block)) {
+            if (channel.equals(rocket.id())) {
+                return rocket;
+            }
+        }
+        return null;
+    }
+
+    boolean contains(String channel) {
+        return byChannel.containsKey(channel);
+    }
+
+    /**
+     * Takes the rocket out of the archive, e.g. because it is live again.
+     * Nothing happens if it was archived again since the entry was read
+     */
+    void remove(String channel, Entry entry) {
+        if (!byChannel.remove(channel, entry)) {
+            return;
+        }
+        synchronized (this) {
+            takeOut(channel, entry.block);
+        }
+    }
+
+    /**
+     * @return Archived rockets matching the predicate, in no particular order
+     */
+    List<RocketSnapshot> rockets(Predicate<RocketSnapshot> predicate) {
+        List<Block> blocks;
+        synchronized (this) {
+            blocks = new ArrayList<>(full);
+            blocks.add(open);
+        }
+
+        var matches = new ArrayList<RocketSnapshot>();
+        for (var block : blocks) {
+            for (var rocket : rockets(block)) {
+                // a rocket taken out, maybe archived again since in another block, is still in this one
+                var entry = byChannel.get(rocket.id());
+                if (entry != null && entry.block == block && predicate.test(rocket)) {
+                    matches.add(rocket);
+                }
+            }
+        }
+        return matches;
+    }
+
+    int size() {
+        return byChannel.size();
+    }
+
+    /**
+     * @return Size of the full blocks, deflated
+     */
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    // guarded by this
+    private void takeOut(String channel, Block block) {
+        if (block.rockets != null) {
+            block.rockets.removeIf(rocket -> channel.equals(rocket.id()));
+        } else if (--block.archived == 0) {
+            full.remove(block);
+            bytes -= block.deflated.length;
+        }
+    }
+
+    private List<RocketSnapshot> rockets(Block block) {
+        byte[] deflated;
+        synchronized (this) {
+            if (block.rockets != null) {
+                return new ArrayList<>(block.rockets);
+            }
+            deflated = block.deflated;
+        }
+        return inflate(deflated);
+    }
+
+    private static byte[] deflate(List<RocketSnapshot> rockets) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(rockets.size());
+            for (var rocket : rockets) {
+                SnapshotStore.writeRocket(out, rocket);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<RocketSnapshot> inflate(byte[] deflated) {
+        try (var in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(deflated)))) {
+            var count = in.readInt();
+            var rockets = new ArrayList<RocketSnapshot>(count);
+            for (int i = 0; i < count; i++) {
+                rockets.add(SnapshotStore.readRocket(in));
+            }
+            return rockets;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
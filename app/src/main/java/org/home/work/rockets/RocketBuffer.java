@@ -3,49 +3,452 @@ package org.home.work.rockets;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.home.work.messages.MessageController;
+import org.home.work.metrics.SampledTimer;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.PriorityQueue;
 
 @Slf4j
-@Getter
 public class RocketBuffer {
-    private final PriorityQueue<MessageController.RocketTelemetry> queue = new PriorityQueue<>(Comparator.comparingInt(telemetry -> telemetry.metadata().messageNumber()));
-    private final Rocket rocket = new Rocket();
+    private static final Comparator<Pending> BY_MESSAGE_NUMBER = (a, b) -> MessageNumbers.compare(a.messageNumber(), b.messageNumber());
+
+    // created when a message is missing and dropped again once the rocket catches up, most rockets never need one
+    private PriorityQueue<Pending> queue;
+    // numbers of the queued messages, exists along with the queue
+    private SeenWindow seen;
+    // queued messages by arrival, with the DROP_OLDEST policy only. Applied ones are removed lazily once they are the oldest
+    private ArrayDeque<Pending> arrivals;
+    @Getter
+    private final Rocket rocket;
+    // replaced after every change of the rocket, readers never touch the rocket itself
+    @Getter
+    private volatile RocketSnapshot snapshot;
+
+    private final ReorderConfig config;
+    private final ReorderStats stats;
+    private final RocketListener listener;
+    // null with the LOCK sequencer
+    private final RingSequencer ring;
+    // false when the owner times its own lock
+    private final boolean timeLockWait;
+    private long gapOpenedAt; // System.nanoTime() when the rocket started waiting for the current missing message
+    private boolean retired; // the rocket is archived, this buffer takes no more messages
+
+    /**
+     * Queued message
+     *
+     * @param receivedAt System.nanoTime() when the message was queued
+     */
+    public record Pending(MessageController.RocketTelemetry telemetry, long receivedAt) {
+        int messageNumber() {
+            return telemetry.metadata().messageNumber();
+        }
+    }
+
+    /**
+     * Everything needed to rebuild a rocket buffer, taken at one point in time
+     *
+     * @param rocket Rocket state
+     * @param queued Messages waiting for a missing message, by message number
+     */
+    public record State(RocketSnapshot rocket, List<MessageController.RocketTelemetry> queued) {}
+
+    public RocketBuffer() {
+        this(new ReorderConfig(), new ReorderStats());
+    }
+
+    public RocketBuffer(ReorderConfig config, ReorderStats stats) {
+        this(config, stats, RocketListener.NONE);
+    }
+
+    public RocketBuffer(ReorderConfig config, ReorderStats stats, RocketListener listener) {
+        this(config, stats, listener, new RocketDictionary());
+    }
+
+    /**
+     * @param dictionary Codes of the rocket's type, mission and status, shared with other rockets
+     */
+    public RocketBuffer(ReorderConfig config, ReorderStats stats, RocketListener listener, RocketDictionary dictionary) {
+        this(config, stats, listener, dictionary, config.getSequencer(), true);
+    }
+
+    /**
+     * Buffer for a rocket kept elsewhere until now, e.g. in a compact row or the archive, with the LOCK sequencer
+     *
+     * @param rocket       Current rocket state, listeners are not notified of it
+     * @param timeLockWait false when the owner times its own lock
+     */
+    RocketBuffer(ReorderConfig config, ReorderStats stats, RocketListener listener, RocketDictionary dictionary, RocketSnapshot rocket, boolean timeLockWait) {
+        this(config, stats, listener, dictionary, Sequencer.LOCK, timeLockWait);
+        this.rocket.restore(rocket);
+        this.snapshot = rocket;
+    }
+
+    private RocketBuffer(ReorderConfig config, ReorderStats stats, RocketListener listener, RocketDictionary dictionary, Sequencer sequencer, boolean timeLockWait) {
+        this.rocket = new Rocket(dictionary);
+        this.snapshot = rocket.snapshot();
+        this.config = config;
+        this.stats = stats;
+        this.listener = listener;
+        this.ring = sequencer == Sequencer.RING ? new RingSequencer(this, config, stats) : null;
+        this.timeLockWait = timeLockWait;
+    }
 
     /**
-     * Read message number and compare against last processed message number. If smaller or equal, then it's an old/duplicate message.
+     * Read message number and compare against last processed message number. If smaller or equal, then it's an old/duplicate message,
+     * as is a copy of a message already queued. Message numbers wrap around, see {@link MessageNumbers}.
      * If the number is greater by 1, then the message is next in sequence.
-     * More than 1 and we are missing a message, so that goes in the queue until we receive it.
+     * More than 1 and we are missing a message, so that goes in the queue until we receive it,
+     * or until the queue gets too deep or the wait too long, then {@link ReorderConfig#getGapPolicy()} decides.
+     * With the {@link Sequencer#RING} sequencer a message another thread is about to apply is reported {@link ProcessResult#BUFFERED}.
      *
      * @param telemetry Received rocket telemetry
+     * @return What happened to the message, null if the rocket was archived meanwhile (see {@link #retire()})
      */
-    public synchronized void processTelemetry(MessageController.RocketTelemetry telemetry) {
-        var messageNumber = telemetry.metadata().messageNumber();
+    public ProcessResult processTelemetry(MessageController.RocketTelemetry telemetry) {
+        if (ring != null) {
+            return ring.process(telemetry);
+        }
+        var lockWait = timeLockWait ? stats.getLockWait() : SampledTimer.NONE;
+        var start = lockWait.start();
+        long locked;
+        ProcessResult result;
+        synchronized (this) {
+            if (retired) {
+                return null;
+            }
+            locked = lockWait.now(start);
+            result = process(telemetry);
+        }
+        lockWait.record(start, locked);
+        return result;
+    }
+
+    /**
+     * Same as {@link #processTelemetry(MessageController.RocketTelemetry)} for several messages of this rocket, taking the lock only once.
+     * Messages are processed in the given order, so pass them sorted by message number to avoid needless queueing.
+     *
+     * @param telemetryList Received rocket telemetry, all for this rocket's channel
+     * @return Result for each message, in the same order as given. Null if the rocket was archived meanwhile (see {@link #retire()})
+     */
+    public List<ProcessResult> processTelemetry(List<MessageController.RocketTelemetry> telemetryList) {
+        var results = new ArrayList<ProcessResult>(telemetryList.size());
+        if (ring != null) {
+            for (var telemetry : telemetryList) {
+                results.add(ring.process(telemetry));
+            }
+            return results;
+        }
+        var lockWait = timeLockWait ? stats.getLockWait() : SampledTimer.NONE;
+        var start = lockWait.start();
+        long locked;
+        synchronized (this) {
+            if (retired) {
+                return null;
+            }
+            locked = lockWait.now(start);
+            for (var telemetry : telemetryList) {
+                results.add(process(telemetry));
+            }
+        }
+        lockWait.record(start, locked);
+        return results;
+    }
 
-        if (messageNumber <= rocket.getLastMessageNumber()) {
-            log.warn("Ignoring message #{}, already received", messageNumber);
+    /**
+     * Runs the gap policy if the rocket has waited for a missing message longer than allowed.
+     * Called periodically, since a rocket that stopped sending would otherwise never get the chance to.
+     *
+     * @return Whether the rocket changed, i.e. a gap was skipped
+     */
+    public boolean expireGap() {
+        if (ring != null) {
+            return ring.expireGap();
+        }
+        synchronized (this) {
+            if (!hasQueued()) {
+                return false;
+            }
+            var before = snapshot;
+            enforceLimits();
+            return snapshot != before;
+        }
+    }
+
+    /**
+     * Takes a finished rocket out of service before it is archived: from now on messages are refused with a null result,
+     * the caller should process them with the rocket's next buffer. Not with the {@link Sequencer#RING} sequencer
+     *
+     * @return Final state of the rocket, null if it is not finished, waits for a missing message, or uses the ring
+     */
+    RocketSnapshot retire() {
+        if (ring != null) {
+            return null;
+        }
+        synchronized (this) {
+            if (snapshot.missionEndTime() == null || hasQueued()) {
+                return null;
+            }
+            retired = true;
+            return snapshot;
+        }
+    }
+
+    /**
+     * Puts a rocket back in service when archiving it failed after {@link #retire()}
+     */
+    void unretire() {
+        synchronized (this) {
+            retired = false;
+        }
+    }
+
+    /**
+     * @return Rocket and its queued messages as of now
+     */
+    public State state() {
+        if (ring != null) {
+            return ring.state();
+        }
+        synchronized (this) {
+            var pending = queue == null ? new ArrayList<Pending>() : new ArrayList<>(queue);
+            pending.sort(BY_MESSAGE_NUMBER);
+            return new State(snapshot, pending.stream().map(Pending::telemetry).toList());
+        }
+    }
+
+    /**
+     * Replaces the rocket and queue with given state, e.g. one loaded from a state snapshot file.
+     * Restored queued messages wait as if they had just been received.
+     *
+     * @param state Earlier state of this rocket
+     */
+    public void restore(State state) {
+        if (ring != null) {
+            ring.restore(() -> {
+                rocket.restore(state.rocket());
+                publish(null);
+            }, state.queued());
             return;
         }
+        synchronized (this) {
+            rocket.restore(state.rocket());
+            queue = null;
+            seen = null;
+            arrivals = null;
+            var now = System.nanoTime();
+            for (var telemetry : state.queued()) {
+                enqueue(new Pending(telemetry, now));
+                seen().add(telemetry.metadata().messageNumber());
+            }
+            gapOpenedAt = now;
+            publish(null);
+        }
+    }
 
-        if (telemetry.metadata().messageNumber() == rocket.getLastMessageNumber() + 1) {
-            rocket.update(telemetry);
+    /**
+     * Whether the message was applied, skipped or queued already, so processing it now would find it a duplicate.
+     * Without locking unless messages are queued. A message that was not may still be found one, if a copy is processed meanwhile
+     */
+    public boolean received(int messageNumber) {
+        if (ring != null || queuedMessages() == 0) {
+            return !MessageNumbers.isNewer(messageNumber, snapshot.lastMessageNumber());
+        }
+        synchronized (this) {
+            return !MessageNumbers.isNewer(messageNumber, rocket.getLastMessageNumber()) || seen != null && seen.contains(messageNumber);
+        }
+    }
+
+    /**
+     * @return Number of messages waiting for a missing message. Read without locking, for metrics
+     */
+    public int queuedMessages() {
+        if (ring != null) {
+            return ring.queuedMessages();
+        }
+        var queued = queue;
+        return queued == null ? 0 : queued.size();
+    }
+
+    private ProcessResult process(MessageController.RocketTelemetry telemetry) {
+        var messageNumber = telemetry.metadata().messageNumber();
+
+        if (!MessageNumbers.isNewer(messageNumber, rocket.getLastMessageNumber()) || seen != null && seen.contains(messageNumber)) {
+            stats.duplicate(telemetry.metadata().channel());
+            if (log.isDebugEnabled()) {
+                log.debug("Ignoring message #{} of rocket {}, already received", messageNumber, telemetry.metadata().channel());
+            }
+            return ProcessResult.DUPLICATE;
+        }
+
+        if (messageNumber == rocket.getLastMessageNumber() + 1) {
+            apply(telemetry);
 
             processQueuedMessages();
+            return ProcessResult.APPLIED;
 
         } else {
             // missing an update (have 10, got 12, missing 11)
-            log.warn("Missing an update: last #{}, adding #{} to queue", rocket.getLastMessageNumber(), messageNumber);
-            queue.add(telemetry);
+            stats.queued(telemetry.metadata().channel());
+            if (log.isDebugEnabled()) {
+                log.debug("Missing an update of rocket {}: last #{}, adding #{} to queue", telemetry.metadata().channel(), rocket.getLastMessageNumber(), messageNumber);
+            }
+            var now = System.nanoTime();
+            if (!hasQueued()) {
+                gapOpenedAt = now;
+            }
+            enqueue(new Pending(telemetry, now));
+            seen().add(messageNumber);
+
+            enforceLimits();
+            return MessageNumbers.isNewer(messageNumber, rocket.getLastMessageNumber()) ? ProcessResult.BUFFERED : ProcessResult.APPLIED;
         }
+    }
 
+    /**
+     * Caller holds the lock, or is the {@link RingSequencer} drainer
+     */
+    void apply(MessageController.RocketTelemetry telemetry) {
+        if (rocket.update(telemetry)) {
+            stats.applied(telemetry);
+            publish(telemetry);
+        } else {
+            stats.unknownMessage();
+        }
+    }
+
+    void publish(MessageController.RocketTelemetry telemetry) {
+        var before = snapshot;
+        snapshot = rocket.snapshot();
+        listener.rocketChanged(before, snapshot, telemetry);
     }
 
     private void processQueuedMessages() {
-        while (!queue.isEmpty() && queue.peek().metadata().messageNumber() == rocket.getLastMessageNumber() + 1) { // reuse
-            var rocketTelemetry = queue.poll();
-            rocket.update(rocketTelemetry);
+        var drained = false;
+        while (hasQueued()) {
+            var messageNumber = queue.peek().messageNumber();
+            if (!MessageNumbers.isNewer(messageNumber, rocket.getLastMessageNumber())) {
+                queue.poll(); // same message was queued more than once, too far ahead to be in the window
+                continue;
+            }
+            if (messageNumber != rocket.getLastMessageNumber() + 1) {
+                break;
+            }
+
+            apply(queue.poll().telemetry());
+            drained = true;
+        }
+
+        if (!hasQueued()) {
+            queue = null;
+            seen = null;
+            arrivals = null;
+        } else if (drained) {
+            gapOpenedAt = System.nanoTime(); // waiting for another missing message from now on
+            seen.advance(rocket.getLastMessageNumber());
+        }
+    }
+
+    private boolean hasQueued() {
+        return queue != null && !queue.isEmpty();
+    }
+
+    private void enqueue(Pending pending) {
+        if (queue == null) {
+            queue = new PriorityQueue<>(BY_MESSAGE_NUMBER);
+        }
+        queue.add(pending);
+        if (config.getGapPolicy() == GapPolicy.DROP_OLDEST) {
+            if (arrivals == null) {
+                arrivals = new ArrayDeque<>();
+            }
+            arrivals.add(pending);
         }
     }
 
+    private SeenWindow seen() {
+        if (seen == null) {
+            seen = new SeenWindow(rocket.getLastMessageNumber());
+        }
+        return seen;
+    }
+
+    private void enforceLimits() {
+        var now = System.nanoTime();
+        var maxGapAge = config.getMaxGapAge().toNanos();
+
+        switch (config.getGapPolicy()) {
+            case SKIP_GAP, DEGRADE -> {
+                while (hasQueued() && (queue.size() > config.getMaxQueueDepth() || now - gapOpenedAt >= maxGapAge)) {
+                    skipGap();
+                    now = System.nanoTime();
+                }
+            }
+            case DROP_OLDEST -> dropOldest(now, maxGapAge);
+        }
+    }
+
+    private void skipGap() {
+        var next = queue.peek().messageNumber();
+        var missing = next - rocket.getLastMessageNumber() - 1;
+        var channel = queue.peek().telemetry().metadata().channel();
+        if (log.isDebugEnabled()) {
+            log.debug("Rocket {} stopped waiting for #{}..#{}, skipping {} message(s)", channel, rocket.getLastMessageNumber() + 1, next - 1, missing);
+        }
+
+        stats.gapSkipped(channel, missing);
+        rocket.setLastMessageNumber(next - 1);
+        if (config.getGapPolicy() == GapPolicy.DEGRADE) {
+            rocket.setDegraded(true);
+        }
+        publish(null);
+
+        processQueuedMessages();
+    }
+
+    /**
+     * Drops the messages that arrived first while the queue is too deep or they waited too long,
+     * in O(depth) per message dropped and O(1) otherwise
+     */
+    private void dropOldest(long now, long maxGapAge) {
+        var dropped = 0;
+        String channel = null;
+        while (hasQueued()) {
+            var oldest = arrivals.peekFirst();
+            if (!MessageNumbers.isNewer(oldest.messageNumber(), rocket.getLastMessageNumber())) {
+                arrivals.pollFirst(); // applied since, no longer queued
+                continue;
+            }
+            if (queue.size() <= config.getMaxQueueDepth() && now - oldest.receivedAt() < maxGapAge) {
+                break;
+            }
+
+            arrivals.pollFirst();
+            for (var queued = queue.iterator(); queued.hasNext(); ) {
+                if (queued.next() == oldest) {
+                    queued.remove();
+                    break;
+                }
+            }
+            seen.remove(oldest.messageNumber()); // may be delivered again
+            channel = oldest.telemetry().metadata().channel();
+            dropped++;
+        }
+        if (dropped == 0) {
+            return;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Rocket {} still waiting for #{}, dropping {} queued message(s)", channel, rocket.getLastMessageNumber() + 1, dropped);
+        }
+        stats.messagesDropped(channel, dropped);
+        if (!hasQueued()) {
+            queue = null;
+            seen = null;
+            arrivals = null;
+        }
+    }
 }
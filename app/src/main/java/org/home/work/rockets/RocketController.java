@@ -1,70 +1,262 @@
 package org.home.work.rockets;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
 import io.micronaut.http.annotation.PathVariable;
 import io.micronaut.http.annotation.QueryValue;
+import io.micronaut.http.sse.Event;
+import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
+import org.home.work.cluster.Cluster;
+import org.home.work.feed.RocketDelta;
+import org.home.work.history.HistoryField;
+import org.reactivestreams.Publisher;
 
-import java.util.Comparator;
-import java.util.List;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 
 @Slf4j
 @Controller("/rockets")
 public class RocketController {
 
+    public static final String NEXT_CURSOR = "X-Next-Cursor";
+
     @Inject
     private RocketRepository repository;
 
+    @Inject
+    private RocketListCache listCache;
+
+    @Inject
+    private RocketJson rocketJson;
+
+    @Inject
+    private MeterRegistry meterRegistry;
+
+    @Inject
+    private Cluster cluster;
+
+    private Timer pageTimer;
+
+    @PostConstruct
+    void registerMeters() {
+        pageTimer = Timer.builder("rockets.query.page")
+            .description("Time to find, sort and serialize a page of rockets that was not cached")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    // versions start over with every run, this tells ETags of different runs apart
+    private final String instance = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
     /**
-     * Query params -- If nothing is passed or it's an unknown sort key, use default: sort by mission ascending
+     * Query params -- If nothing is passed or it's an unknown sort key, use default: sort by mission ascending.
+     * Rockets without a value for the sort property (e.g. endTime while still flying) are last in ascending order.
+     * With a limit, the response has a {@value #NEXT_CURSOR} header while there are more rockets, pass it back as cursor for the next page.
+     * The ETag changes whenever any rocket does, with a matching If-None-Match the response is 304 Not Modified.
+     * Serialized lists are cached until a rocket changes.
+     * In a cluster the list is merged from every node's part of it, without ETag or cache, since other nodes' changes aren't seen here.
+     * Finished rockets moved to the archive (see {@link RetentionConfig}) are left out unless asked for.
      *
-     * @param sortBy  Sort results by given property
-     * @param orderBy Order results in ascending or descending order
+     * @param sortBy          Sort results by given property
+     * @param orderBy         Order results in ascending or descending order
+     * @param type            Only rockets of this type
+     * @param status          Only rockets with this status
+     * @param mission         Only rockets on this mission
+     * @param limit           Page size
+     * @param cursor          Where the page starts, from the previous page
+     * @param includeArchived Also archived rockets
+     * @param ifNoneMatch     ETag of the list the client has
      * @return Sorted rocket list
      */
     @Get
-    public HttpResponse<List<Rocket>> data(
+    public HttpResponse<?> data(
         @QueryValue Optional<String> sortBy,
         @QueryValue(defaultValue = "asc") Optional<String> orderBy,
-        @QueryValue Optional<String> type
+        @QueryValue Optional<String> type,
+        @QueryValue Optional<String> status,
+        @QueryValue Optional<String> mission,
+        @QueryValue Optional<Integer> limit,
+        @QueryValue Optional<String> cursor,
+        @QueryValue Optional<Boolean> includeArchived,
+        @Header(HttpHeaders.IF_NONE_MATCH) Optional<String> ifNoneMatch
     ) {
-        var rocketList = repository.rocketsBy(rocket ->
-            type
-                .map(t -> t.equalsIgnoreCase(rocket.getType()))
-                .orElse(true)); // or all of them
-
-        var comparator = sortBy.map(s -> switch (s) {
-            case "type" -> Comparator.comparing(Rocket::getType);
-            case "speed" -> Comparator.comparing(Rocket::getSpeed);
-            case "status" -> Comparator.comparing(Rocket::getStatus);
-            case "launchTime" -> Comparator.comparing(Rocket::getLaunchTime);
-            case "endTime" -> Comparator.comparing(Rocket::getMissionEndTime);
-            default -> Comparator.comparing(Rocket::getMission);
-        }).orElse(Comparator.comparing(Rocket::getMission));
-
-        rocketList.sort(comparator);
-
-        if (orderBy.isPresent() && "desc".equalsIgnoreCase(orderBy.get())) {
-            rocketList = rocketList.reversed();
+        if (limit.isPresent() && limit.get() <= 0) {
+            return HttpResponse.badRequest("limit must be positive");
+        }
+        if (cluster.isEnabled()) {
+            return clusterData(new RocketListCache.Query(new RocketFilter(type, status, mission), SortKey.ofStr(sortBy.orElse(null)),
+                orderBy.isPresent() && "desc".equalsIgnoreCase(orderBy.get()), cursor.orElse(null), limit.orElse(0), includeArchived.orElse(false)));
         }
 
-        return HttpResponse.ok(rocketList);
+        // read before the rockets, so a change made meanwhile gives the next request another version
+        var version = repository.version();
+        var etag = etag(Long.toString(version));
+        if (ifNoneMatch.isPresent() && matches(ifNoneMatch.get(), etag)) {
+            return HttpResponse.notModified().header(HttpHeaders.ETAG, etag);
+        }
+
+        var sortKey = SortKey.ofStr(sortBy.orElse(null));
+        var descending = orderBy.isPresent() && "desc".equalsIgnoreCase(orderBy.get());
+        var query = new RocketListCache.Query(new RocketFilter(type, status, mission), sortKey, descending, cursor.orElse(null), limit.orElse(0),
+            includeArchived.orElse(false));
+
+        var cached = listCache.get(query, version);
+        if (cached == null) {
+            var start = System.nanoTime();
+            RocketPage page;
+            try {
+                page = repository.rocketPage(query.filter(), sortKey, descending, query.cursor(), query.limit(), query.includeArchived());
+            } catch (IllegalArgumentException e) {
+                return HttpResponse.badRequest(e.getMessage());
+            }
+            cached = new RocketListCache.Response(version, rocketJson.list(page.rockets()), page.nextCursor());
+            listCache.put(query, cached);
+            pageTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        var response = HttpResponse.ok(cached.body())
+            .contentType(MediaType.APPLICATION_JSON_TYPE)
+            .header(HttpHeaders.ETAG, etag);
+        if (cached.nextCursor() != null) {
+            response.header(NEXT_CURSOR, cached.nextCursor());
+        }
+        return response;
+    }
+
+    private HttpResponse<?> clusterData(RocketListCache.Query query) {
+        RocketPage page;
+        try {
+            page = cluster.rocketPage(query);
+        } catch (IllegalArgumentException e) {
+            return HttpResponse.badRequest(e.getMessage());
+        } catch (IllegalStateException e) {
+            log.warn("Rocket list incomplete: {}", e.getMessage());
+            return unavailable();
+        }
+
+        var response = HttpResponse.ok(rocketJson.list(page.rockets(), rocket -> cluster.owns(rocket.id())))
+            .contentType(MediaType.APPLICATION_JSON_TYPE);
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR, page.nextCursor());
+        }
+        return response;
+    }
+
+    private static <T> HttpResponse<T> unavailable() {
+        return HttpResponse.<T>status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1");
+    }
+
+    private String etag(String version) {
+        return "\"" + instance + "-" + version + "\"";
     }
 
+    /**
+     * @param ifNoneMatch If-None-Match header: *, or ETags separated by commas, weak or not
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (var candidate : ifNoneMatch.split(",")) {
+            var tag = candidate.strip();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Server-sent events, one per rocket change from now on, with the changed properties only.
+     * A client that can't keep up gets the latest change of every rocket instead of each one,
+     * and is disconnected if it falls too far behind, then it should load {@code /rockets} again and reconnect.
+     *
+     * @param type    Only rockets of this type
+     * @param channel Only this rocket
+     * @return Rocket changes
+     */
+    @Get(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM)
+    public Publisher<Event<RocketDelta>> stream(@QueryValue Optional<String> type, @QueryValue Optional<String> channel) {
+        return repository.feed().subscribe(type.orElse(null), channel.orElse(null));
+    }
+
+    /**
+     * The ETag changes whenever the rocket does, with a matching If-None-Match the response is 304 Not Modified.
+     * In a cluster the rocket is read from the node that owns it
+     */
     @Get("/{rocketChannel}")
-    public HttpResponse<Rocket> rocketById(@PathVariable String rocketChannel) {
-        var rocketData = repository.rocketById(rocketChannel);
-        return rocketData
-            .map(HttpResponse::ok)
+    public HttpResponse<RocketSnapshot> rocketById(
+        @PathVariable String rocketChannel,
+        @Header(HttpHeaders.IF_NONE_MATCH) Optional<String> ifNoneMatch
+    ) {
+        Optional<RocketSnapshot> rocketData;
+        try {
+            rocketData = cluster.rocketById(rocketChannel);
+        } catch (IllegalStateException e) {
+            log.warn("Rocket {} unavailable: {}", rocketChannel, e.getMessage());
+            return unavailable();
+        }
+        if (rocketData.isEmpty()) {
+            return HttpResponse.notFound();
+        }
+
+        // every change of a rocket moves its last message number, a skipped gap also marks it degraded
+        var rocket = rocketData.get();
+        var etag = etag(rocket.lastMessageNumber() + (rocket.degraded() ? "d" : ""));
+        if (ifNoneMatch.isPresent() && matches(ifNoneMatch.get(), etag)) {
+            return HttpResponse.<RocketSnapshot>notModified().header(HttpHeaders.ETAG, etag);
+        }
+        return HttpResponse.ok(rocket).header(HttpHeaders.ETAG, etag);
+    }
+
+    /**
+     * @param field Property to return: speed (default), mission or status
+     * @param from  Earliest message time, inclusive (ISO-8601 with offset)
+     * @param to    Latest message time, exclusive
+     * @return Values of the property after each message that changed it, in message order
+     */
+    @Get("/{rocketChannel}/history")
+    public HttpResponse<?> history(
+        @PathVariable String rocketChannel,
+        @QueryValue Optional<String> field,
+        @QueryValue Optional<String> from,
+        @QueryValue Optional<String> to
+    ) {
+        HistoryField historyField;
+        ZonedDateTime fromTime;
+        ZonedDateTime toTime;
+        try {
+            historyField = HistoryField.ofStr(field.orElse("speed"));
+            fromTime = from.map(ZonedDateTime::parse).orElse(null);
+            toTime = to.map(ZonedDateTime::parse).orElse(null);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return HttpResponse.badRequest(e.getMessage());
+        }
+
+        return repository.history(rocketChannel, historyField, fromTime, toTime)
+            .<HttpResponse<?>>map(HttpResponse::ok)
             .orElse(HttpResponse.notFound());
     }
 
+    /**
+     * @return Rocket count, speed and lifetime aggregates, in total and by type, mission and status
+     */
+    @Get("/stats")
+    public HttpResponse<RocketStats.Report> stats() {
+        return HttpResponse.ok(repository.stats());
+    }
+
     @Get("/types")
     public HttpResponse<Set<String>> rocketTypes() {
         return HttpResponse.ok(repository.rocketTypes());
@@ -0,0 +1,26 @@
+package org.home.work.rockets;
+
+import lombok.Getter;
+
+/**
+ * Codes of the values many rockets share, a {@link Dictionary} per property so every property has its own small codes
+ */
+@Getter
+public class RocketDictionary {
+    private final Dictionary types;
+    private final Dictionary missions;
+    private final Dictionary statuses;
+
+    public RocketDictionary() {
+        this(Dictionary.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Values of each property given a code at most
+     */
+    public RocketDictionary(int capacity) {
+        this.types = new Dictionary(capacity);
+        this.missions = new Dictionary(capacity);
+        this.statuses = new Dictionary(capacity);
+    }
+}
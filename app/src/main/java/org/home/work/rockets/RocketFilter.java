@@ -0,0 +1,24 @@
+package org.home.work.rockets;
+
+import java.util.Optional;
+
+/**
+ * Rocket list filter, every given value must match (ignoring case)
+ */
+public record RocketFilter(
+    Optional<String> type,
+    Optional<String> status,
+    Optional<String> mission
+) {
+    public static final RocketFilter ALL = new RocketFilter(Optional.empty(), Optional.empty(), Optional.empty());
+
+    public boolean isEmpty() {
+        return type.isEmpty() && status.isEmpty() && mission.isEmpty();
+    }
+
+    public boolean matches(RocketSnapshot rocket) {
+        return type.map(t -> t.equalsIgnoreCase(rocket.type())).orElse(true)
+            && status.map(s -> s.equalsIgnoreCase(rocket.status())).orElse(true)
+            && mission.map(m -> m.equalsIgnoreCase(rocket.mission())).orElse(true);
+    }
+}
@@ -0,0 +1,114 @@
+package org.home.work.rockets;
+
+import org.home.work.messages.MessageController;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Rocket channels by type, status and mission code, kept up to date as rockets change, so filtering doesn't need to look at every rocket.
+ * Lookups ignore case, the same as the type filter always did: every code whose value matches is looked up.
+ * Rockets with a value the dictionary had no room for share the {@link Dictionary#UNCODED} entry, so lookups return them as well:
+ * callers check the value of every rocket found
+ */
+public class RocketIndex implements RocketListener {
+    private final RocketDictionary dictionary;
+    private final ConcurrentHashMap<Integer, Set<String>> byType = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<String>> byStatus = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<String>> byMission = new ConcurrentHashMap<>();
+
+    public RocketIndex(RocketDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void rocketChanged(RocketSnapshot before, RocketSnapshot after, MessageController.RocketTelemetry telemetry) {
+        var channel = after.id();
+        if (channel == null) {
+            return; // not launched yet, nothing to index
+        }
+
+        move(byType, dictionary.getTypes(), before.type(), after.type(), channel);
+        move(byStatus, dictionary.getStatuses(), before.status(), after.status(), channel);
+        move(byMission, dictionary.getMissions(), before.mission(), after.mission(), channel);
+    }
+
+    /**
+     * Drops the rocket from the index, e.g. once it is archived
+     */
+    public void remove(RocketSnapshot rocket) {
+        move(byType, dictionary.getTypes(), rocket.type(), null, rocket.id());
+        move(byStatus, dictionary.getStatuses(), rocket.status(), null, rocket.id());
+        move(byMission, dictionary.getMissions(), rocket.mission(), null, rocket.id());
+    }
+
+    public Set<String> channelsByType(String type) {
+        return lookup(byType, dictionary.getTypes(), type);
+    }
+
+    public Set<String> channelsByStatus(String status) {
+        return lookup(byStatus, dictionary.getStatuses(), status);
+    }
+
+    public Set<String> channelsByMission(String mission) {
+        return lookup(byMission, dictionary.getMissions(), mission);
+    }
+
+    /**
+     * @param typeOf Type of a rocket by channel, null if it is gone. Asked for rockets whose type has no code
+     * @return Types of the indexed rockets, a type is dropped with its last rocket
+     */
+    public Set<String> types(Function<String, String> typeOf) {
+        var types = new HashSet<String>();
+        for (var entry : byType.entrySet()) {
+            if (entry.getKey() != Dictionary.UNCODED) {
+                types.add(dictionary.getTypes().value(entry.getKey()));
+                continue;
+            }
+            for (var channel : entry.getValue()) {
+                var type = typeOf.apply(channel);
+                if (type != null) {
+                    types.add(type);
+                }
+            }
+        }
+        return types;
+    }
+
+    private static void move(ConcurrentHashMap<Integer, Set<String>> index, Dictionary codes, String oldValue, String newValue, String channel) {
+        if (Objects.equals(oldValue, newValue)) {
+            return;
+        }
+
+        if (oldValue != null) {
+            index.computeIfPresent(codes.find(oldValue), (key, channels) -> {
+                channels.remove(channel);
+                return channels.isEmpty() ? null : channels;
+            });
+        }
+        if (newValue != null) {
+            index.compute(codes.code(newValue), (key, channels) -> {
+                var result = channels != null ? channels : ConcurrentHashMap.<String>newKeySet();
+                result.add(channel);
+                return result;
+            });
+        }
+    }
+
+    private static Set<String> lookup(ConcurrentHashMap<Integer, Set<String>> index, Dictionary codes, String value) {
+        var matches = codes.codesIgnoringCase(value);
+        Set<String> channels = new HashSet<>(index.getOrDefault(Dictionary.UNCODED, Set.of()));
+        for (int code = 1; code < matches.length; code++) {
+            if (matches[code]) {
+                var exact = index.get(code);
+                if (exact != null) {
+                    channels.addAll(exact);
+                }
+            }
+        }
+        return channels;
+    }
+}
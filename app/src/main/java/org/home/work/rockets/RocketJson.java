@@ -0,0 +1,106 @@
+package org.home.work.rockets;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.json.JsonMapper;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * JSON of rocket lists, put together from the JSON of each rocket, which is serialized again only after the rocket changed.
+ * A list of mostly unchanged rockets costs copying their bytes instead of serializing them.
+ * <p>
+ * Not with the {@link StorageEngine#COMPACT} storage engine: its rockets are read into new snapshots every time,
+ * and keeping JSON for each of them would take more memory than the rockets themselves.
+ */
+@Singleton
+public class RocketJson {
+    private static final Argument<RocketSnapshot> ROCKET = Argument.of(RocketSnapshot.class);
+    private static final Argument<List<RocketSnapshot>> ROCKETS = Argument.listOf(RocketSnapshot.class);
+
+    private final JsonMapper jsonMapper;
+    private final boolean fragments;
+    // JSON of the rocket's latest snapshot seen, by channel. Snapshots are replaced on every change, so an older one means it changed
+    private final ConcurrentHashMap<String, Fragment> byChannel = new ConcurrentHashMap<>();
+
+    private record Fragment(RocketSnapshot rocket, byte[] json) {}
+
+    public RocketJson(JsonMapper jsonMapper, StoreConfig storeConfig) {
+        this.jsonMapper = jsonMapper;
+        this.fragments = storeConfig.getEngine() != StorageEngine.COMPACT;
+    }
+
+    /**
+     * Drops the JSON of rockets once they are archived
+     */
+    @Inject
+    public RocketJson(JsonMapper jsonMapper, StoreConfig storeConfig, RocketRepository repository) {
+        this(jsonMapper, storeConfig);
+        repository.onArchived(byChannel::remove);
+    }
+
+    /**
+     * @return JSON array of the rockets, the same as serializing the list
+     */
+    public byte[] list(List<RocketSnapshot> rockets) {
+        return list(rockets, rocket -> true);
+    }
+
+    /**
+     * @param keep Rockets whose JSON is worth keeping, e.g. not those of other cluster nodes, which are new snapshots every time
+     * @return JSON array of the rockets, the same as serializing the list
+     */
+    public byte[] list(List<RocketSnapshot> rockets, Predicate<RocketSnapshot> keep) {
+        if (!fragments) {
+            return serialize(ROCKETS, rockets);
+        }
+
+        var parts = new byte[rockets.size()][];
+        var length = 2 + Math.max(0, rockets.size() - 1); // brackets and commas
+        for (int i = 0; i < parts.length; i++) {
+            var rocket = rockets.get(i);
+            parts[i] = keep.test(rocket) ? fragment(rocket) : serialize(ROCKET, rocket);
+            length += parts[i].length;
+        }
+
+        var json = new byte[length];
+        json[0] = '[';
+        var position = 1;
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                json[position++] = ',';
+            }
+            System.arraycopy(parts[i], 0, json, position, parts[i].length);
+            position += parts[i].length;
+        }
+        json[position] = ']';
+        return json;
+    }
+
+    private byte[] fragment(RocketSnapshot rocket) {
+        if (rocket.id() == null) {
+            return serialize(ROCKET, rocket); // not launched, never listed
+        }
+        var cached = byChannel.get(rocket.id());
+        if (cached != null && cached.rocket() == rocket) {
+            return cached.json();
+        }
+
+        var json = serialize(ROCKET, rocket);
+        byChannel.put(rocket.id(), new Fragment(rocket, json));
+        return json;
+    }
+
+    private <T> byte[] serialize(Argument<T> type, T value) {
+        try {
+            return jsonMapper.writeValueAsBytes(type, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
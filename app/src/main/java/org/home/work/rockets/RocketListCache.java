@@ -0,0 +1,94 @@
+package org.home.work.rockets;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Singleton;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Serialized {@code /rockets} responses by query, each valid while {@link RocketRepository#version()} stays the same,
+ * so repeated requests while the fleet is quiet skip filtering, sorting and serializing.
+ * Least recently used responses are dropped once all of them take more than {@link CacheConfig#getMaxBytes()}.
+ */
+@Singleton
+public class RocketListCache {
+    private final long maxBytes;
+    // guarded by this, iteration order is least recently used first
+    private final LinkedHashMap<Query, Response> responses = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes; // guarded by this
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * Everything a rocket list depends on besides the rockets
+     */
+    public record Query(RocketFilter filter, SortKey sortKey, boolean descending, String cursor, int limit, boolean includeArchived) {}
+
+    /**
+     * @param version    {@link RocketRepository#version()} read before the rockets were
+     * @param body       JSON body
+     * @param nextCursor Cursor of the next page, null if this is the last one
+     */
+    public record Response(long version, byte[] body, String nextCursor) {}
+
+    public RocketListCache(CacheConfig config, MeterRegistry meterRegistry) {
+        this.maxBytes = config.getMaxBytes();
+        this.hits = Counter.builder("rockets.cache.hits")
+            .description("Rocket lists served from the cache")
+            .register(meterRegistry);
+        this.misses = Counter.builder("rockets.cache.misses")
+            .description("Rocket lists not in the cache or changed since")
+            .register(meterRegistry);
+        Gauge.builder("rockets.cache.bytes", this, RocketListCache::bytes)
+            .description("Size of the cached rocket lists")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @param query   Requested list
+     * @param version Current {@link RocketRepository#version()}
+     * @return Cached response, null if there is none for this version
+     */
+    public Response get(Query query, long version) {
+        Response response;
+        synchronized (this) {
+            response = responses.get(query);
+        }
+        if (response == null || response.version() != version) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return response;
+    }
+
+    /**
+     * Replaces the query's response unless a newer one is cached already
+     */
+    public void put(Query query, Response response) {
+        if (response.body().length > maxBytes) {
+            return;
+        }
+
+        synchronized (this) {
+            var previous = responses.get(query);
+            if (previous != null && previous.version() > response.version()) {
+                return;
+            }
+            responses.put(query, response);
+            bytes += response.body().length - (previous != null ? previous.body().length : 0);
+
+            var eldest = responses.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().body().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+}
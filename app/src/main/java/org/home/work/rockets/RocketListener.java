@@ -0,0 +1,19 @@
+package org.home.work.rockets;
+
+import org.home.work.messages.MessageController;
+
+/**
+ * Notified of every change to a rocket, in the order they happen.
+ * Called while the rocket's buffer is locked, so implementations must be quick and must not block.
+ */
+@FunctionalInterface
+public interface RocketListener {
+    RocketListener NONE = (before, after, telemetry) -> {};
+
+    /**
+     * @param before    Rocket state before the change
+     * @param after     Rocket state after the change
+     * @param telemetry Message that caused the change, null if the change was not caused by a message (e.g. a skipped gap)
+     */
+    void rocketChanged(RocketSnapshot before, RocketSnapshot after, MessageController.RocketTelemetry telemetry);
+}
@@ -0,0 +1,9 @@
+package org.home.work.rockets;
+
+import java.util.List;
+
+/**
+ * @param rockets    Rockets of this page, sorted
+ * @param nextCursor Where the next page starts, null if this is the last one
+ */
+public record RocketPage(List<RocketSnapshot> rockets, String nextCursor) {}
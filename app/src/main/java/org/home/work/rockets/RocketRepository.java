@@ -1,59 +1,728 @@
 package org.home.work.rockets;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
+import org.home.work.feed.RocketFeed;
+import org.home.work.history.HistoryField;
+import org.home.work.history.HistoryPoint;
+import org.home.work.history.HistoryStore;
+import org.home.work.journal.TelemetryJournal;
 import org.home.work.messages.MessageController;
+import org.home.work.metrics.MetricsConfig;
+import org.home.work.metrics.SampledTimer;
 
+import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Singleton
 public class RocketRepository {
+    // tries to find the next buffer of a rocket being archived: spun first, then parked for a short while each
+    private static final int SPINS = 100;
+    private static final int MAX_ATTEMPTS = 10_000;
+    private static final long PARK_NANOS = 100_000;
 
     private final ConcurrentHashMap<String, RocketBuffer> bufferMap = new ConcurrentHashMap<>();
 
+    private final ReorderConfig reorderConfig;
+    private final ReorderStats reorderStats = new ReorderStats();
+    private final RocketDictionary dictionary;
+    private final RocketIndex index;
+    private final SortedRocketViews sortedViews = new SortedRocketViews();
+    private final HistoryStore history = new HistoryStore();
+    private final RocketStats stats = new RocketStats();
+    private final RocketFeed feed = new RocketFeed();
+    private final List<RocketListener> listeners;
+    private final RocketListener listener = this::rocketChanged;
+    // null with the OBJECTS storage engine
+    private final CompactRocketStore compact;
+    private final MeterRegistry meterRegistry;
+    // rockets waiting for a missing message, with a queue size gauge each
+    private final ConcurrentHashMap<String, Gauge> queueGauges = new ConcurrentHashMap<>();
+    private final TelemetryJournal journal;
+    // bumped after anything that may have changed a rocket, once the change can be read
+    private final LongAdder version = new LongAdder();
+    private final EnumMap<ProcessResult, Counter> resultCounters = new EnumMap<>(ProcessResult.class);
+    private final SampledTimer processTimer;
+    private final SampledTimer batchTimer;
+    // null unless finished rockets are archived
+    private final RocketArchive archive;
+    private final long archiveAfter;
+    // finished rockets in the order they finished, to be archived once retention is over
+    private final ConcurrentLinkedQueue<Finished> finished = new ConcurrentLinkedQueue<>();
+    private final List<Consumer<String>> archivedListeners = new CopyOnWriteArrayList<>();
+
     /**
-     * Creates a rocket buffer if not yet created for rocket channel and forwards telemetry for processing
+     * @param rocketBuffer Buffer the rocket had when it finished, archived only if it still has that one
+     * @param at           System.nanoTime() when it finished
+     */
+    private record Finished(String channel, RocketBuffer rocketBuffer, long at) {}
+
+    public RocketRepository() {
+        this(new ReorderConfig(), new SimpleMeterRegistry(), Optional.empty());
+    }
+
+    public RocketRepository(ReorderConfig reorderConfig, MeterRegistry meterRegistry, Optional<TelemetryJournal> journal) {
+        this(reorderConfig, new StoreConfig(), meterRegistry, journal);
+    }
+
+    public RocketRepository(ReorderConfig reorderConfig, StoreConfig storeConfig, MeterRegistry meterRegistry, Optional<TelemetryJournal> journal) {
+        this(reorderConfig, storeConfig, new MetricsConfig(), meterRegistry, journal);
+    }
+
+    public RocketRepository(ReorderConfig reorderConfig, StoreConfig storeConfig, MetricsConfig metricsConfig, MeterRegistry meterRegistry, Optional<TelemetryJournal> journal) {
+        this(reorderConfig, storeConfig, new RetentionConfig(), metricsConfig, meterRegistry, journal);
+    }
+
+    @Inject
+    public RocketRepository(ReorderConfig reorderConfig, StoreConfig storeConfig, RetentionConfig retentionConfig, MetricsConfig metricsConfig,
+                            MeterRegistry meterRegistry, Optional<TelemetryJournal> journal) {
+        this.reorderConfig = reorderConfig;
+        this.meterRegistry = meterRegistry;
+        this.journal = journal.orElse(null);
+        this.dictionary = new RocketDictionary(storeConfig.getDictionarySize());
+        this.index = new RocketIndex(dictionary);
+        if (storeConfig.getEngine() == StorageEngine.COMPACT) {
+            // columns are filtered and sorted per request, an index or sorted views would cost more memory than the rockets
+            this.compact = new CompactRocketStore(reorderConfig, reorderStats, listener, dictionary);
+            this.listeners = List.of(history, stats, feed);
+        } else {
+            this.compact = null;
+            this.listeners = List.of(index, sortedViews, history, stats, feed);
+        }
+        this.archiveAfter = retentionConfig.getArchiveAfter().toNanos();
+        if (archiveAfter <= 0) {
+            this.archive = null;
+        } else if (compact != null || reorderConfig.getSequencer() == Sequencer.RING) {
+            // compact rows are small already, and ring buffers can't be closed to messages
+            log.warn("Finished rockets are not archived with the {} storage engine and {} sequencer", storeConfig.getEngine(), reorderConfig.getSequencer());
+            this.archive = null;
+        } else {
+            this.archive = new RocketArchive(retentionConfig.getBlockSize());
+            Gauge.builder("rockets.archive.rockets", archive, RocketArchive::size)
+                .description("Finished rockets moved to the archive")
+                .register(meterRegistry);
+            Gauge.builder("rockets.archive.bytes", archive, RocketArchive::bytes)
+                .description("Size of the archive's compressed blocks")
+                .register(meterRegistry);
+        }
+
+        FunctionCounter.builder("rockets.reorder.gaps.skipped", reorderStats, stats -> stats.getGapsSkipped().sum())
+            .description("Gaps given up on by the gap policy")
+            .register(meterRegistry);
+        FunctionCounter.builder("rockets.reorder.messages.skipped", reorderStats, stats -> stats.getMessagesSkipped().sum())
+            .description("Missing messages given up on by the gap policy")
+            .register(meterRegistry);
+        FunctionCounter.builder("rockets.reorder.messages.dropped", reorderStats, stats -> stats.getMessagesDropped().sum())
+            .description("Queued messages dropped by the gap policy")
+            .register(meterRegistry);
+        FunctionCounter.builder("rockets.messages.unknown", reorderStats, stats -> stats.getUnknownMessages().sum())
+            .description("Messages of an unknown type, ignored")
+            .register(meterRegistry);
+        Gauge.builder("rockets.reorder.waiting", queueGauges, Map::size)
+            .description("Rockets waiting for a missing message")
+            .register(meterRegistry);
+        Gauge.builder("rockets.reorder.queue.depth", queueGauges, gauges -> gauges.values().stream().mapToDouble(Gauge::value).sum())
+            .description("Messages waiting for a missing message, all rockets together")
+            .register(meterRegistry);
+
+        for (var result : ProcessResult.values()) {
+            resultCounters.put(result, Counter.builder("rockets.messages")
+                .description("Processed messages by result: duplicates, and gaps opened or widened (buffered)")
+                .tag("result", result.name().toLowerCase())
+                .register(meterRegistry));
+        }
+        var processing = "Time to process a message, or the messages of one rocket from a batch, lock wait and listeners included (sampled)";
+        this.processTimer = SampledTimer.register("rockets.messages.process", processing, metricsConfig, meterRegistry, "kind", "single");
+        this.batchTimer = SampledTimer.register("rockets.messages.process", processing, metricsConfig, meterRegistry, "kind", "batch");
+        reorderStats.timeLockWait(SampledTimer.register("rockets.buffer.lock.wait",
+            "Time from asking for a rocket's lock until holding it (sampled)", metricsConfig, meterRegistry));
+    }
+
+    /**
+     * Creates a rocket buffer if not yet created for rocket channel and forwards telemetry for processing.
+     * When the journal is enabled telemetry is journaled before it is applied, unless the rocket received it already:
+     * a message that can't be journaled fails without changing the rocket, so a retry isn't taken for a duplicate
      *
      * @param telemetry Received rocket telemetry
-     * @return Created rocket buffer
+     * @return Created rocket buffer. With the COMPACT storage engine only a rocket waiting for a missing message has one, otherwise null
      */
     public RocketBuffer processTelemetry(MessageController.RocketTelemetry telemetry) {
-        var rocketBuffer = getRocketBuffer(telemetry);
-        rocketBuffer.processTelemetry(telemetry);
+        var channel = telemetry.metadata().channel();
+        if (journal != null && !received(channel, telemetry.metadata().messageNumber())) {
+            journal.append(telemetry);
+        }
+        var start = processTimer.start();
+        RocketBuffer rocketBuffer;
+        ProcessResult result;
+        var changed = new boolean[1];
+        if (compact != null) {
+            result = compact.process(telemetry, changed);
+            rocketBuffer = compact.waiting(channel);
+        } else {
+            rocketBuffer = getRocketBuffer(channel);
+            var before = rocketBuffer.getSnapshot();
+            for (int attempt = 1; (result = rocketBuffer.processTelemetry(telemetry)) == null; attempt++) {
+                rocketBuffer = nextBuffer(channel, attempt);
+                before = rocketBuffer.getSnapshot();
+            }
+            changed[0] = rocketBuffer.getSnapshot() != before;
+        }
+        trackQueue(channel, rocketBuffer);
+        // a queued message changes no rocket, lists and their ETags stay valid
+        if (changed[0]) {
+            version.increment();
+        }
+        processTimer.stop(start);
+        resultCounters.get(result).increment();
+        return rocketBuffer;
+    }
+
+    /**
+     * Processes telemetry read back from the journal, without journaling it again
+     *
+     * @param telemetry Journaled rocket telemetry
+     * @return Rocket buffer of the rocket, same as {@link #processTelemetry(MessageController.RocketTelemetry)}
+     */
+    public RocketBuffer replay(MessageController.RocketTelemetry telemetry) {
+        var channel = telemetry.metadata().channel();
+        RocketBuffer rocketBuffer;
+        if (compact != null) {
+            compact.process(telemetry, new boolean[1]);
+            rocketBuffer = compact.waiting(channel);
+        } else {
+            rocketBuffer = getRocketBuffer(channel);
+            for (int attempt = 1; rocketBuffer.processTelemetry(telemetry) == null; attempt++) {
+                rocketBuffer = nextBuffer(channel, attempt);
+            }
+        }
+        trackQueue(channel, rocketBuffer);
+        version.increment();
 
         return rocketBuffer;
     }
 
+    /**
+     * Processes several messages of one rocket channel under a single buffer lock.
+     * Messages are applied in message number order, results are returned in the original order.
+     * Journaled before they are applied, like {@link #processTelemetry(MessageController.RocketTelemetry)}
+     *
+     * @param channel       Rocket channel all messages belong to
+     * @param telemetryList Received rocket telemetry
+     * @return Result for each message, in the same order as given
+     */
+    public List<ProcessResult> processTelemetry(String channel, List<MessageController.RocketTelemetry> telemetryList) {
+        var order = new Integer[telemetryList.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> MessageNumbers.compare(telemetryList.get(a).metadata().messageNumber(), telemetryList.get(b).metadata().messageNumber()));
+
+        var sorted = new ArrayList<MessageController.RocketTelemetry>(order.length);
+        for (var i : order) {
+            sorted.add(telemetryList.get(i));
+        }
+        if (journal != null) {
+            var numbers = new HashSet<Integer>();
+            var accepted = new ArrayList<MessageController.RocketTelemetry>(sorted.size());
+            for (var telemetry : sorted) {
+                var messageNumber = telemetry.metadata().messageNumber();
+                if (numbers.add(messageNumber) && !received(channel, messageNumber)) {
+                    accepted.add(telemetry);
+                }
+            }
+            journal.append(accepted);
+        }
+
+        var start = batchTimer.start();
+        List<ProcessResult> sortedResults;
+        var changed = new boolean[1];
+        if (compact != null) {
+            sortedResults = compact.process(channel, sorted, changed);
+            trackQueue(channel, compact.waiting(channel));
+        } else {
+            var rocketBuffer = getRocketBuffer(channel);
+            var before = rocketBuffer.getSnapshot();
+            for (int attempt = 1; (sortedResults = rocketBuffer.processTelemetry(sorted)) == null; attempt++) {
+                rocketBuffer = nextBuffer(channel, attempt);
+                before = rocketBuffer.getSnapshot();
+            }
+            changed[0] = rocketBuffer.getSnapshot() != before;
+            trackQueue(channel, rocketBuffer);
+        }
+
+        var results = new ProcessResult[order.length];
+        for (int i = 0; i < order.length; i++) {
+            results[order[i]] = sortedResults.get(i);
+        }
+        if (changed[0]) {
+            version.increment();
+        }
+        batchTimer.stop(start);
+        for (var result : sortedResults) {
+            resultCounters.get(result).increment();
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Takes the state of every rocket, one rocket at a time, while messages keep being processed.
+     * Archived rockets are included, restored they are live until archived again
+     *
+     * @return State by rocket channel
+     */
+    public Map<String, RocketBuffer.State> states() {
+        if (compact != null) {
+            return compact.states();
+        }
+        var states = new HashMap<String, RocketBuffer.State>(bufferMap.size());
+        bufferMap.forEach((channel, rocketBuffer) -> states.put(channel, rocketBuffer.state()));
+        if (archive != null) {
+            for (var rocket : archive.rockets(rocket -> true)) {
+                states.putIfAbsent(rocket.id(), new RocketBuffer.State(rocket, List.of()));
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Sets the state of a rocket, e.g. from a state snapshot file on startup
+     *
+     * @param channel Rocket channel
+     * @param state   Rocket and its queued messages
+     */
+    public void restore(String channel, RocketBuffer.State state) {
+        if (compact != null) {
+            compact.restore(channel, state);
+            trackQueue(channel, compact.waiting(channel));
+        } else {
+            var rocketBuffer = getRocketBuffer(channel);
+            rocketBuffer.restore(state);
+            trackQueue(channel, rocketBuffer);
+        }
+        version.increment();
+    }
+
+    /**
+     * @return Buffer of the rocket, created if it has none. With the COMPACT storage engine only if it waits for a missing message, otherwise null
+     */
     public RocketBuffer getRocketBuffer(MessageController.RocketTelemetry telemetry) {
-        return bufferMap.computeIfAbsent(telemetry.metadata().channel(), k -> new RocketBuffer());
+        var channel = telemetry.metadata().channel();
+        return compact != null ? compact.waiting(channel) : getRocketBuffer(channel);
     }
 
-    public Optional<Rocket> rocketById(String id) {
+    private RocketBuffer getRocketBuffer(String channel) {
+        if (archive == null) {
+            return bufferMap.computeIfAbsent(channel, k -> new RocketBuffer(reorderConfig, reorderStats, listener, dictionary));
+        }
+        var rocketBuffer = bufferMap.get(channel);
+        if (rocketBuffer == null) {
+            var unarchived = new RocketArchive.Entry[1];
+            rocketBuffer = bufferMap.computeIfAbsent(channel, k -> unarchive(k, unarchived));
+            if (unarchived[0] != null) {
+                // taken out of the archive only once live, so readers always find the rocket in one of them.
+                // If it was archived again meanwhile, that newer copy stays
+                archive.remove(channel, unarchived[0]);
+                version.increment(); // live again, lists without archived rockets change
+            }
+        }
+        return rocketBuffer;
+    }
+
+    /**
+     * New buffer of a rocket, with its archived state if it has one: a message came for a finished rocket
+     *
+     * @param unarchived Set to the archive entry the rocket was read from
+     */
+    private RocketBuffer unarchive(String channel, RocketArchive.Entry[] unarchived) {
+        var entry = archive.entry(channel);
+        var rocket = archive.get(channel, entry);
+        if (rocket == null) {
+            return new RocketBuffer(reorderConfig, reorderStats, listener, dictionary);
+        }
+
+        unarchived[0] = entry;
+        var rocketBuffer = new RocketBuffer(reorderConfig, reorderStats, listener, dictionary, rocket, true);
+        // history and stats kept the rocket while it was archived, the feed has nothing new to tell
+        var unknown = new Rocket(dictionary).snapshot();
+        index.rocketChanged(unknown, rocket, null);
+        sortedViews.rocketChanged(unknown, rocket, null);
+        finished.add(new Finished(channel, rocketBuffer, System.nanoTime()));
+        return rocketBuffer;
+    }
+
+    /**
+     * @return Whether processing the message now would find it a duplicate, read without locking.
+     * False for a rocket in the archive, a copy of an archived message is journaled and found a duplicate on replay
+     */
+    private boolean received(String channel, int messageNumber) {
+        if (compact != null) {
+            return compact.received(channel, messageNumber);
+        }
+        var rocketBuffer = bufferMap.get(channel);
+        return rocketBuffer != null && rocketBuffer.received(messageNumber);
+    }
+
+    /**
+     * @param attempt How many buffers of the rocket refused the message so far
+     * @return Buffer to process a message with after the rocket's previous one refused it, because the rocket is being archived
+     * @throws IllegalStateException if the rocket still has a retired buffer after {@value #MAX_ATTEMPTS} attempts
+     */
+    private RocketBuffer nextBuffer(String channel, int attempt) {
+        if (attempt > MAX_ATTEMPTS) {
+            throw new IllegalStateException("Rocket %s is still being archived after %d attempts".formatted(channel, MAX_ATTEMPTS));
+        }
+        // the previous buffer is gone as soon as the rocket is in the archive, or taken back if that failed
+        if (attempt <= SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return getRocketBuffer(channel);
+    }
+
+    private void rocketChanged(RocketSnapshot before, RocketSnapshot after, MessageController.RocketTelemetry telemetry) {
+        for (var rocketListener : listeners) {
+            rocketListener.rocketChanged(before, after, telemetry);
+        }
+        // a rocket that exploded before its launch has no id to be found by in the archive, it stays live
+        if (archive != null && after.id() != null && after.missionEndTime() != null && before.missionEndTime() == null) {
+            finished.add(new Finished(after.id(), bufferMap.get(after.id()), System.nanoTime()));
+        }
+    }
+
+    /**
+     * Moves rockets that finished longer than {@link RetentionConfig#getArchiveAfter()} ago into the archive.
+     * A rocket waiting for a missing message stays live until it no longer does
+     */
+    @Scheduled(fixedDelay = "${rockets.retention.check-interval:10s}")
+    public void archiveFinished() {
+        if (archive == null) {
+            return;
+        }
+        var now = System.nanoTime();
+        var archived = 0;
+        Finished next;
+        while ((next = finished.peek()) != null && now - next.at() >= archiveAfter) {
+            finished.poll();
+            var channel = next.channel();
+            var rocketBuffer = bufferMap.get(channel);
+            if (rocketBuffer == null || rocketBuffer != next.rocketBuffer()) {
+                continue; // archived already, or taken out again since
+            }
+            var rocket = rocketBuffer.retire();
+            if (rocket == null) {
+                if (rocketBuffer.getSnapshot().missionEndTime() != null) {
+                    finished.add(new Finished(channel, rocketBuffer, now)); // still waiting, try again later
+                }
+                continue;
+            }
+
+            try {
+                archive.add(rocket);
+            } catch (RuntimeException e) {
+                // stays live, not tried again: it would fail the same way
+                rocketBuffer.unretire();
+                log.error("Could not archive rocket {}", channel, e);
+                continue;
+            }
+            index.remove(rocket);
+            sortedViews.remove(rocket);
+            bufferMap.remove(channel, rocketBuffer);
+            for (var archivedListener : archivedListeners) {
+                archivedListener.accept(channel);
+            }
+            archived++;
+        }
+        if (archived > 0) {
+            log.info("Archived {} finished rocket(s), {} in the archive", archived, archive.size());
+            version.increment();
+        }
+    }
+
+    /**
+     * @param archivedListener Called with the channel of every rocket moved to the archive, e.g. to drop what is kept for it
+     */
+    public void onArchived(Consumer<String> archivedListener) {
+        archivedListeners.add(archivedListener);
+    }
+
+    /**
+     * Runs the gap policy for rockets that stopped receiving messages while waiting for a missing one
+     */
+    @Scheduled(fixedDelay = "${rockets.reorder.check-interval:1s}")
+    public void expireGaps() {
+        if (queueGauges.isEmpty()) {
+            return; // no rocket is waiting
+        }
+        var changed = false;
+        if (compact != null) {
+            changed = compact.expireGaps();
+            for (var channel : queueGauges.keySet()) {
+                trackQueue(channel, compact.waiting(channel));
+            }
+        } else {
+            for (var channel : queueGauges.keySet()) {
+                var rocketBuffer = bufferMap.get(channel);
+                if (rocketBuffer != null) {
+                    changed |= rocketBuffer.expireGap();
+                    trackQueue(channel, rocketBuffer);
+                }
+            }
+        }
+        // lists and their ETags stay valid while rockets only keep waiting
+        if (changed) {
+            version.increment();
+        }
+    }
+
+    /**
+     * Logs the per-message events counted since the last summary, see {@link EventSummary}
+     */
+    @Scheduled(fixedDelay = "${rockets.reorder.log-summary-interval:10s}")
+    public void logEventSummary() {
+        reorderStats.getEvents().report(reorderConfig.getLogSummaryRockets());
+    }
+
+    /**
+     * Keeps a queue size gauge for every rocket waiting for a missing message, removed once the rocket catches up
+     */
+    private void trackQueue(String channel, RocketBuffer rocketBuffer) {
+        if (rocketBuffer != null && rocketBuffer.queuedMessages() > 0) {
+            queueGauges.computeIfAbsent(channel, k -> Gauge.builder("rockets.reorder.queued", rocketBuffer, RocketBuffer::queuedMessages)
+                .description("Messages waiting for a missing message")
+                .tag("channel", k)
+                .register(meterRegistry));
+
+        } else if (!queueGauges.isEmpty()) {
+            var gauge = queueGauges.remove(channel);
+            if (gauge != null) {
+                meterRegistry.remove(gauge);
+            }
+        }
+    }
+
+    /**
+     * Reads are lock-free, they return the latest published snapshot and never see a rocket halfway through an update
+     *
+     * @param id Rocket channel
+     * @return Latest rocket state
+     */
+    public Optional<RocketSnapshot> rocketById(String id) {
+        if (compact != null) {
+            return compact.rocket(id);
+        }
         var rocketBuffer = bufferMap.get(id);
         if (rocketBuffer != null) {
-            return Optional.of(rocketBuffer.getRocket());
+            return Optional.of(rocketBuffer.getSnapshot());
         }
 
-        return Optional.empty();
+        return archive != null ? Optional.ofNullable(archive.get(id)) : Optional.empty();
     }
 
-    public List<Rocket> rocketsBy(Predicate<Rocket> predicate) {
+    /**
+     * @param channel Rocket channel
+     * @param field   Property to return
+     * @param from    Earliest message time, inclusive, null for no limit
+     * @param to      Latest message time, exclusive, null for no limit
+     * @return Values of the property in message order, empty if there is no such rocket
+     */
+    public Optional<List<HistoryPoint>> history(String channel, HistoryField field, ZonedDateTime from, ZonedDateTime to) {
+        if (compact != null ? !compact.contains(channel) : !bufferMap.containsKey(channel) && (archive == null || !archive.contains(channel))) {
+            return Optional.empty();
+        }
+        return Optional.of(history.history(channel)
+            .map(rocketHistory -> rocketHistory.points(field, from, to))
+            .orElse(List.of()));
+    }
+
+    public List<RocketSnapshot> rocketsBy(Predicate<RocketSnapshot> predicate) {
+        if (compact != null) {
+            return compact.rockets(predicate);
+        }
         return bufferMap.values().stream()
-            .map(RocketBuffer::getRocket)
+            .map(RocketBuffer::getSnapshot)
             .filter(predicate).collect(Collectors.toCollection(ArrayList::new));
     }
 
-    public Set<String> rocketTypes() {
-        Set<String> types = new HashSet<>();
-        for (var entry : bufferMap.entrySet()) {
-            var type = entry.getValue().getRocket().getType();
-            types.add(type);
+    /**
+     * Uses the type, status and mission index instead of looking at every rocket.
+     * Starts from the smallest matching channel set and checks the other criteria on those rockets only
+     *
+     * @param filter Values rockets must have
+     * @return Matching rockets
+     */
+    public List<RocketSnapshot> rocketsBy(RocketFilter filter) {
+        if (compact != null) {
+            return compact.rockets(filter);
+        }
+        if (filter.isEmpty()) {
+            return rocketsBy(rocket -> true);
+        }
+
+        Set<String> candidates = null;
+        for (var channels : List.of(
+            filter.type().map(index::channelsByType),
+            filter.status().map(index::channelsByStatus),
+            filter.mission().map(index::channelsByMission))
+        ) {
+            if (channels.isPresent() && (candidates == null || channels.get().size() < candidates.size())) {
+                candidates = channels.get();
+            }
+        }
+
+        var rockets = new ArrayList<RocketSnapshot>(candidates.size());
+        for (var channel : candidates) {
+            var rocketBuffer = bufferMap.get(channel);
+            if (rocketBuffer != null && filter.matches(rocketBuffer.getSnapshot())) {
+                rockets.add(rocketBuffer.getSnapshot());
+            }
+        }
+        return rockets;
+    }
+
+    /**
+     * One page of a sorted rocket list.
+     * Without a filter the page is read from a pre-sorted view: O(log n + limit).
+     * With a filter the indexed matches are narrowed down to the page with a bounded heap: O(m log limit) for m matches.
+     * The COMPACT storage engine has no sorted views, it always takes the second way.
+     *
+     * @param filter     Values rockets must have
+     * @param sortKey    Sort property
+     * @param descending Reverse order
+     * @param cursor     Next cursor of the previous page, null for the first page
+     * @param limit      Page size, 0 for everything
+     * @return Sorted page of launched rockets
+     * @throws IllegalArgumentException if cursor is invalid
+     */
+    public RocketPage rocketPage(RocketFilter filter, SortKey sortKey, boolean descending, String cursor, int limit) {
+        return rocketPage(filter, sortKey, descending, cursor, limit, false);
+    }
+
+    /**
+     * Same as {@link #rocketPage(RocketFilter, SortKey, boolean, String, int)}, archived rockets included if asked for.
+     * They are decompressed, filtered and merged into the page of live rockets on every request
+     *
+     * @param includeArchived Also archived rockets, see {@link RetentionConfig}
+     */
+    public RocketPage rocketPage(RocketFilter filter, SortKey sortKey, boolean descending, String cursor, int limit, boolean includeArchived) {
+        var live = livePage(filter, sortKey, descending, cursor, limit);
+        if (!includeArchived || archive == null || archive.size() == 0) {
+            return live;
         }
 
-        return types;
+        var order = descending ? sortKey.comparator().reversed() : sortKey.comparator();
+        var after = cursor == null ? null : sortKey.decodeCursor(cursor);
+        // a rocket moving between archive and live rockets is listed at most once
+        var matches = archive.rockets(rocket -> filter.matches(rocket) && (after == null || order.compare(rocket, after) > 0) && !bufferMap.containsKey(rocket.id()));
+        if (matches.isEmpty()) {
+            return live;
+        }
+        matches.addAll(live.rockets());
+
+        var page = smallest(matches, order, limit > 0 ? limit : Integer.MAX_VALUE);
+        var more = live.nextCursor() != null || matches.size() > page.size();
+        return new RocketPage(page, more && !page.isEmpty() ? sortKey.cursor(page.getLast()) : null);
+    }
+
+    private RocketPage livePage(RocketFilter filter, SortKey sortKey, boolean descending, String cursor, int limit) {
+        var after = cursor == null ? null : sortKey.decodeCursor(cursor);
+        var pageSize = limit > 0 ? limit : Integer.MAX_VALUE;
+
+        if (filter.isEmpty() && compact == null) {
+            var page = new ArrayList<RocketSnapshot>(Math.min(pageSize, 1024));
+            RocketSnapshot last = null;
+            var iterator = sortedViews.view(sortKey, descending, after).iterator();
+            while (iterator.hasNext() && page.size() < pageSize) {
+                last = iterator.next();
+                var rocketBuffer = bufferMap.get(last.id());
+                if (rocketBuffer != null) {
+                    page.add(rocketBuffer.getSnapshot());
+                }
+            }
+            return new RocketPage(page, iterator.hasNext() ? sortKey.cursor(last) : null);
+        }
+
+        var order = descending ? sortKey.comparator().reversed() : sortKey.comparator();
+        var matches = rocketsBy(filter);
+        if (after != null) {
+            matches.removeIf(rocket -> order.compare(rocket, after) <= 0);
+        }
+
+        var page = smallest(matches, order, pageSize);
+        return new RocketPage(page, matches.size() > page.size() ? sortKey.cursor(page.getLast()) : null);
+    }
+
+    /**
+     * @return First k rockets in given order, sorted
+     */
+    private static List<RocketSnapshot> smallest(List<RocketSnapshot> rockets, Comparator<RocketSnapshot> order, int k) {
+        if (k >= rockets.size()) {
+            rockets.sort(order);
+            return rockets;
+        }
+
+        var heap = new PriorityQueue<>(k + 1, order.reversed()); // largest of the k smallest on top
+        for (var rocket : rockets) {
+            heap.add(rocket);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+
+        var smallest = new ArrayList<>(heap);
+        smallest.sort(order);
+        return smallest;
+    }
+
+    /**
+     * @return Aggregates kept up to date as rockets change, in O(number of groups)
+     */
+    public RocketStats.Report stats() {
+        return stats.report();
+    }
+
+    /**
+     * Grows after every change of any rocket, so an unchanged version means unchanged rockets.
+     * Read it before reading rockets: they are at least as new as the version says
+     *
+     * @return Version of all rockets together
+     */
+    public long version() {
+        return version.sum();
+    }
+
+    /**
+     * @return Live changes of rockets
+     */
+    public RocketFeed feed() {
+        return feed;
+    }
+
+    /**
+     * @return Types of the live rockets, from the type index. The COMPACT storage engine has no index
+     * and never drops a rocket, its types come straight from the type dictionary and the types it had no room for
+     */
+    public Set<String> rocketTypes() {
+        if (compact != null) {
+            return compact.types();
+        }
+        return index.types(channel -> {
+            var rocketBuffer = bufferMap.get(channel);
+            return rocketBuffer != null ? rocketBuffer.getSnapshot().type() : null;
+        });
     }
 }
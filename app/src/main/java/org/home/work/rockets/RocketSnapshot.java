@@ -0,0 +1,21 @@
+package org.home.work.rockets;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Immutable copy of a {@link Rocket}'s state, safe to read and serialize without locking while the rocket keeps changing
+ */
+@Serdeable
+public record RocketSnapshot(
+    String id,
+    String type,
+    int speed,
+    String mission,
+    ZonedDateTime launchTime,
+    int lastMessageNumber,
+    String status,
+    ZonedDateTime missionEndTime,
+    boolean degraded
+) {}
@@ -0,0 +1,133 @@
+package org.home.work.rockets;
+
+import io.micronaut.serde.annotation.Serdeable;
+import org.home.work.messages.MessageController;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running aggregates for dashboards, in total and by type, mission and status.
+ * Every rocket change moves the rocket's contribution from its old groups to its new ones in O(1),
+ * so reading the stats costs the same no matter how many rockets there are.
+ * <p>
+ * Lifetime is launch to explosion, recorded when a rocket explodes in the type and mission it had then.
+ */
+public class RocketStats implements RocketListener {
+    private static final int SPEED_BITS = 31;
+    private static final int LIFETIME_BITS = 42; // milliseconds, over a century
+
+    private final Aggregate total = new Aggregate();
+    private final ConcurrentHashMap<String, Aggregate> byType = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Aggregate> byMission = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Aggregate> byStatus = new ConcurrentHashMap<>();
+
+    @Serdeable
+    public record Report(Group total, Map<String, Group> byType, Map<String, Group> byMission, Map<String, Group> byStatus) {}
+
+    /**
+     * Min and max speed are exact below 128 and within 1.6% above, negative speeds count as 0
+     *
+     * @param lifetime Of the exploded rockets
+     */
+    @Serdeable
+    public record Group(long rockets, long active, long exploded, Double averageSpeed, Long minSpeed, Long maxSpeed, Lifetime lifetime) {}
+
+    /**
+     * Milliseconds from launch to explosion. Percentiles and max are the upper bound of their bucket, within 1.6%
+     */
+    @Serdeable
+    public record Lifetime(long count, Double averageMillis, Long p50Millis, Long p90Millis, Long p99Millis, Long maxMillis) {}
+
+    @Override
+    public void rocketChanged(RocketSnapshot before, RocketSnapshot after, MessageController.RocketTelemetry telemetry) {
+        if (after.id() == null) {
+            return; // not launched yet
+        }
+
+        var counted = before.id() != null;
+        if (counted) {
+            total.remove(before);
+            group(byType, before.type()).remove(before);
+            group(byMission, before.mission()).remove(before);
+            group(byStatus, before.status()).remove(before);
+        }
+        total.add(after);
+        group(byType, after.type()).add(after);
+        group(byMission, after.mission()).add(after);
+        group(byStatus, after.status()).add(after);
+
+        if (before.missionEndTime() == null && after.missionEndTime() != null && after.launchTime() != null) {
+            var lifetime = Duration.between(after.launchTime(), after.missionEndTime()).toMillis();
+            total.lifetime(lifetime);
+            group(byType, after.type()).lifetime(lifetime);
+            group(byMission, after.mission()).lifetime(lifetime);
+        }
+    }
+
+    public Report report() {
+        return new Report(total.group(), groups(byType), groups(byMission), groups(byStatus));
+    }
+
+    private static Aggregate group(ConcurrentHashMap<String, Aggregate> groups, String key) {
+        return groups.computeIfAbsent(key == null ? "" : key, k -> new Aggregate());
+    }
+
+    private static Map<String, Group> groups(ConcurrentHashMap<String, Aggregate> aggregates) {
+        var groups = new TreeMap<String, Group>();
+        aggregates.forEach((key, aggregate) -> groups.put(key, aggregate.group()));
+        return groups;
+    }
+
+    private static class Aggregate {
+        private final LongAdder rockets = new LongAdder();
+        private final LongAdder exploded = new LongAdder();
+        private final LongAdder speedSum = new LongAdder();
+        private final LogHistogram speeds = new LogHistogram(SPEED_BITS);
+        private final LongAdder lifetimes = new LongAdder();
+        private final LongAdder lifetimeSum = new LongAdder();
+        private final LogHistogram lifetimeHistogram = new LogHistogram(LIFETIME_BITS);
+
+        void add(RocketSnapshot rocket) {
+            rockets.increment();
+            if (rocket.missionEndTime() != null) {
+                exploded.increment();
+            }
+            speedSum.add(rocket.speed());
+            speeds.record(rocket.speed());
+        }
+
+        void remove(RocketSnapshot rocket) {
+            rockets.decrement();
+            if (rocket.missionEndTime() != null) {
+                exploded.decrement();
+            }
+            speedSum.add(-rocket.speed());
+            speeds.remove(rocket.speed());
+        }
+
+        void lifetime(long millis) {
+            lifetimes.increment();
+            lifetimeSum.add(millis);
+            lifetimeHistogram.record(millis);
+        }
+
+        Group group() {
+            var count = rockets.sum();
+            var explodedCount = exploded.sum();
+            var lifetimeCount = lifetimes.sum();
+            var lifetime = new Lifetime(
+                lifetimeCount,
+                lifetimeCount == 0 ? null : (double) lifetimeSum.sum() / lifetimeCount,
+                lifetimeHistogram.percentile(50),
+                lifetimeHistogram.percentile(90),
+                lifetimeHistogram.percentile(99),
+                lifetimeHistogram.max()
+            );
+            return new Group(count, count - explodedCount, explodedCount, count == 0 ? null : (double) speedSum.sum() / count, speeds.min(), speeds.max(), lifetime);
+        }
+    }
+}
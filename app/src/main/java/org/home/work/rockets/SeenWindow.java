@@ -0,0 +1,82 @@
+package org.home.work.rockets;
+
+import java.util.Arrays;
+
+/**
+ * Message numbers after a rocket's last message number that are already queued, as a bitmap starting right after it.
+ * Tells a copy of a queued message apart in O(1) however deep the queue, and costs nothing for a rocket that isn't waiting,
+ * since its buffer only has one while it is. The last message number itself is the high-water mark: everything up to it was seen.
+ * <p>
+ * Numbers more than {@value #MAX_SPAN} ahead of the start are not kept, {@link #add(int)} takes them without remembering.
+ */
+final class SeenWindow {
+    static final int MAX_SPAN = 1 << 16;
+
+    // bit i is message number base + i
+    private long[] words = new long[2];
+    private int base;
+
+    /**
+     * @param last Last message number of the rocket, the window starts after it
+     */
+    SeenWindow(int last) {
+        this.base = last + 1;
+    }
+
+    /**
+     * @return false if the number is already in the window
+     */
+    boolean add(int number) {
+        var offset = number - base;
+        if (offset < 0 || offset >= MAX_SPAN) {
+            return true;
+        }
+        if (offset >= words.length * Long.SIZE) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, (offset >>> 6) + 1));
+        }
+        var word = offset >>> 6;
+        var bit = 1L << offset;
+        if ((words[word] & bit) != 0) {
+            return false;
+        }
+        words[word] |= bit;
+        return true;
+    }
+
+    boolean contains(int number) {
+        var offset = number - base;
+        return offset >= 0 && offset < words.length * Long.SIZE && (words[offset >>> 6] & 1L << offset) != 0;
+    }
+
+    void remove(int number) {
+        var offset = number - base;
+        if (offset >= 0 && offset < words.length * Long.SIZE) {
+            words[offset >>> 6] &= ~(1L << offset);
+        }
+    }
+
+    /**
+     * Forgets numbers up to last, they are applied or skipped now
+     *
+     * @param last New last message number of the rocket
+     */
+    void advance(int last) {
+        var passed = last + 1 - base;
+        if (passed <= 0) {
+            return;
+        }
+        var passedWords = Math.min(passed >>> 6, words.length);
+        if (passedWords > 0) {
+            System.arraycopy(words, passedWords, words, 0, words.length - passedWords);
+            Arrays.fill(words, words.length - passedWords, words.length, 0);
+            base += passedWords * Long.SIZE;
+            passed -= passedWords * Long.SIZE;
+        }
+        if (passed >= words.length * Long.SIZE) {
+            Arrays.fill(words, 0); // jumped past the whole window
+            base = last + 1;
+        } else if (passed > 0) {
+            words[0] &= -1L << passed; // numbers before last + 1 in the first word
+        }
+    }
+}
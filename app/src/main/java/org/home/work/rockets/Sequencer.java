@@ -0,0 +1,15 @@
+package org.home.work.rockets;
+
+/**
+ * How a rocket's buffer puts concurrently arriving messages in order
+ */
+public enum Sequencer {
+    /** one thread at a time holds the buffer's lock, out of order messages wait in a priority queue */
+    LOCK,
+    /**
+     * lock-free: messages are placed in a ring of {@link ReorderConfig#getRingSize()} slots by message number,
+     * and whichever thread finds the next one there applies it and everything contiguous after it, while the others return.
+     * Suits a few very busy rockets, costs a ring per rocket
+     */
+    RING
+}
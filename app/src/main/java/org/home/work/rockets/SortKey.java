@@ -0,0 +1,111 @@
+package org.home.work.rockets;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * Rocket list sort properties. Rockets without a value (e.g. endTime of a rocket still flying) come after all others in ascending order,
+ * equal values are ordered by channel, so every rocket has exactly one position
+ */
+public enum SortKey {
+    MISSION("mission", RocketSnapshot::mission, value -> value, nullsLast(RocketSnapshot::mission)),
+    TYPE("type", RocketSnapshot::type, value -> value, nullsLast(RocketSnapshot::type)),
+    SPEED("speed", RocketSnapshot::speed, Integer::valueOf, Comparator.comparingInt(RocketSnapshot::speed)),
+    STATUS("status", RocketSnapshot::status, value -> value, nullsLast(RocketSnapshot::status)),
+    LAUNCH_TIME("launchTime", RocketSnapshot::launchTime, ZonedDateTime::parse, nullsLast(RocketSnapshot::launchTime)),
+    END_TIME("endTime", RocketSnapshot::missionEndTime, ZonedDateTime::parse, nullsLast(RocketSnapshot::missionEndTime));
+
+    private final String str;
+    private final Function<RocketSnapshot, ?> property;
+    private final Function<String, ?> parser;
+    private final Comparator<RocketSnapshot> comparator;
+
+    SortKey(String str, Function<RocketSnapshot, ?> property, Function<String, ?> parser, Comparator<RocketSnapshot> order) {
+        this.str = str;
+        this.property = property;
+        this.parser = parser;
+        this.comparator = order.thenComparing(RocketSnapshot::id);
+    }
+
+    private static <T extends Comparable<? super T>> Comparator<RocketSnapshot> nullsLast(Function<RocketSnapshot, T> property) {
+        // type, mission and status of rockets are the dictionary's shared strings, equal values are mostly the same instance
+        return Comparator.comparing(property, Comparator.nullsLast((a, b) -> a == b ? 0 : a.compareTo(b)));
+    }
+
+    /**
+     * @return Query parameter value
+     */
+    public String str() {
+        return str;
+    }
+
+    /**
+     * @param str Query parameter value
+     * @return Matching sort key, {@link #MISSION} if unknown
+     */
+    public static SortKey ofStr(String str) {
+        for (var sortKey : values()) {
+            if (sortKey.str.equals(str)) {
+                return sortKey;
+            }
+        }
+        return MISSION;
+    }
+
+    /**
+     * @return Ascending order, for rockets that have an id (are launched)
+     */
+    public Comparator<RocketSnapshot> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @param rocket Last rocket of a page
+     * @return Opaque page cursor: sort key, channel and sort value of given rocket
+     */
+    public String cursor(RocketSnapshot rocket) {
+        var value = property.apply(rocket);
+        var text = name() + "\n" + rocket.id() + (value == null ? "" : "\n" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor Cursor from {@link #cursor(RocketSnapshot)}
+     * @return A rocket that sorts at the same position as the cursor's rocket did, to search sorted rockets with
+     * @throws IllegalArgumentException if the cursor is malformed or from another sort key
+     */
+    public RocketSnapshot decodeCursor(String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor", e);
+        }
+
+        if (parts.length < 2 || !parts[0].equals(name())) {
+            throw new IllegalArgumentException("cursor is not for sorting by " + str);
+        }
+        return probe(parts[1], parts.length == 3 ? parts[2] : null);
+    }
+
+    private RocketSnapshot probe(String channel, String value) {
+        Object parsed;
+        try {
+            parsed = value == null ? null : parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid %s value \"%s\"".formatted(str, value), e);
+        }
+
+        return switch (this) {
+            case MISSION -> new RocketSnapshot(channel, null, 0, (String) parsed, null, 0, null, null, false);
+            case TYPE -> new RocketSnapshot(channel, (String) parsed, 0, null, null, 0, null, null, false);
+            case SPEED -> new RocketSnapshot(channel, null, (Integer) parsed, null, null, 0, null, null, false);
+            case STATUS -> new RocketSnapshot(channel, null, 0, null, null, 0, (String) parsed, null, false);
+            case LAUNCH_TIME -> new RocketSnapshot(channel, null, 0, null, (ZonedDateTime) parsed, 0, null, null, false);
+            case END_TIME -> new RocketSnapshot(channel, null, 0, null, null, 0, null, (ZonedDateTime) parsed, false);
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package org.home.work.rockets;
+
+import org.home.work.messages.MessageController;
+
+import java.util.EnumMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Launched rockets kept sorted by every {@link SortKey}, so a page of a sorted list is a skip list seek plus the page itself
+ * instead of sorting all rockets.
+ * <p>
+ * A view only changes when its sort value changes, so entries may be older snapshots of a rocket:
+ * use them for ordering and read the rocket's current snapshot for output.
+ */
+public class SortedRocketViews implements RocketListener {
+    private final EnumMap<SortKey, ConcurrentSkipListSet<RocketSnapshot>> views = new EnumMap<>(SortKey.class);
+
+    public SortedRocketViews() {
+        for (var sortKey : SortKey.values()) {
+            views.put(sortKey, new ConcurrentSkipListSet<>(sortKey.comparator()));
+        }
+    }
+
+    @Override
+    public void rocketChanged(RocketSnapshot before, RocketSnapshot after, MessageController.RocketTelemetry telemetry) {
+        if (after.id() == null) {
+            return; // not launched yet
+        }
+
+        for (var entry : views.entrySet()) {
+            var view = entry.getValue();
+            if (before.id() == null) {
+                view.add(after);
+            } else if (entry.getKey().comparator().compare(before, after) != 0) {
+                view.remove(before);
+                view.add(after);
+            }
+        }
+    }
+
+    /**
+     * Drops the rocket from every view, e.g. once it is archived
+     */
+    public void remove(RocketSnapshot rocket) {
+        for (var view : views.values()) {
+            view.remove(rocket);
+        }
+    }
+
+    /**
+     * @param sortKey    Sort property
+     * @param descending Reverse order
+     * @param after      Position to continue after, null to start from the beginning
+     * @return Live sorted view, starting after given position
+     */
+    public NavigableSet<RocketSnapshot> view(SortKey sortKey, boolean descending, RocketSnapshot after) {
+        NavigableSet<RocketSnapshot> view = views.get(sortKey);
+        if (descending) {
+            view = view.descendingSet();
+        }
+        return after == null ? view : view.tailSet(after, false);
+    }
+}
@@ -0,0 +1,16 @@
+package org.home.work.rockets;
+
+/**
+ * How rocket state is kept in memory
+ */
+public enum StorageEngine {
+    /**
+     * A {@link RocketBuffer} with a {@link Rocket} object for every rocket, indexed and pre-sorted for queries
+     */
+    OBJECTS,
+    /**
+     * Primitive columns, a few dozen bytes per rocket. A rocket only gets a {@link RocketBuffer} while it waits for a missing message.
+     * Lists are filtered and sorted per request, there are no indexes or pre-sorted views
+     */
+    COMPACT
+}
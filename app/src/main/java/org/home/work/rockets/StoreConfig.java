@@ -0,0 +1,12 @@
+package org.home.work.rockets;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Data;
+
+@Data
+@ConfigurationProperties("rockets.store")
+public class StoreConfig {
+    private StorageEngine engine = StorageEngine.OBJECTS;
+    /** distinct types, missions and statuses given a dictionary code each, later new values are kept as plain strings */
+    private int dictionarySize = Dictionary.DEFAULT_CAPACITY;
+}
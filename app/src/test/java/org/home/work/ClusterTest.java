@@ -0,0 +1,172 @@
+package org.home.work;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.client.BlockingHttpClient;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.runtime.server.EmbeddedServer;
+import org.home.work.cluster.HashRing;
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.RocketController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+
+class ClusterTest {
+    private static final int ROCKETS = 60;
+    private static final int SPEED_CHANGES = 5;
+
+    private final List<EmbeddedServer> servers = new ArrayList<>();
+    private final List<BlockingHttpClient> clients = new ArrayList<>();
+    private List<String> peers;
+
+    @BeforeEach
+    void startNodes() throws IOException {
+        var ports = new ArrayList<Integer>();
+        for (int i = 0; i < 3; i++) {
+            try (var socket = new ServerSocket(0)) {
+                ports.add(socket.getLocalPort());
+            }
+        }
+        peers = ports.stream().map(port -> "http://localhost:" + port).toList();
+        for (int i = 0; i < ports.size(); i++) {
+            var server = ApplicationContext.run(EmbeddedServer.class, Map.of(
+                "micronaut.server.port", ports.get(i),
+                "rockets.cluster.enabled", true,
+                "rockets.cluster.self", peers.get(i),
+                "rockets.cluster.peers", peers,
+                "micronaut.server.http-version", "2.0" // nodes talk HTTP/2 to each other
+            ));
+            servers.add(server);
+            clients.add(server.getApplicationContext().createBean(HttpClient.class, server.getURL()).toBlocking());
+        }
+    }
+
+    @AfterEach
+    void stopNodes() {
+        clients.forEach(BlockingHttpClient::close);
+        servers.forEach(EmbeddedServer::stop);
+    }
+
+    @Test
+    void everyRocketIsKeptByItsOwnerAndSeenFromEveryNode() {
+        var random = new Random(3);
+        var messages = new ArrayList<String>();
+        for (int r = 0; r < ROCKETS; r++) {
+            messages.add(launch("rocket-" + r, 1000 + r * 7 % 50));
+            for (int n = 2; n <= SPEED_CHANGES + 1; n++) {
+                messages.add(speedIncrease("rocket-" + r, n, 10));
+            }
+        }
+        Collections.shuffle(messages, random);
+
+        // half one by one to any node, the other half in batches
+        var half = messages.size() / 2;
+        for (var message : messages.subList(0, half)) {
+            assertEquals(200, clients.get(random.nextInt(clients.size())).exchange(HttpRequest.POST("/messages", message)).code());
+        }
+        var rest = messages.subList(half, messages.size());
+        for (int from = 0; from < rest.size(); from += 50) {
+            var body = String.join("\n", rest.subList(from, Math.min(from + 50, rest.size())).stream().map(m -> m.replace("\n", "")).toList());
+            var request = HttpRequest.POST("/messages/batch", body).contentType(MessageController.APPLICATION_NDJSON);
+            var summary = clients.get(random.nextInt(clients.size())).retrieve(request, MessageController.BatchSummary.class);
+            assertEquals(0, summary.rejected());
+        }
+
+        var ring = new HashRing(peers, 128);
+        var owned = 0;
+        for (int i = 0; i < servers.size(); i++) {
+            var own = rockets(clients.get(i), "/cluster/rockets");
+            for (var rocket : own) {
+                assertEquals(peers.get(i), ring.owner((String) rocket.get("id")));
+            }
+            owned += own.size();
+        }
+        assertEquals(ROCKETS, owned);
+
+        for (int r = 0; r < ROCKETS; r++) {
+            var rocket = clients.get(r % clients.size()).retrieve("/rockets/rocket-" + r, Map.class);
+            assertEquals(1000 + r * 7 % 50 + SPEED_CHANGES * 10, rocket.get("speed"));
+            assertEquals(SPEED_CHANGES + 1, rocket.get("lastMessageNumber"));
+        }
+
+        // pages merged from all nodes, in the same order a single node would list them
+        var everything = rockets(clients.get(0), "/rockets?sortBy=speed&orderBy=desc");
+        assertEquals(ROCKETS, everything.size());
+        var expected = new ArrayList<>(everything);
+        expected.sort(Comparator.<Map<String, Object>>comparingInt(rocket -> (Integer) rocket.get("speed"))
+            .thenComparing(rocket -> (String) rocket.get("id")).reversed());
+        assertEquals(ids(expected), ids(everything));
+
+        var paged = new ArrayList<Map<String, Object>>();
+        String cursor = null;
+        do {
+            var response = clients.get(2).exchange("/rockets?sortBy=speed&orderBy=desc&limit=7" + (cursor == null ? "" : "&cursor=" + cursor), String.class);
+            paged.addAll(read(response.body()));
+            cursor = response.header(RocketController.NEXT_CURSOR);
+        } while (cursor != null);
+        assertEquals(ids(expected), ids(paged));
+    }
+
+    @Test
+    void unreachableOwnerIsReportedUnavailable() {
+        var ring = new HashRing(peers, 128);
+        var channel = "rocket-0";
+        var owner = peers.indexOf(ring.owner(channel));
+        var other = (owner + 1) % peers.size();
+        servers.get(owner).stop();
+
+        var exception = assertThrowsExactly(HttpClientResponseException.class,
+            () -> clients.get(other).exchange(HttpRequest.POST("/messages", launch(channel, 100))));
+        assertEquals(503, exception.code());
+        exception = assertThrowsExactly(HttpClientResponseException.class, () -> clients.get(other).exchange("/rockets/" + channel));
+        assertEquals(503, exception.code());
+        exception = assertThrowsExactly(HttpClientResponseException.class, () -> clients.get(other).exchange("/rockets"));
+        assertEquals(503, exception.code());
+    }
+
+    private static List<Map<String, Object>> rockets(BlockingHttpClient client, String uri) {
+        return read(client.retrieve(uri));
+    }
+
+    private static List<Map<String, Object>> read(String json) {
+        try {
+            return App.objectMapper.readValue(json, new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<Object> ids(List<Map<String, Object>> rockets) {
+        return rockets.stream().map(rocket -> rocket.get("id")).toList();
+    }
+
+    private static String launch(String channel, int speed) {
+        return """
+            {"metadata": {"channel": "%s", "messageNumber": 1, "messageTime": "2022-02-02T19:39:05.86337+01:00", "messageType": "RocketLaunched"},
+             "message": {"type": "Falcon-9", "launchSpeed": %d, "mission": "ARTEMIS"}}
+            """.formatted(channel, speed);
+    }
+
+    private static String speedIncrease(String channel, int messageNumber, int by) {
+        return """
+            {"metadata": {"channel": "%s", "messageNumber": %d, "messageTime": "2022-02-02T19:40:05.86337+01:00", "messageType": "RocketSpeedIncreased"},
+             "message": {"by": %d}}
+            """.formatted(channel, messageNumber, by);
+    }
+}
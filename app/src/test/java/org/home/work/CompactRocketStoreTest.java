@@ -0,0 +1,209 @@
+package org.home.work;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.work.messages.MessageController;
+import org.home.work.messages.MessageType;
+import org.home.work.messages.RocketEvent;
+import org.home.work.rockets.ProcessResult;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.RocketFilter;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.RocketSnapshot;
+import org.home.work.rockets.SortKey;
+import org.home.work.rockets.StorageEngine;
+import org.home.work.rockets.StoreConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.home.work.Fixture.changeSpeed;
+import static org.home.work.Fixture.launch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactRocketStoreTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_789, ZoneOffset.UTC);
+
+    private static RocketRepository repository(StorageEngine engine, ReorderConfig reorderConfig) {
+        var storeConfig = new StoreConfig();
+        storeConfig.setEngine(engine);
+        return new RocketRepository(reorderConfig, storeConfig, new SimpleMeterRegistry(), Optional.empty());
+    }
+
+    private static RocketRepository compact() {
+        return repository(StorageEngine.COMPACT, new ReorderConfig());
+    }
+
+    @Test
+    void sameResultsAsObjectRockets() {
+        var objects = repository(StorageEngine.OBJECTS, new ReorderConfig());
+        var compact = compact();
+
+        var messages = randomStream(new Random(7), 300, 12);
+        for (var telemetry : messages) {
+            var expected = objects.processTelemetry(telemetry).getSnapshot();
+            compact.processTelemetry(telemetry);
+            assertEquals(expected, compact.rocketById(telemetry.metadata().channel()).orElseThrow());
+        }
+
+        assertEquals(sorted(objects.rocketsBy(rocket -> true)), sorted(compact.rocketsBy(rocket -> true)));
+        assertEquals(objects.rocketTypes(), compact.rocketTypes());
+        assertEquals(objects.stats(), compact.stats());
+        for (var sortKey : SortKey.values()) {
+            assertEquals(
+                objects.rocketPage(RocketFilter.ALL, sortKey, true, null, 0).rockets(),
+                compact.rocketPage(RocketFilter.ALL, sortKey, true, null, 0).rockets());
+        }
+
+        var filter = new RocketFilter(Optional.of("falcon-9"), Optional.empty(), Optional.of("ARTEMIS"));
+        assertEquals(sorted(objects.rocketsBy(filter)), sorted(compact.rocketsBy(filter)));
+    }
+
+    @Test
+    void rocketKeepsBufferOnlyWhileWaiting() {
+        var repository = compact();
+        var channel = UUID.randomUUID().toString();
+
+        assertNull(repository.processTelemetry(launch(channel, 500)));
+        var waiting = repository.processTelemetry(changeSpeed(3, channel, 100));
+        assertNotNull(waiting);
+        assertEquals(1, waiting.queuedMessages());
+
+        var results = repository.processTelemetry(channel, List.of(changeSpeed(2, channel, 100)));
+        assertEquals(List.of(ProcessResult.APPLIED), results);
+        assertNull(repository.getRocketBuffer(changeSpeed(4, channel, 0)));
+        assertEquals(700, repository.rocketById(channel).orElseThrow().speed());
+        assertEquals(3, repository.rocketById(channel).orElseThrow().lastMessageNumber());
+    }
+
+    @Test
+    void gapExpiresWhileRocketIsCompact() throws InterruptedException {
+        var config = new ReorderConfig();
+        config.setMaxGapAge(Duration.ofMillis(1));
+        var repository = repository(StorageEngine.COMPACT, config);
+
+        repository.processTelemetry(launch("not-a-uuid", 500));
+        repository.processTelemetry(changeSpeed(3, "not-a-uuid", 100));
+        Thread.sleep(5);
+        repository.expireGaps();
+
+        var rocket = repository.rocketById("not-a-uuid").orElseThrow();
+        assertEquals(3, rocket.lastMessageNumber());
+        assertEquals(600, rocket.speed());
+        assertNull(repository.getRocketBuffer(launch("not-a-uuid", 0)));
+    }
+
+    @Test
+    void statesMoveBetweenEngines() {
+        var objects = repository(StorageEngine.OBJECTS, new ReorderConfig());
+        for (var telemetry : randomStream(new Random(11), 50, 8)) {
+            objects.processTelemetry(telemetry);
+        }
+        objects.processTelemetry(telemetry("waiting", 1, START, MessageType.LAUNCHED, new RocketEvent.Launched("Falcon-9", 100, "ARTEMIS")));
+        objects.processTelemetry(telemetry("waiting", 5, START, MessageType.SPEED_INCREASED, new RocketEvent.SpeedChanged(1)));
+
+        var compact = compact();
+        objects.states().forEach(compact::restore);
+
+        assertEquals(sorted(objects.rocketsBy(rocket -> true)), sorted(compact.rocketsBy(rocket -> true)));
+        assertEquals(objects.states(), compact.states());
+    }
+
+    @Test
+    void concurrentWritersAndReaders() throws Exception {
+        var repository = compact();
+        var channels = new ArrayList<String>();
+        for (int i = 0; i < 10_000; i++) {
+            channels.add(UUID.randomUUID().toString());
+        }
+
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            var reader = executor.submit(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (var rocket : repository.rocketsBy(rocket -> true)) {
+                        // a rocket is never seen halfway through an update: speed always matches its message count
+                        assertTrue(rocket.lastMessageNumber() == 0 || rocket.speed() == 100 + (rocket.lastMessageNumber() - 1) * 10);
+                    }
+                }
+            });
+            for (int t = 0; t < 3; t++) {
+                var part = channels.subList(t * channels.size() / 3, (t + 1) * channels.size() / 3);
+                executor.submit(() -> {
+                    for (var channel : part) {
+                        repository.processTelemetry(launch(channel, 100));
+                        for (int n = 2; n <= 5; n++) {
+                            repository.processTelemetry(changeSpeed(n, channel, 10));
+                        }
+                    }
+                });
+            }
+            reader.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(channels.size(), repository.rocketsBy(RocketFilter.ALL).size());
+        for (var channel : channels) {
+            assertEquals(140, repository.rocketById(channel).orElseThrow().speed());
+        }
+    }
+
+    /**
+     * Every message of the rockets, some sent twice, in a shuffled order
+     */
+    private static List<MessageController.RocketTelemetry> randomStream(Random random, int rockets, int messagesPerRocket) {
+        var types = List.of("Falcon-9", "Titan-IV", "Juno-I");
+        var missions = List.of("ARTEMIS", "VOYAGER", "APOLLO");
+        var messages = new ArrayList<MessageController.RocketTelemetry>();
+        for (int r = 0; r < rockets; r++) {
+            var channel = r % 10 == 0 ? "channel-" + r : new UUID(random.nextLong(), random.nextLong()).toString();
+            var time = START.plusSeconds(r);
+            messages.add(telemetry(channel, 1, time, MessageType.LAUNCHED,
+                new RocketEvent.Launched(types.get(random.nextInt(types.size())), 100 + random.nextInt(1000), missions.get(random.nextInt(missions.size())))));
+            for (int n = 2; n <= messagesPerRocket; n++) {
+                var at = time.plusNanos(n * 1_001L);
+                RocketEvent event;
+                MessageType type;
+                var pick = random.nextInt(10);
+                if (n == messagesPerRocket && pick < 3) {
+                    type = MessageType.EXPLODED;
+                    event = new RocketEvent.Exploded("PRESSURE");
+                } else if (pick < 2) {
+                    type = MessageType.MISSION_CHANGED;
+                    event = new RocketEvent.MissionChanged(missions.get(random.nextInt(missions.size())));
+                } else {
+                    type = MessageType.SPEED_INCREASED;
+                    event = new RocketEvent.SpeedChanged(random.nextInt(100));
+                }
+                messages.add(telemetry(channel, n, at, type, event));
+                if (random.nextInt(10) == 0) {
+                    messages.add(telemetry(channel, n, at, type, event));
+                }
+            }
+        }
+        Collections.shuffle(messages, random);
+        return messages;
+    }
+
+    private static MessageController.RocketTelemetry telemetry(String channel, int messageNumber, ZonedDateTime time, MessageType type, RocketEvent event) {
+        return new MessageController.RocketTelemetry(new MessageController.Metadata(channel, messageNumber, type, time), event);
+    }
+
+    private static List<RocketSnapshot> sorted(List<RocketSnapshot> rockets) {
+        var sorted = new ArrayList<>(rockets);
+        sorted.sort(Comparator.comparing(RocketSnapshot::id, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(RocketSnapshot::lastMessageNumber));
+        return sorted;
+    }
+}
@@ -24,4 +24,18 @@ public class Fixture {
             )
         );
     }
+
+    public static MessageController.RocketTelemetry explode(int messageNo, String channel, String reason) {
+        return new MessageController.RocketTelemetry(
+            new MessageController.Metadata(channel, messageNo, "RocketExploded", ZonedDateTime.now()),
+            Map.of("reason", reason)
+        );
+    }
+
+    public static MessageController.RocketTelemetry changeMission(int messageNo, String channel, String mission) {
+        return new MessageController.RocketTelemetry(
+            new MessageController.Metadata(channel, messageNo, "RocketMissionChanged", ZonedDateTime.now()),
+            Map.of("newMission", mission)
+        );
+    }
 }
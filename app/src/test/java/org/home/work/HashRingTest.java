@@ -0,0 +1,49 @@
+package org.home.work;
+
+import org.home.work.cluster.HashRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+    private static final List<String> NODES = List.of("http://a:8088", "http://b:8088", "http://c:8088", "http://d:8088");
+
+    @Test
+    void channelsSpreadEvenlyAndStayPut() {
+        var ring = new HashRing(NODES, 128);
+        var sameNodesOtherOrder = new HashRing(NODES.reversed(), 128);
+        var counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 100_000; i++) {
+            var channel = UUID.randomUUID().toString();
+            var owner = ring.owner(channel);
+            assertEquals(owner, sameNodesOtherOrder.owner(channel));
+            counts.merge(owner, 1, Integer::sum);
+        }
+
+        assertEquals(NODES.size(), counts.size());
+        // 25% each, within a few percent
+        counts.values().forEach(count -> assertTrue(count > 20_000 && count < 30_000, counts::toString));
+    }
+
+    @Test
+    void addingNodeMovesOnlyItsShare() {
+        var ring = new HashRing(NODES.subList(0, 3), 128);
+        var grown = new HashRing(NODES, 128);
+        var moved = 0;
+        for (int i = 0; i < 100_000; i++) {
+            var channel = "channel-" + i;
+            var before = ring.owner(channel);
+            var after = grown.owner(channel);
+            if (!before.equals(after)) {
+                assertEquals(NODES.getLast(), after); // only to the new node
+                moved++;
+            }
+        }
+        assertTrue(moved > 20_000 && moved < 30_000, "moved " + moved);
+    }
+}
@@ -0,0 +1,118 @@
+package org.home.work;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.work.messages.MessageController;
+import org.home.work.pipeline.IngestPipeline;
+import org.home.work.pipeline.PipelineConfig;
+import org.home.work.rockets.ProcessResult;
+import org.home.work.rockets.RocketRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.home.work.Fixture.changeSpeed;
+import static org.home.work.Fixture.launch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestPipelineTest {
+
+    private static PipelineConfig config(int shards, int queueCapacity) {
+        var config = new PipelineConfig();
+        config.setEnabled(true);
+        config.setShards(shards);
+        config.setQueueCapacity(queueCapacity);
+        return config;
+    }
+
+    @Test
+    void disabledPipelineHasNoWorkers() {
+        var pipeline = new IngestPipeline(new PipelineConfig(), new RocketRepository(), new SimpleMeterRegistry());
+        assertFalse(pipeline.isEnabled());
+    }
+
+    @Test
+    void messagesOfManyChannelsAreAppliedInOrder() throws Exception {
+        var repository = new RocketRepository();
+        var pipeline = new IngestPipeline(config(4, 1024), repository, new SimpleMeterRegistry());
+
+        var producers = new ArrayList<Thread>();
+        for (int c = 0; c < 8; c++) {
+            var channel = "channel-" + c;
+            producers.add(Thread.ofPlatform().start(() -> {
+                submit(pipeline, launch(channel, 100));
+                for (int i = 2; i <= 200; i++) {
+                    submit(pipeline, changeSpeed(i, channel, 1));
+                }
+            }));
+        }
+        for (var producer : producers) {
+            producer.join();
+        }
+        pipeline.close();
+
+        for (int c = 0; c < 8; c++) {
+            var rocket = repository.rocketById("channel-" + c).orElseThrow();
+            assertEquals(299, rocket.speed());
+            assertEquals(200, rocket.lastMessageNumber());
+        }
+    }
+
+    @Test
+    void batchResultsAreReturnedOnceProcessed() {
+        var pipeline = new IngestPipeline(config(2, 16), new RocketRepository(), new SimpleMeterRegistry());
+
+        var results = pipeline.submit("abc", List.of(launch("abc", 100), changeSpeed(3, "abc", 5), changeSpeed(5, "abc", 5)));
+        assertNotNull(results);
+        assertEquals(List.of(ProcessResult.APPLIED, ProcessResult.BUFFERED, ProcessResult.BUFFERED), results.join());
+        pipeline.close();
+    }
+
+    @Test
+    void fullQueueTurnsMessagesAway() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var repository = new RocketRepository() {
+            @Override
+            public List<ProcessResult> processTelemetry(String channel, List<MessageController.RocketTelemetry> telemetryList) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.processTelemetry(channel, telemetryList);
+            }
+        };
+        var pipeline = new IngestPipeline(config(1, 2), repository, new SimpleMeterRegistry());
+
+        // the worker holds the first one, two more fill the queue
+        assertTrue(pipeline.submit(launch("abc", 100)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(changeSpeed(2, "abc", 1)));
+        CompletableFuture<List<ProcessResult>> queued = pipeline.submit("abc", List.of(changeSpeed(3, "abc", 1)));
+        assertNotNull(queued);
+
+        assertFalse(pipeline.submit(changeSpeed(4, "abc", 1)));
+        assertNull(pipeline.submit("abc", List.of(changeSpeed(4, "abc", 1))));
+
+        release.countDown();
+        assertEquals(List.of(ProcessResult.APPLIED), queued.get(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(changeSpeed(4, "abc", 1)));
+        pipeline.close();
+        assertEquals(103, repository.rocketById("abc").orElseThrow().speed());
+    }
+
+    private static void submit(IngestPipeline pipeline, MessageController.RocketTelemetry telemetry) {
+        while (!pipeline.submit(telemetry)) {
+            Thread.onSpinWait();
+        }
+    }
+}
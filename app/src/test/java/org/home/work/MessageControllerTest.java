@@ -9,10 +9,24 @@ import io.micronaut.http.client.BlockingHttpClient;
 import io.micronaut.http.client.HttpClient;
 import io.micronaut.http.client.exceptions.HttpClientResponseException;
 import io.micronaut.runtime.server.EmbeddedServer;
+import org.home.work.feed.RocketDelta;
+import org.home.work.journal.TelemetryJournal;
+import org.home.work.messages.BinaryTelemetry;
+import org.home.work.messages.MessageController;
+import org.home.work.rockets.ProcessResult;
 import org.home.work.rockets.Rocket;
+import org.home.work.rockets.RocketController;
+import org.home.work.rockets.RocketRepository;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,6 +83,75 @@ public class MessageControllerTest {
         assertEquals(1, rocketList.size());
     }
 
+    @Test
+    void pipelineAcceptsMessageAndAppliesItLater() throws InterruptedException {
+        try (var pipelineServer = ApplicationContext.run(EmbeddedServer.class, Map.of("rockets.pipeline.enabled", true));
+             var pipelineClient = pipelineServer.getApplicationContext().createBean(HttpClient.class, pipelineServer.getURL())) {
+            var blocking = pipelineClient.toBlocking();
+
+            var responsePost = blocking.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+            assertEquals(202, responsePost.code());
+
+            List<Rocket> rocketList = List.of();
+            for (int i = 0; i < 50 && rocketList.isEmpty(); i++) {
+                Thread.sleep(20);
+                rocketList = readResponse(blocking.exchange("/rockets"));
+            }
+            assertEquals(1, rocketList.size());
+        }
+    }
+
+    @Test
+    void streamSendsChangesOfFilteredRockets() throws Exception {
+        var feed = server.getApplicationContext().getBean(RocketRepository.class).feed();
+        try (var sseClient = java.net.http.HttpClient.newHttpClient()) {
+            var request = java.net.http.HttpRequest.newBuilder(server.getURI().resolve("/rockets/stream?type=falcon-9")).build();
+            var response = sseClient.sendAsync(request, java.net.http.HttpResponse.BodyHandlers.ofLines());
+            for (int i = 0; i < 100 && feed.subscribers() == 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, feed.subscribers());
+
+            client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("titan1", 300, "APOLLO", "Titan-IV")));
+            client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+
+            try (var lines = response.get(10, TimeUnit.SECONDS).body()) {
+                var data = lines.filter(line -> line.startsWith("data:")).findFirst().orElseThrow();
+                var delta = App.objectMapper.readValue(data.substring("data:".length()), RocketDelta.class);
+                assertEquals("abc123", delta.id());
+                assertEquals(500, delta.speed());
+                assertEquals("Falcon-9", delta.type());
+            }
+        }
+    }
+
+    @Test
+    void unchangedRocketsAreNotModified() {
+        client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+
+        var list = client.exchange("/rockets?sortBy=speed&orderBy=desc", String.class);
+        var listTag = list.header("ETag");
+        assertNotNull(listTag);
+        var notModified = client.exchange(HttpRequest.GET("/rockets?sortBy=speed&orderBy=desc").header("If-None-Match", listTag));
+        assertEquals(304, notModified.code());
+        var cached = client.exchange(HttpRequest.GET("/rockets?sortBy=speed&orderBy=desc"), String.class);
+        assertEquals(list.body(), cached.body());
+
+        var rocket = client.exchange("/rockets/abc123", String.class);
+        var rocketTag = rocket.header("ETag");
+        assertEquals(304, client.exchange(HttpRequest.GET("/rockets/abc123").header("If-None-Match", "\"other\", " + rocketTag)).code());
+
+        client.exchange(HttpRequest.POST("/messages", speedIncreaseMessage("abc123", 2, 100)));
+
+        var changedList = client.exchange(HttpRequest.GET("/rockets?sortBy=speed&orderBy=desc").header("If-None-Match", listTag), String.class);
+        assertEquals(200, changedList.code());
+        assertNotEquals(listTag, changedList.header("ETag"));
+        assertTrue(changedList.body().contains("600"));
+        var changedRocket = client.exchange(HttpRequest.GET("/rockets/abc123").header("If-None-Match", rocketTag), String.class);
+        assertEquals(200, changedRocket.code());
+        assertNotEquals(rocketTag, changedRocket.header("ETag"));
+    }
+
     @Test
     void explodedRocketStatusChanged() {
         var post = HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9"));
@@ -151,6 +234,208 @@ public class MessageControllerTest {
         assertEquals(1, readResponse(client.exchange("/rockets?type=Juno-I")).size());
     }
 
+    @Test
+    void pagesFollowCursor() {
+        for (int i = 1; i <= 5; i++) {
+            client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc" + i, i * 100, "ARTEMIS", "Falcon-9")));
+        }
+
+        var speeds = new ArrayList<Integer>();
+        var pages = 0;
+        String cursor = null;
+        do {
+            var response = client.exchange("/rockets?sortBy=speed&orderBy=desc&limit=2" + (cursor == null ? "" : "&cursor=" + cursor), String.class);
+            readResponse(response).forEach(rocket -> speeds.add(rocket.getSpeed()));
+            cursor = response.header(RocketController.NEXT_CURSOR);
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(List.of(500, 400, 300, 200, 100), speeds);
+    }
+
+    @Test
+    void sortByEndTimeWithRocketsStillFlying() {
+        client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+        client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc456", 500, "ARTEMIS", "Falcon-9")));
+        client.exchange(HttpRequest.POST("/messages", """
+            {
+                "metadata": {"channel": "abc456", "messageNumber": 2, "messageTime": "2022-02-03T19:39:05.86337+01:00", "messageType": "RocketExploded"},
+                "message": {"reason": "PRESSURE_VESSEL_FAILURE"}
+            }
+            """));
+
+        var rocketList = readResponse(client.exchange("/rockets?sortBy=endTime"));
+        assertEquals("abc456", rocketList.getFirst().getId());
+        assertNull(rocketList.getLast().getMissionEndTime());
+    }
+
+    @Test
+    void invalidCursorReturnsBadRequest() {
+        var exception = assertThrowsExactly(HttpClientResponseException.class, () -> client.exchange("/rockets?limit=2&cursor=nonsense"));
+        assertEquals(400, exception.code());
+    }
+
+    @Test
+    void batchJsonArrayApplied() {
+        var batch = "[%s, %s, %s]".formatted(
+            rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9"),
+            speedIncreaseMessage("abc123", 3, 200),
+            speedIncreaseMessage("abc123", 2, 100)
+        );
+
+        var response = client.exchange(HttpRequest.POST("/messages/batch", batch), MessageController.BatchSummary.class);
+        assertEquals(200, response.code());
+
+        var summary = response.body();
+        assertEquals(3, summary.applied());
+        assertEquals(0, summary.buffered());
+        assertEquals(ProcessResult.APPLIED, summary.records().get(2).result());
+
+        var rocket = readResponse(client.exchange("/rockets")).getFirst();
+        assertEquals(800, rocket.getSpeed());
+        assertEquals(3, rocket.getLastMessageNumber());
+    }
+
+    @Test
+    void batchReportsWhyPipelineFailed(@TempDir Path directory) {
+        try (var pipelineServer = ApplicationContext.run(EmbeddedServer.class, Map.of(
+                "rockets.pipeline.enabled", true, "rockets.journal.enabled", true, "rockets.journal.directory", directory.toString()));
+             var pipelineClient = pipelineServer.getApplicationContext().createBean(HttpClient.class, pipelineServer.getURL())) {
+            pipelineServer.getApplicationContext().getBean(TelemetryJournal.class).close();
+
+            var batch = "[%s]".formatted(rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9"));
+            var summary = pipelineClient.toBlocking().exchange(HttpRequest.POST("/messages/batch", batch), MessageController.BatchSummary.class).body();
+
+            assertEquals(1, summary.rejected());
+            assertTrue(summary.records().getFirst().error().contains("Journal is closed"), summary.records().getFirst().error());
+        }
+    }
+
+    @Test
+    void batchNdJsonReportsEveryRecord() {
+        var batch = String.join("\n",
+            rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9").replace("\n", ""),
+            speedIncreaseMessage("abc123", 4, 200).replace("\n", ""),
+            "{not json",
+            rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9").replace("\n", "")
+        );
+
+        var request = HttpRequest.POST("/messages/batch", batch).contentType(MessageController.APPLICATION_NDJSON);
+        var summary = client.exchange(request, MessageController.BatchSummary.class).body();
+
+        assertEquals(1, summary.applied());
+        assertEquals(1, summary.buffered());
+        assertEquals(1, summary.rejected());
+        assertEquals(1, summary.duplicate());
+        assertEquals(ProcessResult.BUFFERED, summary.records().get(1).result());
+        assertEquals(ProcessResult.REJECTED, summary.records().get(2).result());
+        assertNotNull(summary.records().get(2).error());
+    }
+
+    @Test
+    void malformedBatchArrayReturnsBadRequest() {
+        var post = HttpRequest.POST("/messages/batch", "[%s".formatted(rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+
+        var exception = assertThrowsExactly(HttpClientResponseException.class, () -> client.exchange(post));
+        assertEquals(400, exception.code());
+    }
+
+    @Test
+    void binaryMessagesApplied() {
+        var channel = "193270a9-c9cf-404a-8f83-838e71d9ae67";
+        var launch = HttpRequest.POST("/messages", BinaryTelemetry.encode(Fixture.launch(channel, 500)))
+            .contentType(BinaryTelemetry.CONTENT_TYPE);
+        assertEquals(200, client.exchange(launch).code());
+
+        var batch = BinaryTelemetry.encodeBatch(List.of(Fixture.changeSpeed(3, channel, -100), Fixture.changeSpeed(2, channel, 300)));
+        var request = HttpRequest.POST("/messages/batch", batch).contentType(BinaryTelemetry.CONTENT_TYPE);
+        var summary = client.exchange(request, MessageController.BatchSummary.class).body();
+        assertEquals(2, summary.applied());
+
+        var rocket = readResponse(client.exchange("/rockets")).getFirst();
+        assertEquals(channel, rocket.getId());
+        assertEquals(700, rocket.getSpeed());
+        assertEquals(3, rocket.getLastMessageNumber());
+
+        var cutShort = HttpRequest.POST("/messages", new byte[10]).contentType(BinaryTelemetry.CONTENT_TYPE);
+        var exception = assertThrowsExactly(HttpClientResponseException.class, () -> client.exchange(cutShort));
+        assertEquals(400, exception.code());
+    }
+
+    @Test
+    void speedHistoryReturned() {
+        client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+        client.exchange(HttpRequest.POST("/messages", speedIncreaseMessage("abc123", 2, 100)));
+        client.exchange(HttpRequest.POST("/messages", speedIncreaseMessage("abc123", 3, 200)));
+
+        var response = client.exchange("/rockets/abc123/history?field=speed");
+        List<Map<String, Object>> points = readResponse(response, new TypeReference<>() {});
+        assertEquals(List.of(500, 600, 800), points.stream().map(point -> point.get("speed")).toList());
+
+        var from = URLEncoder.encode("2022-02-02T19:40:00+01:00", StandardCharsets.UTF_8);
+        response = client.exchange("/rockets/abc123/history?from=" + from);
+        points = readResponse(response, new TypeReference<>() {});
+        assertEquals(List.of(2, 3), points.stream().map(point -> point.get("messageNumber")).toList());
+
+        response = client.exchange("/rockets/abc123/history?field=mission");
+        points = readResponse(response, new TypeReference<>() {});
+        assertEquals("ARTEMIS", points.getFirst().get("value"));
+
+        var badField = assertThrowsExactly(HttpClientResponseException.class, () -> client.exchange("/rockets/abc123/history?field=color"));
+        assertEquals(400, badField.code());
+        var unknownRocket = assertThrowsExactly(HttpClientResponseException.class, () -> client.exchange("/rockets/def/history"));
+        assertEquals(404, unknownRocket.code());
+    }
+
+    @Test
+    void statsReturned() {
+        client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+        client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("def456", 300, "ARTEMIS", "Saturn-V")));
+
+        var response = client.exchange("/rockets/stats", String.class);
+        assertEquals(200, response.code());
+        var body = response.body();
+        assertTrue(body.contains("\"averageSpeed\":400.0"), body);
+        assertTrue(body.contains("\"Saturn-V\""), body);
+    }
+
+    @Test
+    void metricsCountMessagesByResult() {
+        client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+        client.exchange(HttpRequest.POST("/messages", rocketLaunchMessage("abc123", 500, "ARTEMIS", "Falcon-9")));
+        client.exchange(HttpRequest.POST("/messages", speedIncreaseMessage("abc123", 3, 100)));
+        assertThrowsExactly(HttpClientResponseException.class, () -> client.exchange(HttpRequest.POST("/messages", "{")));
+
+        var response = client.exchange("/metrics", String.class);
+        assertEquals(200, response.code());
+        assertTrue(response.getContentType().orElseThrow().toString().startsWith("text/plain"));
+        var body = response.body();
+        assertTrue(body.contains("rockets_messages_total{result=\"applied\"} 1.0"), body);
+        assertTrue(body.contains("rockets_messages_total{result=\"duplicate\"} 1.0"), body);
+        assertTrue(body.contains("rockets_messages_total{result=\"buffered\"} 1.0"), body);
+        assertTrue(body.contains("rockets_messages_unreadable_total 1.0"), body);
+        assertTrue(body.contains("rockets_reorder_queue_depth 1.0"), body);
+        assertTrue(body.contains("rockets_messages_parse_seconds_count{format=\"json\",kind=\"single\"}"), body);
+        assertTrue(body.contains("rockets_buffer_lock_wait_seconds_bucket"), body);
+    }
+
+    private static String speedIncreaseMessage(String id, int messageNumber, int by) {
+        return """
+            {
+                "metadata": {
+                    "channel": "%s",
+                    "messageNumber": %s,
+                    "messageTime": "2022-02-02T19:40:05.86337+01:00",
+                    "messageType": "RocketSpeedIncreased"
+                },
+                "message": {
+                    "by": %s
+                }
+            }
+            """.formatted(id, messageNumber, by);
+    }
+
     private static String rocketLaunchMessage(String id, int speed, String mission, String type) {
         return """
             {
@@ -1,8 +1,15 @@
 package org.home.work;
 
+import org.home.work.messages.MessageController;
 import org.home.work.messages.MessageType;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.ReorderStats;
+import org.home.work.rockets.RocketBuffer;
 import org.junit.jupiter.api.Test;
 
+import java.time.ZonedDateTime;
+import java.util.Map;
+
 import static org.home.work.messages.MessageType.UNKNOWN;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -13,4 +20,44 @@ class MessageTypeTest {
         var messageType = MessageType.ofStr("Abracadabra");
         assertEquals(UNKNOWN, messageType);
     }
-}
\ No newline at end of file
+
+    @Test
+    void typeNamesIgnoreCase() {
+        assertEquals(MessageType.SPEED_INCREASED, MessageType.ofStr("RocketSpeedIncreased"));
+        assertEquals(MessageType.SPEED_INCREASED, MessageType.ofStr("rocketspeedincreased"));
+        assertEquals(MessageType.MISSION_CHANGED, MessageType.ofStr("ROCKETMISSIONCHANGED"));
+        assertEquals(UNKNOWN, MessageType.ofStr(null));
+        assertEquals(UNKNOWN, MessageType.ofStr("RocketSpeedIncrease"));
+    }
+
+    @Test
+    void typeNamesFromCharacters() {
+        var text = "xxRocketExplodedxx".toCharArray();
+        assertEquals(MessageType.EXPLODED, MessageType.of(text, 2, "RocketExploded".length()));
+        assertEquals(UNKNOWN, MessageType.of(text, 0, text.length));
+    }
+
+    @Test
+    void everyTypeHasItsCode() {
+        for (var type : MessageType.values()) {
+            assertEquals(type, MessageType.ofCode(type.code()));
+        }
+        assertEquals(UNKNOWN, MessageType.ofCode((byte) -1));
+        assertEquals(UNKNOWN, MessageType.ofCode((byte) 99));
+    }
+
+    @Test
+    void unknownMessageIsCountedAndIgnored() {
+        var stats = new ReorderStats();
+        var buffer = new RocketBuffer(new ReorderConfig(), stats);
+        buffer.processTelemetry(Fixture.launch("abc", 100));
+        var before = buffer.getSnapshot();
+
+        var unknown = new MessageController.RocketTelemetry(
+            new MessageController.Metadata("abc", 2, "RocketRefueled", ZonedDateTime.now()), Map.of("fuel", "100"));
+        buffer.processTelemetry(unknown);
+
+        assertEquals(before, buffer.getSnapshot());
+        assertEquals(1, stats.getUnknownMessages().sum());
+    }
+}
@@ -1,14 +1,31 @@
 package org.home.work;
 
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import org.home.work.messages.MessageController;
+import org.home.work.rockets.EventSummary;
+import org.home.work.rockets.GapPolicy;
+import org.home.work.rockets.ProcessResult;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.ReorderStats;
 import org.home.work.rockets.RocketBuffer;
+import org.home.work.rockets.RocketListener;
+import org.home.work.rockets.RocketSnapshot;
+import org.home.work.rockets.Sequencer;
 import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.home.work.Fixture.changeSpeed;
 import static org.home.work.Fixture.launch;
@@ -68,6 +85,184 @@ class RocketBufferTest {
         assertEquals(500, rocket.getSpeed()); // 500+3000+2000 -5000 = 500
     }
 
+    @Test
+    void batchReportsResultPerMessage() {
+        var buffer = new RocketBuffer();
+        var results = buffer.processTelemetry(List.of(
+            launch("123abc", 500),
+            changeSpeed(3, "123abc", 100),
+            changeSpeed(2, "123abc", 200),
+            changeSpeed(2, "123abc", 200)
+        ));
+
+        assertEquals(List.of(ProcessResult.APPLIED, ProcessResult.BUFFERED, ProcessResult.APPLIED, ProcessResult.DUPLICATE), results);
+        assertEquals(3, buffer.getRocket().getLastMessageNumber());
+        assertEquals(800, buffer.getRocket().getSpeed());
+    }
+
+    @Test
+    void queueDepthLimitSkipsGap() {
+        var stats = new ReorderStats();
+        var buffer = new RocketBuffer(reorderConfig(2, Duration.ofMinutes(1), GapPolicy.SKIP_GAP), stats);
+        buffer.processTelemetry(launch("123abc", 500));
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+        buffer.processTelemetry(changeSpeed(4, "123abc", 100));
+        assertEquals(1, buffer.getRocket().getLastMessageNumber());
+
+        // third queued message is one too many, #2 is given up on
+        var result = buffer.processTelemetry(changeSpeed(5, "123abc", 100));
+
+        var rocket = buffer.getRocket();
+        assertEquals(ProcessResult.APPLIED, result);
+        assertEquals(5, rocket.getLastMessageNumber());
+        assertEquals(800, rocket.getSpeed());
+        assertFalse(rocket.isDegraded());
+        assertEquals(0, buffer.queuedMessages());
+        assertEquals(1, stats.getGapsSkipped().sum());
+        assertEquals(1, stats.getMessagesSkipped().sum());
+
+        // the skipped message is too late now
+        assertEquals(ProcessResult.DUPLICATE, buffer.processTelemetry(changeSpeed(2, "123abc", 100)));
+    }
+
+    @Test
+    void expiredGapDegradesRocket() {
+        var buffer = new RocketBuffer(reorderConfig(100, Duration.ZERO, GapPolicy.DEGRADE), new ReorderStats());
+        buffer.processTelemetry(launch("123abc", 500));
+        buffer.processTelemetry(changeSpeed(4, "123abc", 100));
+        buffer.expireGap();
+
+        var rocket = buffer.getRocket();
+        assertEquals(4, rocket.getLastMessageNumber());
+        assertEquals(600, rocket.getSpeed());
+        assertTrue(rocket.isDegraded());
+        assertFalse(buffer.expireGap()); // nothing left to skip
+    }
+
+    @Test
+    void dropOldestKeepsWaitingForMissingMessage() {
+        var stats = new ReorderStats();
+        var buffer = new RocketBuffer(reorderConfig(2, Duration.ofMinutes(1), GapPolicy.DROP_OLDEST), stats);
+        buffer.processTelemetry(launch("123abc", 500));
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+        buffer.processTelemetry(changeSpeed(4, "123abc", 100));
+        buffer.processTelemetry(changeSpeed(5, "123abc", 100)); // #3 waited the longest, dropped
+
+        assertEquals(2, buffer.queuedMessages());
+        assertEquals(1, stats.getMessagesDropped().sum());
+
+        buffer.processTelemetry(changeSpeed(2, "123abc", 100));
+        assertEquals(2, buffer.getRocket().getLastMessageNumber());
+
+        // redelivered
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+        assertEquals(5, buffer.getRocket().getLastMessageNumber());
+        assertEquals(900, buffer.getRocket().getSpeed());
+    }
+
+    @Test
+    void dropOldestSkipsMessagesAppliedSince() {
+        var stats = new ReorderStats();
+        var buffer = new RocketBuffer(reorderConfig(2, Duration.ofMinutes(1), GapPolicy.DROP_OLDEST), stats);
+        buffer.processTelemetry(launch("123abc", 500));
+        buffer.processTelemetry(changeSpeed(5, "123abc", 100));
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+        buffer.processTelemetry(changeSpeed(2, "123abc", 100)); // #3 applied, #5 still waits for #4
+
+        buffer.processTelemetry(changeSpeed(7, "123abc", 100));
+        buffer.processTelemetry(changeSpeed(8, "123abc", 100)); // #5 arrived first, dropped
+        assertEquals(1, stats.getMessagesDropped().sum());
+        buffer.processTelemetry(changeSpeed(9, "123abc", 100)); // then #7, #3 is not queued anymore
+        assertEquals(2, stats.getMessagesDropped().sum());
+        assertEquals(2, buffer.queuedMessages());
+
+        for (var messageNumber : List.of(4, 5, 6, 7)) {
+            buffer.processTelemetry(changeSpeed(messageNumber, "123abc", 100));
+        }
+        assertEquals(9, buffer.getRocket().getLastMessageNumber());
+        assertEquals(0, buffer.queuedMessages());
+    }
+
+    @Test
+    void queuedDuplicateNotLeftBehind() {
+        var buffer = new RocketBuffer();
+        buffer.processTelemetry(launch("123abc", 500));
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+        buffer.processTelemetry(changeSpeed(2, "123abc", 100));
+
+        assertEquals(3, buffer.getRocket().getLastMessageNumber());
+        assertEquals(700, buffer.getRocket().getSpeed());
+        assertEquals(0, buffer.queuedMessages());
+    }
+
+    @Test
+    void copyOfQueuedMessageIsDuplicate() {
+        var buffer = new RocketBuffer();
+        buffer.processTelemetry(launch("123abc", 500));
+        assertEquals(ProcessResult.BUFFERED, buffer.processTelemetry(changeSpeed(3, "123abc", 100)));
+        assertEquals(ProcessResult.BUFFERED, buffer.processTelemetry(changeSpeed(200, "123abc", 100)));
+        assertEquals(ProcessResult.DUPLICATE, buffer.processTelemetry(changeSpeed(3, "123abc", 100)));
+        assertEquals(ProcessResult.DUPLICATE, buffer.processTelemetry(changeSpeed(200, "123abc", 100)));
+        assertEquals(2, buffer.queuedMessages());
+
+        buffer.processTelemetry(changeSpeed(2, "123abc", 100));
+        assertEquals(ProcessResult.BUFFERED, buffer.processTelemetry(changeSpeed(199, "123abc", 100)));
+        assertEquals(ProcessResult.DUPLICATE, buffer.processTelemetry(changeSpeed(200, "123abc", 100)));
+        assertEquals(2, buffer.queuedMessages());
+    }
+
+    @Test
+    void repeatedWarningsCollapseIntoSummary() {
+        var logger = (Logger) LoggerFactory.getLogger(EventSummary.class);
+        var appender = new ListAppender<ILoggingEvent>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            for (var config : List.of(new ReorderConfig(), ringConfig(64, 1000, GapPolicy.SKIP_GAP))) {
+                appender.list.clear();
+                var stats = new ReorderStats();
+                var buffer = new RocketBuffer(config, stats);
+                buffer.processTelemetry(launch("123abc", 500));
+                for (int i = 0; i < 1000; i++) {
+                    buffer.processTelemetry(launch("123abc", 500));
+                }
+                new RocketBuffer(config, stats).processTelemetry(launch("quiet", 500));
+
+                stats.getEvents().report(10);
+                assertEquals(List.of(
+                    "2 rocket(s) since the last summary: 1000 duplicate(s), 2 launched",
+                    "Rocket 123abc: 1000 duplicate(s)"
+                ), appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList());
+
+                appender.list.clear();
+                stats.getEvents().report(10);
+                assertTrue(appender.list.isEmpty());
+            }
+        } finally {
+            logger.detachAppender(appender);
+        }
+    }
+
+    @Test
+    void messageNumbersWrapAround() {
+        for (var config : List.of(new ReorderConfig(), ringConfig(64, 1000, GapPolicy.SKIP_GAP))) {
+            var buffer = new RocketBuffer(config, new ReorderStats());
+            var rocket = new RocketSnapshot("123abc", "Falcon-9", 500, "ARTEMIS", ZonedDateTime.now(), Integer.MAX_VALUE - 1, "LAUNCHED", null, false);
+            buffer.restore(new RocketBuffer.State(rocket, List.of()));
+
+            assertEquals(ProcessResult.BUFFERED, buffer.processTelemetry(changeSpeed(Integer.MIN_VALUE + 1, "123abc", 100)));
+            assertEquals(ProcessResult.BUFFERED, buffer.processTelemetry(changeSpeed(Integer.MIN_VALUE, "123abc", 100)));
+            assertEquals(ProcessResult.DUPLICATE, buffer.processTelemetry(changeSpeed(Integer.MAX_VALUE - 3, "123abc", 100)));
+            assertEquals(ProcessResult.APPLIED, buffer.processTelemetry(changeSpeed(Integer.MAX_VALUE, "123abc", 100)));
+            assertEquals(ProcessResult.DUPLICATE, buffer.processTelemetry(changeSpeed(Integer.MIN_VALUE, "123abc", 100)));
+
+            assertEquals(Integer.MIN_VALUE + 1, buffer.getSnapshot().lastMessageNumber());
+            assertEquals(800, buffer.getSnapshot().speed());
+            assertEquals(0, buffer.queuedMessages());
+        }
+    }
+
     @Test
     void explodedNotActiveAnymore() {
         var buffer = new RocketBuffer();
@@ -147,4 +342,145 @@ class RocketBufferTest {
         var rocket = buffer.getRocket();
         assertEquals(0, rocket.getSpeed());
     }
+
+    @Test
+    void ringOutOfOrderAndDuplicatesApplied() {
+        var buffer = new RocketBuffer(ringConfig(64, 1000, GapPolicy.SKIP_GAP), new ReorderStats());
+        assertEquals(ProcessResult.APPLIED, buffer.processTelemetry(launch("123abc", 500)));
+        assertEquals(ProcessResult.BUFFERED, buffer.processTelemetry(changeSpeed(3, "123abc", 100)));
+        assertEquals(ProcessResult.DUPLICATE, buffer.processTelemetry(changeSpeed(3, "123abc", 100)));
+        assertEquals(1, buffer.queuedMessages());
+
+        assertEquals(ProcessResult.APPLIED, buffer.processTelemetry(changeSpeed(2, "123abc", -200)));
+        assertEquals(ProcessResult.DUPLICATE, buffer.processTelemetry(changeSpeed(2, "123abc", -200)));
+
+        var snapshot = buffer.getSnapshot();
+        assertEquals(400, snapshot.speed());
+        assertEquals(3, snapshot.lastMessageNumber());
+        assertEquals(0, buffer.queuedMessages());
+    }
+
+    @Test
+    void ringMessageTooFarAheadSkipsGap() {
+        var stats = new ReorderStats();
+        var buffer = new RocketBuffer(ringConfig(8, 1000, GapPolicy.SKIP_GAP), stats);
+        buffer.processTelemetry(launch("123abc", 500));
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+
+        // 8 slots hold #2..#9, for #12 to fit the rocket gives up on #2 and #4
+        assertEquals(ProcessResult.BUFFERED, buffer.processTelemetry(changeSpeed(12, "123abc", 100)));
+        assertEquals(4, buffer.getSnapshot().lastMessageNumber());
+        assertEquals(600, buffer.getSnapshot().speed());
+        assertEquals(2, stats.getGapsSkipped().sum());
+        assertEquals(2, stats.getMessagesSkipped().sum());
+
+        for (int i = 5; i <= 11; i++) {
+            buffer.processTelemetry(changeSpeed(i, "123abc", 100));
+        }
+        assertEquals(12, buffer.getSnapshot().lastMessageNumber());
+        assertEquals(1400, buffer.getSnapshot().speed());
+    }
+
+    @Test
+    void ringMessageTooFarAheadDroppedWhileWaiting() {
+        var stats = new ReorderStats();
+        var buffer = new RocketBuffer(ringConfig(8, 1000, GapPolicy.DROP_OLDEST), stats);
+        buffer.processTelemetry(launch("123abc", 500));
+
+        assertEquals(ProcessResult.REJECTED, buffer.processTelemetry(changeSpeed(12, "123abc", 100)));
+        assertEquals(1, stats.getMessagesDropped().sum());
+        assertEquals(1, buffer.getSnapshot().lastMessageNumber());
+    }
+
+    @Test
+    void ringExpiredGapDegradesRocket() throws InterruptedException {
+        var config = ringConfig(64, 100, GapPolicy.DEGRADE);
+        config.setMaxGapAge(Duration.ofMillis(50));
+        var buffer = new RocketBuffer(config, new ReorderStats());
+        buffer.processTelemetry(launch("123abc", 500));
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+
+        buffer.expireGap();
+        assertEquals(1, buffer.getSnapshot().lastMessageNumber());
+
+        Thread.sleep(60);
+        buffer.expireGap();
+        assertEquals(3, buffer.getSnapshot().lastMessageNumber());
+        assertTrue(buffer.getSnapshot().degraded());
+        assertEquals(0, buffer.queuedMessages());
+    }
+
+    @Test
+    void ringConcurrentMessagesAppliedOnceInOrder() throws InterruptedException {
+        var applied = new ArrayList<Integer>();
+        RocketListener listener = (before, after, telemetry) -> {
+            if (telemetry != null) {
+                applied.add(telemetry.metadata().messageNumber());
+            }
+        };
+        var stats = new ReorderStats();
+        var buffer = new RocketBuffer(ringConfig(1024, 10_000, GapPolicy.SKIP_GAP), stats, listener);
+        buffer.processTelemetry(launch("123abc", 0));
+
+        var messages = 20_000;
+        var next = new AtomicInteger(1);
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                var random = ThreadLocalRandom.current();
+                int messageNumber;
+                while ((messageNumber = next.incrementAndGet()) <= messages + 1) {
+                    var telemetry = changeSpeed(messageNumber, "123abc", 1);
+                    buffer.processTelemetry(telemetry);
+                    if (random.nextInt(4) == 0) {
+                        buffer.processTelemetry(telemetry); // delivered twice
+                    }
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        // a thread that stalls for more than a ring of messages makes the others skip its message
+        var skipped = (int) stats.getMessagesSkipped().sum();
+        assertEquals(messages + 1, applied.size() + skipped);
+        for (int i = 1; i < applied.size(); i++) {
+            assertTrue(applied.get(i - 1) < applied.get(i), "applied out of order at " + i);
+        }
+        assertEquals(messages + 1, buffer.getSnapshot().lastMessageNumber());
+        assertEquals(messages - skipped, buffer.getSnapshot().speed());
+        assertEquals(0, buffer.queuedMessages());
+    }
+
+    @Test
+    void ringStateRestored() {
+        var config = ringConfig(64, 1000, GapPolicy.SKIP_GAP);
+        var buffer = new RocketBuffer(config, new ReorderStats());
+        buffer.processTelemetry(launch("123abc", 500));
+        buffer.processTelemetry(changeSpeed(3, "123abc", 100));
+
+        var restored = new RocketBuffer(config, new ReorderStats());
+        restored.restore(buffer.state());
+        assertEquals(1, restored.queuedMessages());
+
+        restored.processTelemetry(changeSpeed(2, "123abc", 100));
+        assertEquals(700, restored.getSnapshot().speed());
+        assertEquals(3, restored.getSnapshot().lastMessageNumber());
+    }
+
+    private static ReorderConfig ringConfig(int ringSize, int maxQueueDepth, GapPolicy gapPolicy) {
+        var config = reorderConfig(maxQueueDepth, Duration.ofMinutes(1), gapPolicy);
+        config.setSequencer(Sequencer.RING);
+        config.setRingSize(ringSize);
+        return config;
+    }
+
+    private static ReorderConfig reorderConfig(int maxQueueDepth, Duration maxGapAge, GapPolicy gapPolicy) {
+        var config = new ReorderConfig();
+        config.setMaxQueueDepth(maxQueueDepth);
+        config.setMaxGapAge(maxGapAge);
+        config.setGapPolicy(gapPolicy);
+        return config;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package org.home.work;
+
+import io.micronaut.http.sse.Event;
+import org.home.work.feed.RocketDelta;
+import org.home.work.feed.RocketFeed;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.RocketSnapshot;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.home.work.Fixture.changeSpeed;
+import static org.home.work.Fixture.launch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RocketFeedTest {
+
+    /**
+     * Keeps the latest speed and message number of every rocket, from the deltas it receives
+     */
+    private static class Collector implements Subscriber<Event<RocketDelta>> {
+        final Map<String, Integer> speeds = new ConcurrentHashMap<>();
+        final Map<String, Integer> messageNumbers = new ConcurrentHashMap<>();
+        final List<RocketDelta> deltas = Collections.synchronizedList(new ArrayList<>());
+        final long initialRequest;
+        volatile Subscription subscription;
+        volatile Throwable error;
+
+        Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Event<RocketDelta> event) {
+            var delta = event.getData();
+            deltas.add(delta);
+            if (delta.speed() != null) {
+                speeds.put(delta.id(), delta.speed());
+            }
+            messageNumbers.put(delta.id(), delta.lastMessageNumber());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Test
+    void thousandsOfSubscribersFollowTheFleet() throws Exception {
+        var repository = new RocketRepository();
+        var subscribers = new ArrayList<Collector>();
+        for (int i = 0; i < 2000; i++) {
+            var collector = new Collector(Long.MAX_VALUE);
+            repository.feed().subscribe(null, i % 2 == 0 ? null : "channel-" + (i % 50)).subscribe(collector);
+            subscribers.add(collector);
+        }
+        // never asks for anything, must not hold up processing
+        var stalled = new Collector(0);
+        repository.feed().subscribe(null, null).subscribe(stalled);
+
+        var producers = new ArrayList<Thread>();
+        for (int p = 0; p < 4; p++) {
+            var first = p * 50;
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int c = first; c < first + 50; c++) {
+                    repository.processTelemetry(launch("channel-" + c, 100));
+                }
+                for (int n = 2; n <= 20; n++) {
+                    for (int c = first; c < first + 50; c++) {
+                        repository.processTelemetry(changeSpeed(n, "channel-" + c, 10));
+                    }
+                }
+            }));
+        }
+        for (var producer : producers) {
+            assertTrue(producer.join(Duration.ofSeconds(30)));
+        }
+
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (int i = 0; i < subscribers.size(); i++) {
+            var collector = subscribers.get(i);
+            var channels = i % 2 == 0 ? 200 : 1;
+            while (!caughtUp(collector, channels) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertNull(collector.error);
+            assertEquals(channels, collector.speeds.size());
+            collector.speeds.forEach((channel, speed) -> assertEquals(290, speed));
+        }
+
+        assertTrue(stalled.deltas.isEmpty());
+        assertNull(stalled.error);
+    }
+
+    private static boolean caughtUp(Collector collector, int channels) {
+        return collector.messageNumbers.size() == channels && collector.messageNumbers.values().stream().allMatch(number -> number == 20);
+    }
+
+    @Test
+    void slowSubscriberGetsMergedChangesAndIsDroppedWhenTooFarBehind() throws Exception {
+        var feed = new RocketFeed(2);
+        var collector = new Collector(0);
+        feed.subscribe("falcon-9", null).subscribe(collector);
+
+        var launched = rocket("a", "Falcon-9", 100, 1);
+        feed.rocketChanged(rocket(null, null, 0, 0), launched, null);
+        feed.rocketChanged(launched, rocket("a", "Falcon-9", 150, 2), null);
+        feed.rocketChanged(rocket("a", "Falcon-9", 150, 2), rocket("a", "Falcon-9", 180, 3), null);
+        feed.rocketChanged(rocket(null, null, 0, 0), rocket("t", "Titan-IV", 100, 1), null); // other type
+        Thread.sleep(100);
+
+        collector.subscription.request(10);
+        waitFor(() -> collector.deltas.size() == 1);
+        var delta = collector.deltas.getFirst();
+        assertEquals(new RocketDelta("a", 3, "Falcon-9", 180, "ARTEMIS", null, "LAUNCHED", null, false), delta);
+
+        feed.rocketChanged(rocket("a", "Falcon-9", 180, 3), rocket("a", "Falcon-9", 170, 4), null);
+        waitFor(() -> collector.deltas.size() == 2);
+        assertEquals(new RocketDelta("a", 4, null, 170, null, null, null, null, null), collector.deltas.get(1));
+
+        // asking for no events breaks the protocol
+        collector.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, collector.error);
+        assertEquals(0, feed.subscribers());
+
+        // more changed rockets than the buffer holds, none of them asked for
+        var slow = new Collector(0);
+        feed.subscribe(null, null).subscribe(slow);
+        for (var channel : List.of("b", "c", "d")) {
+            feed.rocketChanged(rocket(null, null, 0, 0), rocket(channel, "Falcon-9", 100, 1), null);
+        }
+        waitFor(() -> slow.error != null);
+        assertInstanceOf(IllegalStateException.class, slow.error);
+        assertEquals(0, feed.subscribers());
+    }
+
+    private static RocketSnapshot rocket(String channel, String type, int speed, int lastMessageNumber) {
+        return channel == null
+            ? new RocketSnapshot(null, null, 0, null, null, 0, null, null, false)
+            : new RocketSnapshot(channel, type, speed, "ARTEMIS", null, lastMessageNumber, "LAUNCHED", null, false);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
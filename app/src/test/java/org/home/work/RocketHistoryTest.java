@@ -0,0 +1,96 @@
+package org.home.work;
+
+import org.home.work.history.HistoryField;
+import org.home.work.history.HistoryPoint;
+import org.home.work.history.RocketHistory;
+import org.home.work.rockets.RocketRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.home.work.Fixture.changeMission;
+import static org.home.work.Fixture.changeSpeed;
+import static org.home.work.Fixture.explode;
+import static org.home.work.Fixture.launch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RocketHistoryTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2022, 2, 2, 18, 39, 5, 863370000, ZoneOffset.UTC);
+
+    @Test
+    void speedPointsReadBackAcrossChunks() {
+        var history = new RocketHistory();
+        var random = new Random(42);
+        var times = new ZonedDateTime[5000];
+        var speeds = new int[times.length];
+
+        var time = START;
+        var speed = 1000;
+        for (int i = 0; i < times.length; i++) {
+            time = time.plusNanos(random.nextInt(-1_000_000, 5_000_000) * 1000L);
+            speed += random.nextInt(-500, 500);
+            times[i] = time;
+            speeds[i] = speed;
+            history.speed(time, i + 1, speed);
+        }
+
+        var points = history.points(HistoryField.SPEED, null, null);
+        assertEquals(times.length, points.size());
+        for (int i = 0; i < times.length; i++) {
+            var point = (HistoryPoint.Speed) points.get(i);
+            assertEquals(times[i], point.time());
+            assertEquals(speeds[i], point.speed());
+            assertEquals(i + 1, point.messageNumber());
+        }
+    }
+
+    @Test
+    void regularMessagesTakeFewBytesPerPoint() {
+        var history = new RocketHistory();
+        for (int i = 0; i < 1_000_000; i++) {
+            history.speed(START.plusSeconds(i), i + 1, 1000 + (i % 100) * 10);
+        }
+
+        assertEquals(1_000_000, history.speedPoints());
+        var bytesPerPoint = (double) history.speedBytes() / history.speedPoints();
+        assertTrue(bytesPerPoint < 4, "bytes per point: " + bytesPerPoint);
+    }
+
+    @Test
+    void pointsFilteredByTime() {
+        var history = new RocketHistory();
+        for (int i = 0; i < 3000; i++) {
+            history.speed(START.plusSeconds(i), i + 1, i);
+        }
+
+        var points = history.points(HistoryField.SPEED, START.plusSeconds(1000), START.plusSeconds(2500));
+        assertEquals(1500, points.size());
+        assertEquals(START.plusSeconds(1000), points.getFirst().time());
+        assertEquals(2500, points.getLast().messageNumber());
+    }
+
+    @Test
+    void repositoryRecordsEveryChange() {
+        var repository = new RocketRepository();
+        repository.processTelemetry(launch("abc", 500));
+        repository.processTelemetry(changeSpeed(2, "abc", 300));
+        repository.processTelemetry(changeMission(3, "abc", "SHUTTLE_MIR"));
+        repository.processTelemetry(changeSpeed(4, "abc", -100));
+        repository.processTelemetry(explode(5, "abc", "PRESSURE_VESSEL_FAILURE"));
+
+        var speeds = repository.history("abc", HistoryField.SPEED, null, null).orElseThrow();
+        assertEquals(List.of(500, 800, 700), speeds.stream().map(point -> ((HistoryPoint.Speed) point).speed()).toList());
+
+        var missions = repository.history("abc", HistoryField.MISSION, null, null).orElseThrow();
+        assertEquals(List.of("ARTEMIS", "SHUTTLE_MIR"), missions.stream().map(point -> ((HistoryPoint.Text) point).value()).toList());
+
+        var statuses = repository.history("abc", HistoryField.STATUS, null, null).orElseThrow();
+        assertEquals(List.of(1, 5), statuses.stream().map(HistoryPoint::messageNumber).toList());
+
+        assertTrue(repository.history("def", HistoryField.SPEED, null, null).isEmpty());
+    }
+}
@@ -0,0 +1,63 @@
+package org.home.work;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.core.type.Argument;
+import io.micronaut.serde.ObjectMapper;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.RocketJson;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.RocketSnapshot;
+import org.home.work.rockets.StorageEngine;
+import org.home.work.rockets.StoreConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.home.work.Fixture.changeMission;
+import static org.home.work.Fixture.changeSpeed;
+import static org.home.work.Fixture.launch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RocketJsonTest {
+    private final ObjectMapper mapper = ObjectMapper.getDefault();
+
+    @Test
+    void listFromFragmentsIsSameAsSerializedList() throws IOException {
+        var repository = new RocketRepository();
+        for (var channel : List.of("a", "b", "c")) {
+            repository.processTelemetry(launch(channel, 100));
+        }
+        var rocketJson = new RocketJson(mapper, new StoreConfig());
+
+        assertSameJson(rocketJson, List.of());
+        assertSameJson(rocketJson, rockets(repository));
+        assertSameJson(rocketJson, rockets(repository)); // from fragments now
+
+        repository.processTelemetry(changeSpeed(2, "b", 50));
+        repository.processTelemetry(changeMission(2, "c", "VOYAGER"));
+        assertSameJson(rocketJson, rockets(repository));
+    }
+
+    @Test
+    void compactRocketsAreSerialized() throws IOException {
+        var storeConfig = new StoreConfig();
+        storeConfig.setEngine(StorageEngine.COMPACT);
+        var repository = new RocketRepository(new ReorderConfig(), storeConfig,
+            new SimpleMeterRegistry(), Optional.empty());
+        repository.processTelemetry(launch("a", 100));
+
+        assertSameJson(new RocketJson(mapper, storeConfig), rockets(repository));
+    }
+
+    private void assertSameJson(RocketJson rocketJson, List<RocketSnapshot> rockets) throws IOException {
+        var expected = new String(mapper.writeValueAsBytes(Argument.listOf(RocketSnapshot.class), rockets));
+        assertEquals(expected, new String(rocketJson.list(rockets)));
+    }
+
+    private static List<RocketSnapshot> rockets(RocketRepository repository) {
+        return repository.rocketsBy(rocket -> true).stream().sorted(Comparator.comparing(RocketSnapshot::id)).toList();
+    }
+}
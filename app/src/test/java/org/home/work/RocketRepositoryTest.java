@@ -1,19 +1,44 @@
 package org.home.work;
 
-import org.home.work.rockets.RocketRepository;
-import org.home.work.rockets.Rocket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.work.history.HistoryField;
+import org.home.work.messages.MessageController;
+import org.home.work.messages.MessageType;
+import org.home.work.messages.RocketEvent;
+import org.home.work.metrics.MetricsConfig;
+import org.home.work.rockets.ProcessResult;
+import org.home.work.rockets.ReorderConfig;
+import org.home.work.rockets.RetentionConfig;
 import org.home.work.rockets.RocketBuffer;
+import org.home.work.rockets.RocketFilter;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.RocketPage;
+import org.home.work.rockets.RocketSnapshot;
+import org.home.work.rockets.SortKey;
+import org.home.work.rockets.StorageEngine;
+import org.home.work.rockets.StoreConfig;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
+import static org.home.work.Fixture.changeMission;
+import static org.home.work.Fixture.changeSpeed;
+import static org.home.work.Fixture.explode;
 import static org.home.work.Fixture.launch;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class RocketRepositoryTest {
@@ -54,6 +79,20 @@ class RocketRepositoryTest {
         }
     }
 
+    @Test
+    void batchAppliedInMessageNumberOrder() {
+        var repository = new RocketRepository();
+        var results = repository.processTelemetry("123abc", List.of(
+            changeSpeed(3, "123abc", -300),
+            launch("123abc", 500),
+            changeSpeed(2, "123abc", 1000)
+        ));
+
+        // sorted before processing, so nothing had to wait in the queue
+        assertEquals(List.of(ProcessResult.APPLIED, ProcessResult.APPLIED, ProcessResult.APPLIED), results);
+        assertEquals(1200, repository.rocketById("123abc").orElseThrow().speed());
+    }
+
     @Test
     void dataStored() {
         var repository = new RocketRepository();
@@ -62,6 +101,19 @@ class RocketRepositoryTest {
         assertTrue(repository.rocketById("123abc").isPresent());
     }
 
+    @Test
+    void readSnapshotNotChangedByLaterUpdates() {
+        var repository = new RocketRepository();
+        repository.processTelemetry(launch("123abc", 500));
+        var before = repository.rocketById("123abc").orElseThrow();
+
+        repository.processTelemetry(changeSpeed(2, "123abc", 1000));
+
+        assertEquals(500, before.speed());
+        assertEquals(1, before.lastMessageNumber());
+        assertEquals(1500, repository.rocketById("123abc").orElseThrow().speed());
+    }
+
     @Test
     void canFindRocketByPredicate() {
         var repository = new RocketRepository();
@@ -69,9 +121,263 @@ class RocketRepositoryTest {
         repository.processTelemetry(launch("abc", 2000));
         repository.processTelemetry(launch("xyz", 3000));
 
-        var rocketList = repository.rocketsBy(rocket -> rocket.getSpeed() >= 2000);
-        var idList = rocketList.stream().map(Rocket::getId).toList();
+        var rocketList = repository.rocketsBy(rocket -> rocket.speed() >= 2000);
+        var idList = rocketList.stream().map(RocketSnapshot::id).toList();
         assertEquals(2, idList.size());
         assertTrue(idList.containsAll(List.of("abc", "xyz")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void rocketsShareDictionaryStrings() {
+        var repository = new RocketRepository();
+        repository.processTelemetry(launch("abc", 1000));
+        repository.processTelemetry(launch("xyz", 2000));
+        // values parsed from different messages are different instances
+        repository.processTelemetry(changeMission(2, "xyz", new String("ARTEMIS")));
+        repository.processTelemetry(explode(2, "abc", new String("PRESSURE_VESSEL_FAILURE")));
+        repository.processTelemetry(explode(3, "xyz", new String("PRESSURE_VESSEL_FAILURE")));
+
+        var abc = repository.rocketById("abc").orElseThrow();
+        var xyz = repository.rocketById("xyz").orElseThrow();
+        assertSame(abc.mission(), xyz.mission());
+        assertSame(abc.status(), xyz.status());
+    }
+
+    @Test
+    void indexFollowsRocketChanges() {
+        var repository = new RocketRepository();
+        repository.processTelemetry(launch("qwerty", 1000));
+        repository.processTelemetry(launch("abc", 2000));
+        repository.processTelemetry(changeMission(2, "abc", "VOYAGER"));
+        repository.processTelemetry(explode(3, "abc", "PRESSURE_VESSEL_FAILURE"));
+
+        assertEquals(Set.of("Falcon-9"), repository.rocketTypes());
+
+        var exploded = repository.rocketsBy(new RocketFilter(Optional.empty(), Optional.of("pressure_vessel_failure"), Optional.empty()));
+        assertEquals(List.of("abc"), exploded.stream().map(RocketSnapshot::id).toList());
+
+        var artemis = repository.rocketsBy(new RocketFilter(Optional.of("falcon-9"), Optional.empty(), Optional.of("ARTEMIS")));
+        assertEquals(List.of("qwerty"), artemis.stream().map(RocketSnapshot::id).toList());
+
+        assertTrue(repository.rocketsBy(new RocketFilter(Optional.of("Saturn-V"), Optional.empty(), Optional.empty())).isEmpty());
+    }
+
+    @Test
+    void filteredPageContinuesAfterCursor() {
+        var repository = new RocketRepository();
+        for (int i = 1; i <= 5; i++) {
+            repository.processTelemetry(launch("rocket" + i, i * 100));
+        }
+        repository.processTelemetry(changeMission(2, "rocket3", "VOYAGER"));
+
+        var artemis = new RocketFilter(Optional.empty(), Optional.empty(), Optional.of("ARTEMIS"));
+        var first = repository.rocketPage(artemis, SortKey.SPEED, false, null, 3);
+        assertEquals(List.of(100, 200, 400), first.rockets().stream().map(RocketSnapshot::speed).toList());
+
+        var second = repository.rocketPage(artemis, SortKey.SPEED, false, first.nextCursor(), 3);
+        assertEquals(List.of(500), second.rockets().stream().map(RocketSnapshot::speed).toList());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void statsFollowRocketChanges() {
+        var repository = new RocketRepository();
+        repository.processTelemetry(launch("rocket1", 10));
+        repository.processTelemetry(launch("rocket2", 20));
+        repository.processTelemetry(launch("rocket3", 30));
+        repository.processTelemetry(changeSpeed(2, "rocket3", 50));
+        repository.processTelemetry(changeMission(2, "rocket2", "VOYAGER"));
+        repository.processTelemetry(explode(2, "rocket1", "PRESSURE_VESSEL_FAILURE"));
+
+        var stats = repository.stats();
+        var total = stats.total();
+        assertEquals(3, total.rockets());
+        assertEquals(2, total.active());
+        assertEquals(1, total.exploded());
+        assertEquals(110 / 3.0, total.averageSpeed(), 1e-9);
+        assertEquals(10, total.minSpeed());
+        assertEquals(80, total.maxSpeed());
+        assertEquals(1, total.lifetime().count());
+
+        assertEquals(2, stats.byMission().get("ARTEMIS").rockets());
+        assertEquals(20, stats.byMission().get("VOYAGER").maxSpeed());
+        assertEquals(1, stats.byStatus().get("PRESSURE_VESSEL_FAILURE").rockets());
+        assertEquals(2, stats.byStatus().get("LAUNCHED").rockets());
+        assertEquals(3, stats.byType().get("Falcon-9").rockets());
+
+        repository.processTelemetry(changeSpeed(3, "rocket3", 1_000_000));
+        var maxSpeed = repository.stats().total().maxSpeed();
+        assertTrue(Math.abs(maxSpeed - 1_000_080) <= 1_000_080 / 64, "max speed " + maxSpeed);
+    }
+
+    @Test
+    void listVersionKeptWhileRocketOnlyWaits() throws InterruptedException {
+        for (var engine : StorageEngine.values()) {
+            var config = new ReorderConfig();
+            config.setMaxGapAge(Duration.ofMillis(200));
+            var storeConfig = new StoreConfig();
+            storeConfig.setEngine(engine);
+            var repository = new RocketRepository(config, storeConfig, new SimpleMeterRegistry(), Optional.empty());
+            repository.processTelemetry(launch("abc", 500));
+
+            var version = repository.version();
+            repository.processTelemetry(changeSpeed(3, "abc", 100));
+            repository.processTelemetry("abc", List.of(changeSpeed(4, "abc", 100)));
+            repository.expireGaps();
+            assertEquals(version, repository.version(), engine.name());
+
+            Thread.sleep(250);
+            repository.expireGaps();
+            assertTrue(repository.version() > version, engine.name());
+            assertEquals(700, repository.rocketById("abc").orElseThrow().speed(), engine.name());
+        }
+    }
+
+    @Test
+    void valuesKeptOnceDictionaryIsFull() {
+        for (var engine : StorageEngine.values()) {
+            var storeConfig = new StoreConfig();
+            storeConfig.setEngine(engine);
+            storeConfig.setDictionarySize(2);
+            var repository = new RocketRepository(new ReorderConfig(), storeConfig, new SimpleMeterRegistry(), Optional.empty());
+            for (var i = 0; i < 4; i++) {
+                var channel = "rocket" + i;
+                repository.processTelemetry(new MessageController.RocketTelemetry(
+                    new MessageController.Metadata(channel, 1, MessageType.LAUNCHED, ZonedDateTime.now()),
+                    new RocketEvent.Launched("type" + i, 100 + i, "mission" + i)
+                ));
+                repository.processTelemetry(explode(2, channel, "reason" + i));
+            }
+
+            var rocket = repository.rocketById("rocket3").orElseThrow();
+            assertEquals(List.of("type3", "mission3", "reason3"), List.of(rocket.type(), rocket.mission(), rocket.status()), engine.name());
+            assertEquals(Set.of("type0", "type1", "type2", "type3"), repository.rocketTypes(), engine.name());
+            for (var filter : List.of(
+                new RocketFilter(Optional.of("TYPE3"), Optional.empty(), Optional.empty()),
+                new RocketFilter(Optional.empty(), Optional.of("reason3"), Optional.empty()),
+                new RocketFilter(Optional.empty(), Optional.empty(), Optional.of("mission3"))
+            )) {
+                assertEquals(List.of("rocket3"), ids(repository.rocketPage(filter, SortKey.SPEED, false, null, 0)), engine.name());
+            }
+
+            // a value without a code is replaced like any other
+            repository.processTelemetry(changeMission(3, "rocket3", "mission0"));
+            assertEquals("mission0", repository.rocketById("rocket3").orElseThrow().mission(), engine.name());
+            assertEquals(List.of("rocket0", "rocket3"), ids(repository.rocketPage(
+                new RocketFilter(Optional.empty(), Optional.empty(), Optional.of("mission0")), SortKey.SPEED, false, null, 0)), engine.name());
+        }
+    }
+
+    @Test
+    void finishedRocketsMoveToArchive() throws InterruptedException {
+        var repository = archiving(Duration.ofMillis(1));
+        for (var channel : List.of("a", "b", "c")) {
+            repository.processTelemetry(launch(channel, 100));
+            repository.processTelemetry(changeSpeed(2, channel, channel.charAt(0) - 'a'));
+            repository.processTelemetry(explode(3, channel, "PRESSURE_VESSEL_FAILURE"));
+        }
+        repository.processTelemetry(launch("flying", 50));
+        Thread.sleep(5);
+        repository.archiveFinished();
+
+        assertEquals(List.of("flying"), repository.rocketsBy(rocket -> true).stream().map(RocketSnapshot::id).toList());
+        assertEquals(List.of("flying"), ids(repository.rocketPage(RocketFilter.ALL, SortKey.SPEED, false, null, 0)));
+        var archived = repository.rocketById("b").orElseThrow();
+        assertEquals(101, archived.speed());
+        assertEquals(3, archived.lastMessageNumber());
+        assertNotNull(archived.missionEndTime());
+        assertTrue(repository.history("b", HistoryField.SPEED, null, null).isPresent());
+        assertEquals(Set.of("a", "b", "c", "flying"), repository.states().keySet());
+
+        // pages of archived and live rockets together
+        var first = repository.rocketPage(RocketFilter.ALL, SortKey.SPEED, false, null, 2, true);
+        assertEquals(List.of("flying", "a"), ids(first));
+        var second = repository.rocketPage(RocketFilter.ALL, SortKey.SPEED, false, first.nextCursor(), 2, true);
+        assertEquals(List.of("b", "c"), ids(second));
+        assertNull(second.nextCursor());
+        var exploded = new RocketFilter(Optional.empty(), Optional.of("pressure_vessel_failure"), Optional.empty());
+        assertEquals(List.of("c", "b", "a"), ids(repository.rocketPage(exploded, SortKey.SPEED, true, null, 0, true)));
+
+        // a late message brings the rocket back, a copy of an archived one is still a copy
+        assertEquals(List.of(ProcessResult.APPLIED), repository.processTelemetry("b", List.of(changeSpeed(4, "b", 5))));
+        assertEquals(List.of(ProcessResult.DUPLICATE), repository.processTelemetry("a", List.of(changeSpeed(2, "a", 10))));
+        assertEquals(106, repository.rocketById("b").orElseThrow().speed());
+        assertEquals(List.of("flying", "a", "c", "b"), ids(repository.rocketPage(RocketFilter.ALL, SortKey.SPEED, false, null, 0, true)));
+        assertEquals(List.of("flying", "a", "b"), ids(repository.rocketPage(RocketFilter.ALL, SortKey.SPEED, false, null, 0)));
+    }
+
+    @Test
+    void archivedRocketTypesNotListed() throws InterruptedException {
+        var repository = archiving(Duration.ofMillis(1));
+        repository.processTelemetry(launch("flying", 50));
+        repository.processTelemetry(new MessageController.RocketTelemetry(
+            new MessageController.Metadata("atlas", 1, MessageType.LAUNCHED, ZonedDateTime.now()),
+            new RocketEvent.Launched("Atlas-V", 100, "ARTEMIS")
+        ));
+        repository.processTelemetry(explode(2, "atlas", "PRESSURE_VESSEL_FAILURE"));
+        assertEquals(Set.of("Falcon-9", "Atlas-V"), repository.rocketTypes());
+
+        Thread.sleep(5);
+        repository.archiveFinished();
+        assertEquals(Set.of("Falcon-9"), repository.rocketTypes());
+
+        repository.processTelemetry(changeSpeed(3, "atlas", 10));
+        assertEquals(Set.of("Falcon-9", "Atlas-V"), repository.rocketTypes());
+    }
+
+    @Test
+    void rocketExplodedBeforeLaunchStaysLive() throws InterruptedException {
+        var repository = archiving(Duration.ofMillis(1));
+        repository.processTelemetry(explode(1, "early", "PRESSURE_VESSEL_FAILURE"));
+        var early = repository.states().get("early");
+        assertNotNull(early.rocket().missionEndTime());
+        repository.restore("restored", early);
+
+        Thread.sleep(5);
+        repository.archiveFinished();
+        assertEquals(Set.of("early", "restored"), repository.states().keySet());
+    }
+
+    @Test
+    void noMessageLostWhileRocketsAreArchived() throws Exception {
+        var repository = archiving(Duration.ofNanos(1));
+        var channels = IntStream.range(0, 200).mapToObj(i -> "rocket" + i).toList();
+        for (var channel : channels) {
+            repository.processTelemetry(launch(channel, 100));
+            repository.processTelemetry(explode(2, channel, "PRESSURE_VESSEL_FAILURE"));
+        }
+
+        try (var executor = Executors.newFixedThreadPool(2)) {
+            var writer = executor.submit(() -> {
+                for (int n = 3; n <= 30; n++) {
+                    for (var channel : channels) {
+                        assertEquals(List.of(ProcessResult.APPLIED), repository.processTelemetry(channel, List.of(changeSpeed(n, channel, 1))));
+                    }
+                }
+            });
+            while (!writer.isDone()) {
+                repository.archiveFinished();
+            }
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        repository.archiveFinished();
+
+        for (var channel : channels) {
+            var rocket = repository.rocketById(channel).orElseThrow();
+            assertEquals(30, rocket.lastMessageNumber());
+            assertEquals(128, rocket.speed());
+        }
+        assertEquals(channels.size(), repository.rocketPage(RocketFilter.ALL, SortKey.SPEED, false, null, 0, true).rockets().size());
+    }
+
+    private static RocketRepository archiving(Duration archiveAfter) {
+        var retention = new RetentionConfig();
+        retention.setArchiveAfter(archiveAfter);
+        retention.setBlockSize(2);
+        return new RocketRepository(new ReorderConfig(), new StoreConfig(), retention, new MetricsConfig(), new SimpleMeterRegistry(), Optional.empty());
+    }
+
+    private static List<String> ids(RocketPage page) {
+        return page.rockets().stream().map(RocketSnapshot::id).toList();
+    }
+}
@@ -0,0 +1,192 @@
+package org.home.work;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.netty.buffer.Unpooled;
+import org.home.work.messages.BinaryTelemetry;
+import org.home.work.messages.MessageController;
+import org.home.work.messages.MessageType;
+import org.home.work.messages.RocketEvent;
+import org.home.work.messages.TelemetryDecoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryDecoderTest {
+    private final TelemetryDecoder decoder = new TelemetryDecoder();
+
+    @Test
+    void launchDecoded() throws IOException {
+        var telemetry = decoder.decode(bytes("""
+            {
+                "metadata": {
+                    "channel": "abc123",
+                    "messageNumber": 1,
+                    "messageTime": "2022-02-02T19:39:05.86337+01:00",
+                    "messageType": "RocketLaunched"
+                },
+                "message": {
+                    "type": "Falcon-9",
+                    "launchSpeed": "500",
+                    "mission": "ARTEMIS"
+                }
+            }
+            """));
+
+        assertEquals("abc123", telemetry.metadata().channel());
+        assertEquals(1, telemetry.metadata().messageNumber());
+        assertEquals(MessageType.LAUNCHED, telemetry.metadata().messageType());
+        assertEquals(new RocketEvent.Launched("Falcon-9", 500, "ARTEMIS"), telemetry.event());
+    }
+
+    @Test
+    void messageTimeSameAsObjectMapper() throws IOException {
+        for (var time : new String[]{"2022-02-02T19:39:05.86337+01:00", "2022-02-02T19:39:05Z", "2022-02-02T19:39:05.1-03:30", "2022-02-02T19:39:05.123+01:00[Europe/Riga]"}) {
+            var json = "{\"metadata\": {\"channel\": \"abc\", \"messageTime\": \"%s\"}}".formatted(time);
+            var expected = App.objectMapper.readValue("\"%s\"".formatted(time), ZonedDateTime.class);
+
+            assertEquals(expected, decoder.decode(bytes(json)).metadata().messageTime(), time);
+        }
+    }
+
+    @Test
+    void speedDecreaseIsNegativeDelta() throws IOException {
+        var telemetry = decoder.decode(bytes("""
+            {"message": {"by": 300}, "metadata": {"channel": "abc", "messageNumber": 2, "messageType": "RocketSpeedDecreased"}}
+            """));
+
+        assertEquals(new RocketEvent.SpeedChanged(-300), telemetry.event());
+    }
+
+    @Test
+    void unknownTypeMessageSkipped() throws IOException {
+        var telemetry = decoder.decode(bytes("""
+            {"metadata": {"channel": "abc", "messageNumber": 2, "messageType": "RocketFlewIntoSun"}, "message": {"temperature": {"celsius": 15000000}}}
+            """));
+
+        assertEquals(RocketEvent.UNKNOWN, telemetry.event());
+    }
+
+    @Test
+    void invalidTelemetryRejected() {
+        assertThrows(JsonProcessingException.class, () -> decoder.decode(bytes("""
+            {"channel": "abc", "messageNumber": 1}
+            """)));
+        assertThrows(JsonProcessingException.class, () -> decoder.decode(bytes("""
+            {"metadata": {"channel": "abc", "messageNumber": 2, "messageType": "RocketSpeedIncreased"}, "message": {"by": "fast"}}
+            """)));
+        assertThrows(JsonProcessingException.class, () -> decoder.decode(bytes("""
+            {"metadata": {"channel": "abc", "messageNumber": 2, "messageType": "RocketExploded"}}
+            """)));
+        assertThrows(JsonProcessingException.class, () -> decoder.decode(bytes("{\"metadata\": ")));
+    }
+
+    @Test
+    void textLongerThanLimitRejected() throws IOException {
+        var message = """
+            {"metadata": {"channel": "abc", "messageNumber": 2, "messageType": "RocketMissionChanged"}, "message": {"newMission": "%s"}}
+            """;
+
+        var longest = "x".repeat(RocketEvent.MAX_TEXT_BYTES);
+        assertEquals(new RocketEvent.MissionChanged(longest), decoder.decode(bytes(message.formatted(longest))).event());
+        assertThrows(JsonProcessingException.class, () -> decoder.decode(bytes(message.formatted(longest + "x"))));
+        // counted in UTF-8 bytes, not chars
+        assertThrows(JsonProcessingException.class, () -> decoder.decode(bytes(message.formatted("Ž".repeat(RocketEvent.MAX_TEXT_BYTES / 2 + 1)))));
+        assertThrows(JsonProcessingException.class, () -> decoder.decode(bytes("""
+            {"metadata": {"channel": "%s", "messageNumber": 1}}
+            """.formatted(longest + "x"))));
+    }
+
+    @Test
+    void batchContinuesAfterInvalidRecord() throws IOException {
+        var records = decoder.decodeBatch(bytes("""
+            [
+                {"metadata": {"channel": "abc", "messageNumber": 2, "messageType": "RocketSpeedIncreased"}, "message": {"by": [1, {"a": 2}]}},
+                42,
+                {"metadata": {"channel": "abc", "messageNumber": 3, "messageType": "RocketSpeedIncreased"}, "message": {"by": 5}}
+            ]
+            """));
+
+        assertEquals(3, records.size());
+        assertNotNull(records.get(0).error());
+        assertNotNull(records.get(1).error());
+        assertEquals(new RocketEvent.SpeedChanged(5), records.get(2).telemetry().event());
+    }
+
+    @Test
+    void binaryMessageSameAsSent() {
+        var channel = "193270a9-c9cf-404a-8f83-838e71d9ae67";
+        var time = ZonedDateTime.parse("2022-02-02T19:39:05.863371Z");
+        for (var telemetry : List.of(
+            Fixture.launch(channel, 500),
+            Fixture.changeSpeed(2, channel, 300),
+            Fixture.changeSpeed(3, channel, -300),
+            Fixture.changeMission(4, channel, "ŠĶĒRSLA"),
+            Fixture.explode(5, channel, "PRESSURE_VESSEL_FAILURE")
+        )) {
+            var sent = new MessageController.RocketTelemetry(
+                new MessageController.Metadata(channel, telemetry.metadata().messageNumber(), telemetry.metadata().messageType(), time),
+                telemetry.event()
+            );
+
+            assertEquals(sent, BinaryTelemetry.decode(Unpooled.wrappedBuffer(BinaryTelemetry.encode(sent))));
+        }
+    }
+
+    @Test
+    void invalidBinaryMessageRejected() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryTelemetry.encode(Fixture.launch("abc", 500)));
+
+        var bytes = BinaryTelemetry.encode(Fixture.launch("193270a9-c9cf-404a-8f83-838e71d9ae67", 500));
+        assertThrows(IllegalArgumentException.class, () -> BinaryTelemetry.decode(Unpooled.wrappedBuffer(bytes, 0, bytes.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> BinaryTelemetry.decode(Unpooled.wrappedBuffer(bytes, new byte[1])));
+    }
+
+    @Test
+    void binaryTextLongerThanLimitRejected() {
+        var channel = "193270a9-c9cf-404a-8f83-838e71d9ae67";
+        var longest = "x".repeat(RocketEvent.MAX_TEXT_BYTES);
+        var sent = Fixture.changeMission(2, channel, longest);
+        assertEquals(sent.event(), BinaryTelemetry.decode(Unpooled.wrappedBuffer(BinaryTelemetry.encode(sent))).event());
+        assertThrows(IllegalArgumentException.class, () -> BinaryTelemetry.encode(Fixture.changeMission(2, channel, longest + "x")));
+
+        // a sender not using encode(): header of the message, then a text one byte over the limit
+        var header = BinaryTelemetry.encode(Fixture.changeMission(2, channel, ""));
+        var tooLong = Unpooled.buffer()
+            .writeBytes(header, 0, header.length - Short.BYTES)
+            .writeShort(RocketEvent.MAX_TEXT_BYTES + 1).writeBytes(new byte[RocketEvent.MAX_TEXT_BYTES + 1]);
+        assertThrows(IllegalArgumentException.class, () -> BinaryTelemetry.decode(tooLong.duplicate()));
+
+        var records = BinaryTelemetry.decodeBatch(Unpooled.buffer()
+            .writeInt(tooLong.readableBytes()).writeBytes(tooLong)
+            .writeBytes(BinaryTelemetry.encodeBatch(List.of(Fixture.changeSpeed(3, channel, 5)))));
+        assertNotNull(records.get(0).error());
+        assertEquals(new RocketEvent.SpeedChanged(5), records.get(1).telemetry().event());
+    }
+
+    @Test
+    void binaryBatchContinuesAfterInvalidRecord() {
+        var channel = "193270a9-c9cf-404a-8f83-838e71d9ae67";
+        var batch = Unpooled.buffer()
+            .writeBytes(BinaryTelemetry.encodeBatch(List.of(Fixture.changeSpeed(2, channel, 5))))
+            .writeInt(3).writeBytes(new byte[3])
+            .writeBytes(BinaryTelemetry.encodeBatch(List.of(Fixture.changeSpeed(3, channel, -5))));
+
+        var records = BinaryTelemetry.decodeBatch(batch);
+
+        assertEquals(3, records.size());
+        assertEquals(new RocketEvent.SpeedChanged(5), records.get(0).telemetry().event());
+        assertNotNull(records.get(1).error());
+        assertEquals(new RocketEvent.SpeedChanged(-5), records.get(2).telemetry().event());
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryTelemetry.decodeBatch(Unpooled.buffer().writeInt(100).writeInt(1)));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,288 @@
+package org.home.work;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.work.journal.FsyncPolicy;
+import org.home.work.journal.JournalConfig;
+import org.home.work.journal.StateSnapshotter;
+import org.home.work.journal.TelemetryCodec;
+import org.home.work.journal.TelemetryJournal;
+import org.home.work.messages.MessageController;
+import org.home.work.messages.RocketEvent;
+import org.home.work.rockets.RocketBuffer;
+import org.home.work.rockets.RocketRepository;
+import org.home.work.rockets.RocketSnapshot;
+import org.home.work.rockets.ReorderConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.home.work.Fixture.changeMission;
+import static org.home.work.Fixture.changeSpeed;
+import static org.home.work.Fixture.explode;
+import static org.home.work.Fixture.launch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TelemetryJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void codecRoundTrip() {
+        for (var telemetry : List.of(launch("abc", 500), changeSpeed(2, "abc", -300), explode(3, "abc", "PRESSURE_VESSEL_FAILURE"), changeMission(4, "abc", "SHUTTLE_MIR"))) {
+            var decoded = TelemetryCodec.decode(ByteBuffer.wrap(TelemetryCodec.encode(telemetry)));
+            assertEquals(telemetry.event(), decoded.event());
+            assertEquals(telemetry.metadata().channel(), decoded.metadata().channel());
+            assertEquals(telemetry.metadata().messageNumber(), decoded.metadata().messageNumber());
+            assertEquals(telemetry.metadata().messageType(), decoded.metadata().messageType());
+            assertTrue(telemetry.metadata().messageTime().isEqual(decoded.metadata().messageTime()));
+        }
+    }
+
+    @Test
+    void codecHoldsLongTexts() {
+        var mission = "Ž".repeat(RocketEvent.MAX_TEXT_BYTES);
+        var telemetry = new MessageController.RocketTelemetry(changeMission(4, "abc", "SHUTTLE_MIR").metadata(), new RocketEvent.MissionChanged(mission));
+
+        assertEquals(telemetry.event(), TelemetryCodec.decode(ByteBuffer.wrap(TelemetryCodec.encode(telemetry))).event());
+    }
+
+    @Test
+    void redeliveredMessagesIgnoredAfterRestart() throws IOException {
+        var config = config(FsyncPolicy.ALWAYS);
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            repository.processTelemetry(launch("abc", 500));
+            repository.processTelemetry(changeSpeed(2, "abc", 100));
+            repository.processTelemetry(changeSpeed(4, "abc", 100));
+            repository.processTelemetry(changeSpeed(4, "abc", 100)); // copy of a queued message, not journaled
+            assertEquals(3, journal.lastWrittenSequence());
+        }
+
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            assertEquals(3, journal.replay(repository::replay));
+
+            // the source delivers everything again
+            for (var telemetry : List.of(launch("abc", 500), changeSpeed(2, "abc", 100), changeSpeed(4, "abc", 100))) {
+                repository.processTelemetry(telemetry);
+            }
+            assertEquals(3, journal.lastWrittenSequence());
+            repository.processTelemetry(changeSpeed(3, "abc", 100));
+
+            var rocket = repository.rocketById("abc").orElseThrow();
+            assertEquals(800, rocket.speed());
+            assertEquals(4, rocket.lastMessageNumber());
+        }
+    }
+
+    @Test
+    void messageNotAppliedWhenJournalFails() {
+        var journal = new TelemetryJournal(config(FsyncPolicy.ALWAYS));
+        var repository = repository(journal);
+        repository.processTelemetry(launch("abc", 500));
+        journal.close();
+
+        assertThrows(IllegalStateException.class, () -> repository.processTelemetry(changeSpeed(2, "abc", 100)));
+        assertThrows(IllegalStateException.class, () -> repository.processTelemetry("abc", List.of(changeSpeed(2, "abc", 100))));
+        var rocket = repository.rocketById("abc").orElseThrow();
+        assertEquals(500, rocket.speed());
+        assertEquals(1, rocket.lastMessageNumber());
+        // a copy of a message already applied is not journaled, so it doesn't fail
+        repository.processTelemetry(launch("abc", 500));
+    }
+
+    @Test
+    void stateRecoveredAfterRestart() throws IOException {
+        var config = config(FsyncPolicy.ALWAYS);
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            repository.processTelemetry(launch("abc", 500));
+            repository.processTelemetry(launch("abc", 500)); // duplicate, not journaled
+            repository.processTelemetry("abc", List.of(changeSpeed(3, "abc", -100), changeSpeed(2, "abc", 200)));
+            repository.processTelemetry(explode(4, "abc", "PRESSURE_VESSEL_FAILURE"));
+        }
+
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            assertEquals(4, journal.replay(repository::replay));
+
+            var rocket = repository.rocketById("abc").orElseThrow();
+            assertEquals(600, rocket.speed());
+            assertEquals(4, rocket.lastMessageNumber());
+            assertEquals("PRESSURE_VESSEL_FAILURE", rocket.status());
+        }
+    }
+
+    @Test
+    void incompleteRecordCutOff() throws IOException {
+        var config = config(FsyncPolicy.NEVER);
+        try (var journal = new TelemetryJournal(config)) {
+            journal.append(launch("abc", 500));
+            journal.append(changeSpeed(2, "abc", 100));
+        }
+
+        // crash in the middle of writing the last record
+        var segment = segments().getFirst();
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (var journal = new TelemetryJournal(config)) {
+            assertEquals(1, journal.lastWrittenSequence());
+            journal.append(changeSpeed(2, "abc", 200));
+        }
+
+        try (var journal = new TelemetryJournal(config)) {
+            var replayed = new ArrayList<MessageController.RocketTelemetry>();
+            journal.replay(replayed::add);
+            assertEquals(2, replayed.size());
+            assertEquals(changeSpeed(2, "abc", 200).event(), replayed.getLast().event());
+        }
+    }
+
+    @Test
+    void segmentsRolledAndDeleted() throws IOException {
+        var config = config(FsyncPolicy.NEVER);
+        config.setSegmentSize(256);
+        try (var journal = new TelemetryJournal(config)) {
+            journal.append(launch("abc", 500));
+            for (int i = 2; i <= 50; i++) {
+                journal.append(changeSpeed(i, "abc", 1));
+            }
+        }
+        assertTrue(segments().size() > 1);
+
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            journal.replay(repository::replay);
+            assertEquals(549, repository.rocketById("abc").orElseThrow().speed());
+
+            journal.deleteUpTo(40);
+            var replayed = new ArrayList<MessageController.RocketTelemetry>();
+            journal.replay(40, replayed::add);
+            assertEquals(10, replayed.size());
+            assertEquals(41, replayed.getFirst().metadata().messageNumber());
+        }
+    }
+
+    @Test
+    void snapshotPlusTailRestoresState() throws IOException {
+        var config = config(FsyncPolicy.NEVER);
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            var snapshotter = new StateSnapshotter(config, journal, repository);
+            repository.processTelemetry(launch("abc", 500));
+            repository.processTelemetry(changeSpeed(3, "abc", 50)); // queued, waiting for #2
+            repository.processTelemetry(launch("def", 100));
+            awaitWritten(journal, 3);
+            snapshotter.snapshot();
+
+            repository.processTelemetry(changeSpeed(2, "abc", 200));
+            repository.processTelemetry(changeMission(2, "def", "SHUTTLE_MIR"));
+        }
+
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            var sequence = new StateSnapshotter(config, journal, repository).restore();
+            assertEquals(3, sequence);
+            assertEquals(2, journal.replay(sequence, repository::replay));
+
+            var abc = repository.rocketById("abc").orElseThrow();
+            assertEquals(750, abc.speed());
+            assertEquals(3, abc.lastMessageNumber());
+            assertEquals("SHUTTLE_MIR", repository.rocketById("def").orElseThrow().mission());
+            assertEquals(Set.of("Falcon-9"), repository.rocketTypes());
+        }
+    }
+
+    @Test
+    void snapshotHoldsLongTexts() throws IOException {
+        var config = config(FsyncPolicy.NEVER);
+        var mission = "Ž".repeat(RocketEvent.MAX_TEXT_BYTES); // restored from somewhere, longer than messages may send
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            repository.processTelemetry(launch("abc", 500));
+            var rocket = repository.rocketById("abc").orElseThrow();
+            repository.restore("abc", new RocketBuffer.State(new RocketSnapshot(rocket.id(), rocket.type(), rocket.speed(), mission,
+                rocket.launchTime(), rocket.lastMessageNumber(), rocket.status(), rocket.missionEndTime(), rocket.degraded()), List.of()));
+            awaitWritten(journal, 1);
+            new StateSnapshotter(config, journal, repository).snapshot();
+        }
+
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            assertEquals(1, new StateSnapshotter(config, journal, repository).restore());
+            assertEquals(mission, repository.rocketById("abc").orElseThrow().mission());
+        }
+    }
+
+    @Test
+    void unreadableSnapshotFallsBackToPrevious() throws IOException {
+        var config = config(FsyncPolicy.NEVER);
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            var snapshotter = new StateSnapshotter(config, journal, repository);
+            repository.processTelemetry(launch("abc", 500));
+            awaitWritten(journal, 1);
+            snapshotter.snapshot();
+
+            repository.processTelemetry(changeSpeed(2, "abc", 200));
+            awaitWritten(journal, 2);
+            snapshotter.snapshot();
+        }
+
+        var snapshots = segments().stream().filter(path -> path.toString().endsWith(".snapshot")).toList();
+        assertEquals(2, snapshots.size());
+        var newest = snapshots.getLast();
+        var bytes = Files.readAllBytes(newest);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(newest, bytes);
+
+        try (var journal = new TelemetryJournal(config)) {
+            var repository = repository(journal);
+            var sequence = new StateSnapshotter(config, journal, repository).restore();
+            assertEquals(1, sequence);
+            journal.replay(sequence, repository::replay);
+            assertEquals(700, repository.rocketById("abc").orElseThrow().speed());
+        }
+    }
+
+    private static void awaitWritten(TelemetryJournal journal, long sequence) {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (journal.lastWrittenSequence() < sequence && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(sequence, journal.lastWrittenSequence());
+    }
+
+    private JournalConfig config(FsyncPolicy fsync) {
+        var config = new JournalConfig();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setFsync(fsync);
+        return config;
+    }
+
+    private static RocketRepository repository(TelemetryJournal journal) {
+        return new RocketRepository(new ReorderConfig(), new SimpleMeterRegistry(), Optional.of(journal));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}